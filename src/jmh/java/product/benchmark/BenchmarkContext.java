@@ -0,0 +1,62 @@
+package product.benchmark;
+
+import java.util.Arrays;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import product.ProductManager;
+
+/**
+ * Starts the <code>ProductManager</code> application, without a web server,
+ * against an embedded H2 database for use by benchmarks.
+ */
+public final class BenchmarkContext {
+
+	/**
+	 * The number of Products inserted per statement when seeding.
+	 */
+	private static final int SEED_CHUNK_SIZE = 50000;
+
+	/**
+	 * Seeds the product table with the specified number of Products. Every third
+	 * Product is below its minimum stock level, and every seventh Product is
+	 * blocked, so that a realistic proportion of the catalogue requires
+	 * purchasing.
+	 *
+	 * @param context  - the application context
+	 * @param products - the number of Products to create
+	 */
+	public static void seedProducts(final ConfigurableApplicationContext context, final int products) {
+		final JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+		jdbcTemplate.update("delete from product");
+
+		// H2 slows down badly as a single statement inserts more rows, so insert in
+		// chunks...
+
+		for (int from = 1; from <= products; from += BenchmarkContext.SEED_CHUNK_SIZE) {
+			jdbcTemplate.update("insert into product (blocked, current_amount, min_amount, name) "
+					+ "select mod(x, 7) = 0, case when mod(x, 3) = 0 then 5 else 50 end, 10, concat('P', x) "
+					+ "from system_range(?, ?)", from, Math.min(from + BenchmarkContext.SEED_CHUNK_SIZE - 1, products));
+		}
+	}
+
+	/**
+	 * Starts the application.
+	 *
+	 * @param properties - additional properties, in <code>key=value</code> form,
+	 *                   which override <code>application.properties</code>
+	 * @return the started application context
+	 */
+	public static ConfigurableApplicationContext start(final String... properties) {
+		return new SpringApplicationBuilder(ProductManager.class).web(WebApplicationType.NONE)
+				.properties("spring.jpa.show-sql=false",
+						"spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;MODE=MYSQL")
+				.run(Arrays.stream(properties).map(property -> "--" + property).toArray(String[]::new));
+	}
+
+	private BenchmarkContext() {
+	}
+}
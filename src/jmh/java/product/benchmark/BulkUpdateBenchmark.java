@@ -0,0 +1,70 @@
+package product.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import product.model.ProductUpdate;
+import product.service.api.ProductService;
+
+/**
+ * Measures the throughput, in updates per second, of a nightly stock-take of
+ * 50,000 mixed updates applied through <code>ProductService.applyBatch</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BulkUpdateBenchmark.UPDATES)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xms1g", "-Xmx2g" })
+public class BulkUpdateBenchmark {
+
+	static final int UPDATES = 50000;
+
+	private ConfigurableApplicationContext context;
+
+	private ProductService productService;
+
+	private List<ProductUpdate> productUpdates;
+
+	@Benchmark
+	public Object applyBatch() {
+		return this.productService.applyBatch(this.productUpdates);
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = BenchmarkContext.start();
+		BenchmarkContext.seedProducts(this.context, BulkUpdateBenchmark.UPDATES / 2);
+		this.productService = this.context.getBean(ProductService.class);
+
+		this.productUpdates = new ArrayList<>(BulkUpdateBenchmark.UPDATES);
+		for (int i = 1; i <= (BulkUpdateBenchmark.UPDATES / 2); i++) {
+			this.productUpdates.add(new ProductUpdate(ProductUpdate.Operation.SET_CURRENT_AMOUNT, "P" + i, (long) i));
+			this.productUpdates.add(new ProductUpdate(
+					(i % 2) == 0 ? ProductUpdate.Operation.SET_MIN_AMOUNT : ProductUpdate.Operation.ADJUST_CURRENT_AMOUNT,
+					"P" + i, 10L));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+}
@@ -0,0 +1,64 @@
+package product.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import product.service.api.ProductService;
+
+/**
+ * Measures sustained throughput of sale events, as relative adjustments to the
+ * current amount, from many concurrent tills against a single hot Product.
+ * <P>
+ * Run with <code>-t</code> to change the number of concurrent tills.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(64)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class CurrentAmountAdjustmentBenchmark {
+
+	private static final String HOT_PRODUCT = "HOT";
+
+	private ConfigurableApplicationContext context;
+
+	private ProductService productService;
+
+	@Benchmark
+	public Long adjustCurrentAmount() {
+		return this.productService.adjustCurrentAmount(CurrentAmountAdjustmentBenchmark.HOT_PRODUCT, -1L);
+	}
+
+	@Benchmark
+	public void setCurrentAmount() {
+		this.productService.setCurrentAmount(CurrentAmountAdjustmentBenchmark.HOT_PRODUCT, 100L);
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = BenchmarkContext.start("spring.datasource.hikari.maximum-pool-size=64");
+		this.productService = this.context.getBean(ProductService.class);
+		this.productService.create(CurrentAmountAdjustmentBenchmark.HOT_PRODUCT);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+}
@@ -0,0 +1,95 @@
+package product.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import product.service.api.ProductService;
+
+/**
+ * Measures the latency distribution, as percentiles, of the single Product
+ * mutations of <code>ProductService</code> at several catalogue sizes, each
+ * against a random Product of the catalogue.
+ * <P>
+ * A snapshot is generated first, so that <code>overrideMinAmount</code> amends
+ * the requirements of short Products and adds to the snapshot for the others.
+ * <P>
+ * <code>overrideHotMinAmount</code> overrides one of only a few Products from
+ * every thread, so that most overrides conflict and are retried, and compared
+ * with <code>overrideMinAmount</code> shows what high contention costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgs = { "-Xms1g", "-Xmx2g" })
+public class ProductMutationBenchmark {
+
+	@Param({ "10000", "100000" })
+	private int products;
+
+	private ConfigurableApplicationContext context;
+
+	private ProductService productService;
+
+	@Benchmark
+	public void block() {
+		this.productService.block(this.randomName());
+	}
+
+	@Benchmark
+	public void overrideMinAmount() {
+		this.productService.overrideMinAmount(this.randomName(), ThreadLocalRandom.current().nextLong(1, 100));
+	}
+
+	@Benchmark
+	public void overrideHotMinAmount() {
+		this.productService.overrideMinAmount("P" + ThreadLocalRandom.current().nextInt(1, 5),
+				ThreadLocalRandom.current().nextLong(1, 100));
+	}
+
+	@Benchmark
+	public void setCurrentAmount() {
+		this.productService.setCurrentAmount(this.randomName(), ThreadLocalRandom.current().nextLong(0, 100));
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = BenchmarkContext.start("spring.datasource.hikari.maximum-pool-size=16");
+		BenchmarkContext.seedProducts(this.context, this.products);
+		this.productService = this.context.getBean(ProductService.class);
+		this.productService.streamProductPurchaseRequirements(productPurchaseRequirement -> {
+		});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public void unblock() {
+		this.productService.unblock(this.randomName());
+	}
+
+	private String randomName() {
+		return "P" + ThreadLocalRandom.current().nextInt(1, this.products + 1);
+	}
+}
@@ -0,0 +1,66 @@
+package product.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import product.service.api.ProductService;
+
+/**
+ * Measures how long it takes to generate a snapshot of Product purchase
+ * requirements at several catalogue sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx4g" })
+public class ProductPurchaseRequirementGenerationBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	private int products;
+
+	private ConfigurableApplicationContext context;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private ProductService productService;
+
+	@Benchmark
+	public Object getProductPurchaseRequirements() {
+		return this.productService.getProductPurchaseRequirements();
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteSnapshots() {
+		this.jdbcTemplate.update("delete from product_purchase_requirement");
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = BenchmarkContext.start();
+		BenchmarkContext.seedProducts(this.context, this.products);
+		this.jdbcTemplate = this.context.getBean(JdbcTemplate.class);
+		this.productService = this.context.getBean(ProductService.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+}
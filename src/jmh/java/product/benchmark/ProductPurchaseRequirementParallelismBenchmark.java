@@ -0,0 +1,75 @@
+package product.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import product.service.api.ProductService;
+
+/**
+ * Measures how generating a snapshot of Product purchase requirements by a scan
+ * of the whole catalogue scales with the number of threads it is split over.
+ * The speed up is bounded by the number of cores available to the benchmark,
+ * so it should be run on a machine with at least as many cores as the largest
+ * parallelism.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx4g" })
+public class ProductPurchaseRequirementParallelismBenchmark {
+
+	@Param({ "1", "2", "4", "8", "16" })
+	private int parallelism;
+
+	@Param({ "1000000" })
+	private int products;
+
+	private ConfigurableApplicationContext context;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private ProductService productService;
+
+	@TearDown(Level.Iteration)
+	public void deleteSnapshots() {
+		this.jdbcTemplate.update("delete from product_purchase_requirement");
+		this.jdbcTemplate.update("delete from product_demand_statistic");
+	}
+
+	@Benchmark
+	public Object getProductPurchaseRequirements() {
+		return this.productService.getProductPurchaseRequirements();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = BenchmarkContext.start("product.requirements.incremental=false",
+				"product.requirements.parallelism=" + this.parallelism,
+				"spring.datasource.hikari.maximum-pool-size=" + (this.parallelism + 4));
+		BenchmarkContext.seedProducts(this.context, this.products);
+		this.jdbcTemplate = this.context.getBean(JdbcTemplate.class);
+		this.productService = this.context.getBean(ProductService.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+}
@@ -0,0 +1,50 @@
+package product.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import product.model.Product;
+
+/**
+ * Measures <code>Product.getProductPurchaseRequirement</code>, the reference
+ * definition of the purchase requirement rule, for a Product that is short
+ * and so allocates a requirement, and for one that is not.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductPurchaseRequirementRuleBenchmark {
+
+	@Param({ "true", "false" })
+	private boolean shortOfStock;
+
+	private Product product;
+
+	@Benchmark
+	public Object getProductPurchaseRequirement() {
+		return this.product.getProductPurchaseRequirement();
+	}
+
+	@Setup
+	public void setUp() {
+		this.product = new Product();
+		this.product.setBlocked(false);
+		this.product.setCurrentAmount(this.shortOfStock ? 5L : 50L);
+		this.product.setMinAmount(10L);
+		this.product.setName("P1");
+	}
+}
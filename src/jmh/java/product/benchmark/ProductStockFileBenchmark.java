@@ -0,0 +1,85 @@
+package product.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import product.service.impl.ProductStockView;
+
+/**
+ * Measures how long a <code>ProductStockView</code> takes to load the whole
+ * catalogue on a restart, either from the memory mapped
+ * <code>ProductStockFile</code>, checked against the database by a single
+ * aggregate query, or from the database a chunk at a time when no stock file is
+ * kept.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class ProductStockFileBenchmark {
+
+	@Param({ "1000000" })
+	private int products;
+
+	@Param({ "file", "database" })
+	private String source;
+
+	private ConfigurableApplicationContext context;
+
+	private Path directory;
+
+	private ProductStockView productStockView;
+
+	@Benchmark
+	public int load() {
+		return this.productStockView.size();
+	}
+
+	@Setup(Level.Invocation)
+	public void restart() {
+		this.productStockView = this.context.getAutowireCapableBeanFactory().createBean(ProductStockView.class);
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("stock");
+		this.context = "file".equals(this.source)
+				? BenchmarkContext.start("product.stock-file.directory=" + this.directory)
+				: BenchmarkContext.start();
+		BenchmarkContext.seedProducts(this.context, this.products);
+
+		// The seed is inserted behind the back of the view, which was loaded empty
+		// on startup, so it is read again, writing the stock file...
+
+		final ProductStockView productStockView = this.context.getBean(ProductStockView.class);
+		productStockView.allProductsChanged();
+		productStockView.size();
+		productStockView.checkpoint();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		this.context.close();
+		FileSystemUtils.deleteRecursively(this.directory);
+	}
+}
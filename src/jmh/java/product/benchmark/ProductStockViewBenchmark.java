@@ -0,0 +1,96 @@
+package product.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import product.model.Product;
+import product.service.impl.ProductStockView;
+
+/**
+ * Compares scanning the whole catalogue for shortfalls with the
+ * <code>ProductStockView</code> against applying
+ * <code>Product.getProductPurchaseRequirement</code> to every
+ * <code>Product</code> entity, with the same catalogue loaded into both.
+ * <P>
+ * <code>forEachShortfall</code> passes each shortfall as primitive values, so
+ * allocates nothing per <code>Product</code>, while
+ * <code>getProductShortfalls</code> also builds the list of
+ * <code>ProductShortfall</code> projections that the generator writes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class ProductStockViewBenchmark {
+
+	@Param({ "1000000" })
+	private int products;
+
+	private ConfigurableApplicationContext context;
+
+	private List<Product> entities;
+
+	private ProductStockView productStockView;
+
+	@Benchmark
+	public void forEachShortfall(final Blackhole blackhole) {
+		this.productStockView.forEachShortfall((ID, name, amount) -> blackhole.consume(amount));
+	}
+
+	@Benchmark
+	public Object getProductShortfalls() {
+		return this.productStockView.getProductShortfalls();
+	}
+
+	@Benchmark
+	public void scanEntities(final Blackhole blackhole) {
+		for (final Product product : this.entities) {
+			product.getProductPurchaseRequirement()
+					.ifPresent(productPurchaseRequirement -> blackhole.consume(productPurchaseRequirement.getAmount()));
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = BenchmarkContext.start();
+		BenchmarkContext.seedProducts(this.context, this.products);
+
+		this.productStockView = this.context.getBean(ProductStockView.class);
+		this.productStockView.size();
+
+		this.entities = this.context.getBean(JdbcTemplate.class)
+				.query("select id, name, blocked, current_amount, min_amount from product order by id", (resultSet, row) -> {
+					final Product product = new Product();
+					product.setID(resultSet.getLong(1));
+					product.setName(resultSet.getString(2));
+					product.setBlocked(resultSet.getBoolean(3));
+					product.setCurrentAmount(resultSet.getLong(4));
+					product.setMinAmount(resultSet.getLong(5));
+					return product;
+				});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+}
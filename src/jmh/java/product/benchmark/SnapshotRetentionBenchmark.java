@@ -0,0 +1,99 @@
+package product.benchmark;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import product.model.ProductPurchaseRequirementSnapshot;
+import product.model.RetentionReport;
+import product.repository.ProductPurchaseRequirementSnapshotRepository;
+import product.service.impl.LatestSnapshotCache;
+import product.service.impl.SnapshotRetention;
+
+/**
+ * Measures the time, in milliseconds, that <code>SnapshotRetention</code> takes
+ * to purge seven of twelve daily snapshots of 100,000 rows each, 700,000 of
+ * the 1,200,000 rows in the table, in batches of 50,000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xms1g", "-Xmx2g" })
+public class SnapshotRetentionBenchmark {
+
+	static final int ROWS = 100000;
+
+	static final int SNAPSHOTS = 12;
+
+	private Clock clock;
+
+	private ConfigurableApplicationContext context;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private ProductPurchaseRequirementSnapshotRepository productPurchaseRequirementSnapshotRepository;
+
+	private SnapshotRetention snapshotRetention;
+
+	@Benchmark
+	public RetentionReport purge() {
+		final RetentionReport retentionReport = this.snapshotRetention.purge();
+
+		if (retentionReport.getRowsDeleted() != 7L * SnapshotRetentionBenchmark.ROWS) {
+			throw new IllegalStateException("Purged " + retentionReport.getRowsDeleted() + " rows");
+		}
+
+		return retentionReport;
+	}
+
+	@Setup(Level.Iteration)
+	public void seedSnapshots() {
+		this.jdbcTemplate.update("delete from product_purchase_requirement");
+		this.jdbcTemplate.update("delete from product_purchase_requirement_snapshot");
+		this.context.getBean(LatestSnapshotCache.class).invalidate();
+
+		for (int daysAgo = SnapshotRetentionBenchmark.SNAPSHOTS - 1; daysAgo >= 0; daysAgo--) {
+			ProductPurchaseRequirementSnapshot snapshot = new ProductPurchaseRequirementSnapshot();
+			snapshot.setItemCount((long) SnapshotRetentionBenchmark.ROWS);
+			snapshot.setStatus(ProductPurchaseRequirementSnapshot.Status.COMPLETE);
+			snapshot.setTime(this.clock.millis() - TimeUnit.DAYS.toMillis(daysAgo) - 1000);
+			snapshot = this.productPurchaseRequirementSnapshotRepository.save(snapshot);
+
+			this.jdbcTemplate.update("insert into product_purchase_requirement (amount, name, snapshot_id, time) "
+					+ "select mod(x, 50) + 1, concat('P', x), ?, ? from system_range(1, ?)", snapshot.getID(),
+					snapshot.getTime(), SnapshotRetentionBenchmark.ROWS);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.context = BenchmarkContext.start("product.retention.keep-snapshots=3", "product.retention.keep-days=5",
+				"product.retention.batch-size=50000");
+		this.clock = this.context.getBean(Clock.class);
+		this.jdbcTemplate = this.context.getBean(JdbcTemplate.class);
+		this.productPurchaseRequirementSnapshotRepository = this.context
+				.getBean(ProductPurchaseRequirementSnapshotRepository.class);
+		this.snapshotRetention = this.context.getBean(SnapshotRetention.class);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.close();
+	}
+}
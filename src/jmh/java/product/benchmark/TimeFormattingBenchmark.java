@@ -0,0 +1,69 @@
+package product.benchmark;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import product.utility.TimeUtilities;
+
+/**
+ * Compares the throughput of formatting times from many concurrent requests
+ * with <code>TimeUtilities</code> against the <code>SimpleDateFormat</code>
+ * approaches it replaced: a single shared instance, which is not thread-safe
+ * and so has to be synchronized to format correctly, and one instance per
+ * thread.
+ * <P>
+ * Run with <code>-prof gc</code> to also compare the allocation per format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(32)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TimeFormattingBenchmark {
+
+	private static final String PATTERN = "dd/MM/yyyy HH:mm:ss";
+
+	private static final long RANGE = TimeUnit.DAYS.toMillis(3650);
+
+	private final SimpleDateFormat sharedFormat = new SimpleDateFormat(TimeFormattingBenchmark.PATTERN);
+
+	private final ThreadLocal<SimpleDateFormat> threadLocalFormat = ThreadLocal
+			.withInitial(() -> new SimpleDateFormat(TimeFormattingBenchmark.PATTERN));
+
+	@Benchmark
+	public String sharedSimpleDateFormat() {
+		final Date date = new Date(TimeFormattingBenchmark.time());
+		synchronized (this.sharedFormat) {
+			return this.sharedFormat.format(date);
+		}
+	}
+
+	@Benchmark
+	public String threadLocalSimpleDateFormat() {
+		return this.threadLocalFormat.get().format(new Date(TimeFormattingBenchmark.time()));
+	}
+
+	@Benchmark
+	public String timeUtilities() {
+		return TimeUtilities.getFormattedDateTimeFromTime(TimeFormattingBenchmark.time());
+	}
+
+	private static long time() {
+		return 1500000000000L + ThreadLocalRandom.current().nextLong(TimeFormattingBenchmark.RANGE);
+	}
+}
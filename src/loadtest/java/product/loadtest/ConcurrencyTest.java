@@ -0,0 +1,217 @@
+package product.loadtest;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import product.ProductManager;
+import product.RequestExecutionCustomizer;
+
+/**
+ * Compares how many requests the service holds in flight, and what each costs,
+ * when the database stalls, in each <code>product.execution.mode</code>.
+ * <P>
+ * The application is started on a random local port against an embedded H2
+ * database. Every connection of the pool is taken, and then many concurrent
+ * tills adjust the current amount of a Product, so every request blocks waiting
+ * for a connection as it would during a database latency spike. While they
+ * are blocked, the live threads and resident memory of the process are sampled
+ * against a baseline, and once the connections are returned the time taken to
+ * drain every request is measured. Options are given as <code>key=value</code>
+ * arguments:
+ * <ul>
+ * <li><code>mode</code> - <code>platform</code> or <code>virtual</code>,
+ * default <code>platform</code></li>
+ * <li><code>requests</code> - number of concurrent requests, default 2000</li>
+ * <li><code>hold</code> - seconds the connections are held for, default 10</li>
+ * </ul>
+ * <P>
+ * The requests are sent asynchronously over one connection each, so the
+ * clients add a fixed number of threads whatever the number of requests. The
+ * virtual mode needs the test to be run on Java 21 or later, without the Groovy
+ * of the Spock tests on the classpath, as Spring Boot loads it when present and
+ * this version of Groovy does not run on Java 21.
+ */
+public final class ConcurrencyTest {
+
+	private static final String HOT_PRODUCT = "HOT";
+
+	private static final int POOL_SIZE = 10;
+
+	public static void main(final String[] args) throws Exception {
+		final Map<String, String> options = new HashMap<>();
+		for (final String arg : args) {
+			final String[] keyValue = arg.split("=", 2);
+			options.put(keyValue[0], keyValue.length == 2 ? keyValue[1] : "");
+		}
+
+		final String mode = options.getOrDefault("mode", "platform");
+		final int requests = Integer.parseInt(options.getOrDefault("requests", "2000"));
+		final int hold = Integer.parseInt(options.getOrDefault("hold", "10"));
+
+		final ConfigurableApplicationContext context = new SpringApplicationBuilder(ProductManager.class).run(
+				"--server.port=0", "--product.execution.mode=" + mode,
+				"--spring.datasource.url=jdbc:h2:mem:concurrency;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;MODE=MYSQL",
+				"--spring.datasource.hikari.maximum-pool-size=" + ConcurrencyTest.POOL_SIZE,
+				"--spring.datasource.hikari.connection-timeout=600000",
+				"--server.tomcat.max-connections=" + (requests + 100));
+
+		try {
+			new ConcurrencyTest(context, requests, hold).run(mode);
+		} finally {
+			context.close();
+		}
+	}
+
+	/**
+	 * Gets the resident memory of this process, in bytes, from the
+	 * <code>/proc</code> filesystem of Linux.
+	 *
+	 * @return the resident memory, or -1 if it is not available
+	 */
+	private static long residentBytes() {
+		try {
+			for (final String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+				if (line.startsWith("VmRSS:")) {
+					return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+				}
+			}
+		} catch (final IOException e) {
+			// Not Linux, so resident memory is not reported
+		}
+		return -1;
+	}
+
+	private static void sleepSeconds(final long seconds) throws InterruptedException {
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+	}
+
+	private final URI base;
+
+	private final ConfigurableApplicationContext context;
+
+	private final int hold;
+
+	private final HttpClient httpClient;
+
+	private final int requests;
+
+	private ConcurrencyTest(final ConfigurableApplicationContext context, final int requests, final int hold) {
+		this.context = context;
+		this.requests = requests;
+		this.hold = hold;
+		this.base = URI.create(
+				"http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/v1/");
+		this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.executor(Executors.newFixedThreadPool(4, runnable -> {
+					final Thread thread = new Thread(runnable, "concurrency-client");
+					thread.setDaemon(true);
+					return thread;
+				})).connectTimeout(Duration.ofSeconds(30)).build();
+	}
+
+	/**
+	 * Holds the requests in flight, samples the process and then drains them.
+	 *
+	 * @param mode - the requested execution mode
+	 */
+	private void run(final String mode) throws Exception {
+		final RequestExecutionCustomizer.Mode actualMode = this.context.getBean(RequestExecutionCustomizer.class)
+				.getMode();
+		final JdbcTemplate jdbcTemplate = this.context.getBean(JdbcTemplate.class);
+		jdbcTemplate.update("insert into product (blocked, current_amount, min_amount, name) values (false, 0, 0, ?)",
+				ConcurrencyTest.HOT_PRODUCT);
+
+		this.send(1).get(0).join();
+		System.gc();
+		final int baselineThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+		final long baselineResident = ConcurrencyTest.residentBytes();
+
+		final List<CompletableFuture<HttpResponse<Void>>> responses;
+
+		final DataSource dataSource = this.context.getBean(DataSource.class);
+		final List<Connection> connections = new ArrayList<>(ConcurrencyTest.POOL_SIZE);
+
+		try {
+			while (connections.size() < ConcurrencyTest.POOL_SIZE) {
+				connections.add(dataSource.getConnection());
+			}
+
+			responses = this.send(this.requests);
+			ConcurrencyTest.sleepSeconds(this.hold);
+
+			final int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+			final long resident = ConcurrencyTest.residentBytes();
+
+			System.out.printf(Locale.ROOT, "mode %s (requested %s), %d requests held for %ds%n", actualMode, mode,
+					this.requests, this.hold);
+			System.out.printf(Locale.ROOT, "live threads        %8d -> %8d (%+d)%n", baselineThreads, threads,
+					threads - baselineThreads);
+			System.out.printf(Locale.ROOT, "resident memory MB  %8.1f -> %8.1f (%+.1f KB per request)%n",
+					baselineResident / 1048576.0, resident / 1048576.0,
+					(resident - baselineResident) / 1024.0 / this.requests);
+
+		} finally {
+			for (final Connection connection : connections) {
+				connection.close();
+			}
+		}
+
+		final long drainStart = System.nanoTime();
+
+		long failed = 0;
+		for (final CompletableFuture<HttpResponse<Void>> response : responses) {
+			try {
+				if (response.join().statusCode() >= 400) {
+					failed++;
+				}
+			} catch (final RuntimeException e) {
+				failed++;
+			}
+		}
+
+		final double drainSeconds = (System.nanoTime() - drainStart) / 1e9;
+		System.out.printf(Locale.ROOT, "drained in %.2fs (%.0f requests/s), %d failed, current amount %d%n",
+				drainSeconds, this.requests / drainSeconds, failed, jdbcTemplate.queryForObject(
+						"select current_amount from product where name = ?", Long.class, ConcurrencyTest.HOT_PRODUCT));
+	}
+
+	/**
+	 * Sends concurrent sales of the hot Product.
+	 *
+	 * @param count - the number of sales
+	 * @return the future response of each
+	 */
+	private List<CompletableFuture<HttpResponse<Void>>> send(final int count) {
+		final HttpRequest request = HttpRequest
+				.newBuilder(this.base.resolve("current/" + ConcurrencyTest.HOT_PRODUCT + "/delta/-1"))
+				.method("PATCH", HttpRequest.BodyPublishers.noBody()).timeout(Duration.ofMinutes(10)).build();
+
+		final List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			responses.add(this.httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+		}
+		return responses;
+	}
+}
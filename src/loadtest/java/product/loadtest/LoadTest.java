@@ -0,0 +1,338 @@
+package product.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import product.ProductManager;
+
+/**
+ * Drives the <code>ProductController</code> with a configurable mix of
+ * <code>LoadTestOperation</code> requests from many concurrent clients, and
+ * reports the throughput and latency distribution of each operation.
+ * <P>
+ * Unless a <code>url</code> is given, the application is started on a random
+ * local port against an embedded H2 database seeded with Products, so the
+ * whole test runs offline on one machine. Options are given as
+ * <code>key=value</code> arguments:
+ * <ul>
+ * <li><code>url</code> - base URI of a running <code>ProductController</code>,
+ * such as <code>http://localhost:8080/v1/</code>, whose Products are named
+ * <code>P1</code> to <code>P&lt;products&gt;</code></li>
+ * <li><code>products</code> - number of Products to seed, default 10000</li>
+ * <li><code>clients</code> - number of concurrent clients, default 32</li>
+ * <li><code>warmup</code> - seconds run before recording, default 10</li>
+ * <li><code>duration</code> - seconds recorded, default 60</li>
+ * <li><code>rate</code> - requests per second per client, or 0 for each client
+ * to send its next request as soon as the last completes, default 0</li>
+ * <li><code>mix</code> - relative weight of each operation, default
+ * <code>scan:80,sale:15,poll:4,snapshot:1</code></li>
+ * <li><code>report</code> - directory the report is written to, default
+ * <code>target/loadtest</code></li>
+ * </ul>
+ * <P>
+ * At a fixed rate, latency is measured from when each request was due rather
+ * than when it was sent, so that a stalled server is not hidden by clients
+ * waiting on it. The report has a summary of every operation and an
+ * HdrHistogram percentile distribution of each, in milliseconds. Responses
+ * with a status of 400 or above are counted as errors, which includes polls
+ * for the latest snapshot before the first has been generated.
+ */
+public final class LoadTest {
+
+	private static final String DEFAULT_MIX = "scan:80,sale:15,poll:4,snapshot:1";
+
+	private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+	public static void main(final String[] args) throws Exception {
+		final Map<String, String> options = new HashMap<>();
+		for (final String arg : args) {
+			final String[] keyValue = arg.split("=", 2);
+			options.put(keyValue[0], keyValue.length == 2 ? keyValue[1] : "");
+		}
+
+		final int products = Integer.parseInt(options.getOrDefault("products", "10000"));
+		final int clients = Integer.parseInt(options.getOrDefault("clients", "32"));
+
+		ConfigurableApplicationContext context = null;
+		URI base;
+
+		if (options.containsKey("url")) {
+			base = URI.create(options.get("url"));
+		} else {
+			context = LoadTest.start(products, clients);
+			base = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/v1/");
+		}
+
+		try {
+			new LoadTest(base, products, clients, Integer.parseInt(options.getOrDefault("warmup", "10")),
+					Integer.parseInt(options.getOrDefault("duration", "60")),
+					Double.parseDouble(options.getOrDefault("rate", "0")),
+					LoadTest.parseMix(options.getOrDefault("mix", LoadTest.DEFAULT_MIX)))
+							.run(Path.of(options.getOrDefault("report", "target/loadtest")));
+		} finally {
+			if (context != null) {
+				context.close();
+			}
+		}
+	}
+
+	/**
+	 * Parses the relative weight of each operation.
+	 *
+	 * @param mix - comma separated <code>operation:weight</code> pairs
+	 * @return the cumulative weight of each operation, in declaration order
+	 */
+	private static int[] parseMix(final String mix) {
+		final Map<LoadTestOperation, Integer> weights = new EnumMap<>(LoadTestOperation.class);
+		for (final String entry : mix.split(",")) {
+			final String[] operationWeight = entry.trim().split(":");
+			weights.put(LoadTestOperation.valueOf(operationWeight[0].trim().toUpperCase(Locale.ROOT)),
+					Integer.parseInt(operationWeight[1].trim()));
+		}
+
+		final int[] cumulativeWeights = new int[LoadTestOperation.values().length];
+		int total = 0;
+		for (final LoadTestOperation operation : LoadTestOperation.values()) {
+			total += weights.getOrDefault(operation, 0);
+			cumulativeWeights[operation.ordinal()] = total;
+		}
+
+		if (total <= 0) {
+			throw new IllegalArgumentException("The mix " + mix + " has no operations");
+		}
+
+		return cumulativeWeights;
+	}
+
+	/**
+	 * Starts the application on a random port, against an embedded H2 database
+	 * seeded with Products. Every third Product is below its minimum stock level,
+	 * and every seventh Product is blocked.
+	 *
+	 * @param products - the number of Products to seed
+	 * @param clients  - the number of concurrent clients
+	 * @return the started application context
+	 */
+	private static ConfigurableApplicationContext start(final int products, final int clients) {
+		final ConfigurableApplicationContext context = new SpringApplicationBuilder(ProductManager.class).run(
+				"--server.port=0",
+				"--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;MODE=MYSQL",
+				"--spring.datasource.hikari.maximum-pool-size=" + Math.max(10, clients),
+				"--server.tomcat.max-threads=" + Math.max(200, clients));
+
+		context.getBean(JdbcTemplate.class)
+				.update("insert into product (blocked, current_amount, min_amount, name) "
+						+ "select mod(x, 7) = 0, case when mod(x, 3) = 0 then 5 else 50 end, 10, concat('P', x) "
+						+ "from system_range(1, ?)", products);
+
+		return context;
+	}
+
+	private final URI base;
+
+	private final int clients;
+
+	private final int[] cumulativeWeights;
+
+	private final int duration;
+
+	private final Map<LoadTestOperation, LongAdder> errors = new EnumMap<>(LoadTestOperation.class);
+
+	private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(10)).build();
+
+	private final int products;
+
+	private final double rate;
+
+	private final Map<LoadTestOperation, Recorder> recorders = new EnumMap<>(LoadTestOperation.class);
+
+	private final int warmup;
+
+	private LoadTest(final URI base, final int products, final int clients, final int warmup, final int duration,
+			final double rate, final int[] cumulativeWeights) {
+		this.base = base;
+		this.products = products;
+		this.clients = clients;
+		this.warmup = warmup;
+		this.duration = duration;
+		this.rate = rate;
+		this.cumulativeWeights = cumulativeWeights;
+
+		for (final LoadTestOperation operation : LoadTestOperation.values()) {
+			this.errors.put(operation, new LongAdder());
+			this.recorders.put(operation, new Recorder(LoadTest.HIGHEST_TRACKABLE_MICROS, 3));
+		}
+	}
+
+	/**
+	 * Runs the clients until the warmup and duration have passed, then writes the
+	 * report.
+	 *
+	 * @param reportDirectory - directory the report is written to
+	 */
+	private void run(final Path reportDirectory) throws InterruptedException, IOException {
+		System.out.printf("Load testing %s with %d clients for %ds after a %ds warmup%n", this.base, this.clients,
+				this.duration, this.warmup);
+
+		final long start = System.nanoTime();
+		final long end = start + TimeUnit.SECONDS.toNanos(this.warmup + this.duration);
+
+		final List<Thread> threads = new ArrayList<>(this.clients);
+		for (int i = 0; i < this.clients; i++) {
+			final Thread thread = new Thread(() -> this.runClient(end), "loadtest-client-" + i);
+			thread.setDaemon(true);
+			thread.start();
+			threads.add(thread);
+		}
+
+		Thread.sleep(TimeUnit.SECONDS.toMillis(this.warmup));
+		for (final LoadTestOperation operation : LoadTestOperation.values()) {
+			this.recorders.get(operation).reset();
+			this.errors.get(operation).reset();
+		}
+		final long recordingStart = System.nanoTime();
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		final double seconds = (System.nanoTime() - recordingStart) / 1e9;
+		final Map<LoadTestOperation, Histogram> histograms = new EnumMap<>(LoadTestOperation.class);
+		for (final LoadTestOperation operation : LoadTestOperation.values()) {
+			histograms.put(operation, this.recorders.get(operation).getIntervalHistogram());
+		}
+
+		this.report(histograms, seconds, reportDirectory);
+	}
+
+	/**
+	 * Sends requests from one client until the end time.
+	 *
+	 * @param end - the end time, as from <code>System.nanoTime</code>
+	 */
+	private void runClient(final long end) {
+		final long interval = this.rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / this.rate) : 0;
+		long due = System.nanoTime();
+
+		while (due < end) {
+			final LoadTestOperation operation = this.nextOperation();
+
+			if (interval > 0) {
+				due += interval;
+				final long wait = due - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				}
+			} else {
+				due = System.nanoTime();
+			}
+
+			boolean succeeded;
+			try {
+				succeeded = this.httpClient
+						.send(operation.request(this.base, this.products).timeout(Duration.ofMinutes(5)).build(),
+								HttpResponse.BodyHandlers.discarding())
+						.statusCode() < 400;
+			} catch (final IOException e) {
+				succeeded = false;
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			final long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due);
+			this.recorders.get(operation).recordValue(Math.min(micros, LoadTest.HIGHEST_TRACKABLE_MICROS));
+			if (!succeeded) {
+				this.errors.get(operation).increment();
+			}
+		}
+	}
+
+	/**
+	 * Picks the next operation at random by its weight in the mix.
+	 *
+	 * @return the operation
+	 */
+	private LoadTestOperation nextOperation() {
+		final int pick = ThreadLocalRandom.current()
+				.nextInt(this.cumulativeWeights[this.cumulativeWeights.length - 1]);
+		int ordinal = 0;
+		while (pick >= this.cumulativeWeights[ordinal]) {
+			ordinal++;
+		}
+		return LoadTestOperation.values()[ordinal];
+	}
+
+	/**
+	 * Prints the summary and writes it, with the percentile distribution of each
+	 * operation, to the report directory.
+	 *
+	 * @param histograms      - the recorded latencies of each operation, in
+	 *                        microseconds
+	 * @param seconds         - the recorded duration in seconds
+	 * @param reportDirectory - directory the report is written to
+	 */
+	private void report(final Map<LoadTestOperation, Histogram> histograms, final double seconds,
+			final Path reportDirectory) throws IOException {
+		Files.createDirectories(reportDirectory);
+
+		final Histogram total = new Histogram(LoadTest.HIGHEST_TRACKABLE_MICROS, 3);
+		histograms.values().forEach(total::add);
+
+		try (PrintStream summary = new PrintStream(Files.newOutputStream(reportDirectory.resolve("summary.txt")),
+				true, "UTF-8")) {
+			for (final PrintStream out : List.of(System.out, summary)) {
+				out.printf("%-10s %10s %8s %10s %10s %10s %10s %10s%n", "operation", "count", "errors", "ops/s",
+						"p50 ms", "p99 ms", "p999 ms", "max ms");
+				for (final LoadTestOperation operation : LoadTestOperation.values()) {
+					this.printSummary(out, operation.name(), histograms.get(operation),
+							this.errors.get(operation).sum(), seconds);
+				}
+				this.printSummary(out, "TOTAL", total,
+						this.errors.values().stream().mapToLong(LongAdder::sum).sum(), seconds);
+			}
+		}
+
+		for (final LoadTestOperation operation : LoadTestOperation.values()) {
+			try (PrintStream out = new PrintStream(
+					Files.newOutputStream(
+							reportDirectory.resolve(operation.name().toLowerCase(Locale.ROOT) + ".hgrm")),
+					true, "UTF-8")) {
+				histograms.get(operation).outputPercentileDistribution(out, 1000.0);
+			}
+		}
+
+		System.out.println("Report written to " + reportDirectory.toAbsolutePath());
+	}
+
+	private void printSummary(final PrintStream out, final String name, final Histogram histogram,
+			final long errors, final double seconds) {
+		out.printf(Locale.ROOT, "%-10s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f%n", name,
+				histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds,
+				histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+				histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+	}
+}
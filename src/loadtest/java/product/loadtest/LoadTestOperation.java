@@ -0,0 +1,77 @@
+package product.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An operation of the load test, as one request to the
+ * <code>ProductController</code> from one of the clients it stands in for.
+ */
+public enum LoadTestOperation {
+
+	/**
+	 * A tablet scanner setting the current amount of a random Product.
+	 */
+	SCAN {
+		@Override
+		HttpRequest.Builder request(final URI base, final int products) {
+			return HttpRequest
+					.newBuilder(base.resolve("current/" + LoadTestOperation.randomName(products) + "/"
+							+ ThreadLocalRandom.current().nextInt(0, 100)))
+					.method("PATCH", HttpRequest.BodyPublishers.noBody());
+		}
+	},
+
+	/**
+	 * A till selling one of a random Product.
+	 */
+	SALE {
+		@Override
+		HttpRequest.Builder request(final URI base, final int products) {
+			return HttpRequest
+					.newBuilder(base.resolve("current/" + LoadTestOperation.randomName(products) + "/delta/-1"))
+					.method("PATCH", HttpRequest.BodyPublishers.noBody());
+		}
+	},
+
+	/**
+	 * The order service generating a snapshot of Product purchase requirements.
+	 */
+	SNAPSHOT {
+		@Override
+		HttpRequest.Builder request(final URI base, final int products) {
+			return HttpRequest.newBuilder(base.resolve("productPurchaseRequirements")).GET();
+		}
+	},
+
+	/**
+	 * The order service polling the latest snapshot of Product purchase
+	 * requirements.
+	 */
+	POLL {
+		@Override
+		HttpRequest.Builder request(final URI base, final int products) {
+			return HttpRequest.newBuilder(base.resolve("latestProductPurchaseRequirements")).GET();
+		}
+	};
+
+	/**
+	 * Gets the name of a random seeded Product.
+	 *
+	 * @param products - the number of seeded Products
+	 * @return the name of the Product
+	 */
+	private static String randomName(final int products) {
+		return "P" + ThreadLocalRandom.current().nextInt(1, products + 1);
+	}
+
+	/**
+	 * Builds a request of this operation.
+	 *
+	 * @param base     - URI of the <code>ProductController</code>, ending in a /
+	 * @param products - the number of seeded Products
+	 * @return the request builder
+	 */
+	abstract HttpRequest.Builder request(URI base, int products);
+}
@@ -1,7 +1,11 @@
 package product;
 
+import java.time.Clock;
+
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * A Spring Boot microservice used to manage Products current and minimum
@@ -10,8 +14,20 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * requirements.
  */
 @SpringBootApplication
+@EnableScheduling
 public class ProductManager {
 
+	/**
+	 * The Clock that snapshot, retention and other service times are read from,
+	 * so that they can be fixed in tests.
+	 *
+	 * @return the system Clock in UTC
+	 */
+	@Bean
+	public Clock clock() {
+		return Clock.systemUTC();
+	}
+
 	public static void main(final String[] args) {
 		SpringApplication.run(ProductManager.class, args);
 	}
@@ -0,0 +1,134 @@
+package product;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Chooses the threads that the embedded Tomcat serves requests on, by the
+ * <code>product.execution.mode</code> property.
+ * <P>
+ * In the default <code>platform</code> mode Tomcat keeps its bounded pool of
+ * platform threads, sized by <code>server.tomcat.max-threads</code>, so when
+ * every thread is blocked, such as on a slow database, further requests queue
+ * for a thread.
+ * <P>
+ * In the <code>virtual</code> mode every request is served on its own virtual
+ * thread, which needs Java 21 or later, so blocked requests no longer hold a
+ * platform thread and its stack each. Concurrent database work is still bounded
+ * by the connection pool. Virtual threads are created by reflection, as this
+ * service is built for Java 11, and on an earlier runtime a warning is logged
+ * and the platform pool is kept.
+ */
+@Component
+public class RequestExecutionCustomizer implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+
+	/**
+	 * The modes that requests can be served in.
+	 */
+	public enum Mode {
+
+		/**
+		 * Requests are served by the bounded pool of platform threads of Tomcat.
+		 */
+		PLATFORM,
+
+		/**
+		 * Every request is served on its own virtual thread, on Java 21 or later.
+		 */
+		VIRTUAL
+	}
+
+	/**
+	 * The Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(RequestExecutionCustomizer.class);
+
+	/**
+	 * Creates an executor that runs every task on a new virtual thread.
+	 *
+	 * @param name - prefix of the name of each thread
+	 * @return the executor, or <code>null</code> if the runtime does not have
+	 *         virtual threads
+	 */
+	static ExecutorService newVirtualThreadPerTaskExecutor(final String name) {
+
+		try {
+			final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			final Object builder = builderClass.getMethod("name", String.class, long.class)
+					.invoke(ofVirtual.invoke(null), name, 0L);
+			final ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+					.invoke(null, threadFactory);
+		} catch (final ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * The executor of virtual threads requests are served on, <code>null</code>
+	 * if Tomcat keeps its own pool.
+	 */
+	private final ExecutorService executorService;
+
+	/**
+	 * Constructs a <code>RequestExecutionCustomizer</code>.
+	 *
+	 * @param mode - the mode that requests are served in
+	 */
+	public RequestExecutionCustomizer(@Value("${product.execution.mode:platform}") final Mode mode) {
+
+		if (mode == Mode.VIRTUAL) {
+			this.executorService = RequestExecutionCustomizer.newVirtualThreadPerTaskExecutor("http-virtual-");
+
+			if (this.executorService == null) {
+				RequestExecutionCustomizer.LOGGER.warn(
+						"Virtual threads need Java 21 or later but this is Java {}, so requests are served by the platform thread pool",
+						Runtime.version().feature());
+			}
+		} else {
+			this.executorService = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void customize(final TomcatServletWebServerFactory factory) {
+		if (this.executorService != null) {
+			factory.addConnectorCustomizers(connector -> connector.getProtocolHandler().setExecutor(this.executorService));
+		}
+	}
+
+	/**
+	 * Gets the mode that requests are actually served in.
+	 *
+	 * @return <code>VIRTUAL</code> if requests are served on virtual threads,
+	 *         otherwise <code>PLATFORM</code>
+	 */
+	public Mode getMode() {
+		return this.executorService == null ? Mode.PLATFORM : Mode.VIRTUAL;
+	}
+
+	/**
+	 * Stops accepting requests onto virtual threads, once Tomcat has stopped.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		if (this.executorService != null) {
+			this.executorService.shutdown();
+		}
+	}
+}
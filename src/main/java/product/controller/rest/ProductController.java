@@ -1,8 +1,14 @@
 package product.controller.rest;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -10,10 +16,24 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import product.model.Product;
+import product.model.ProductDemandStatistics;
 import product.model.ProductPurchaseRequirement;
+import product.model.ProductPurchaseRequirementChanges;
+import product.model.ProductPurchaseRequirementPage;
+import product.model.ProductUpdate;
+import product.model.ProductUpdateResult;
+import product.model.RetentionReport;
+import product.model.SnapshotJob;
 import product.service.api.ProductService;
 
 /**
@@ -23,6 +43,16 @@ import product.service.api.ProductService;
 @RequestMapping("/v1/")
 public class ProductController {
 
+	/**
+	 * Media type of newline delimited JSON, one JSON document per line.
+	 */
+	private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+	/**
+	 * Writes each line of newline delimited JSON, without indentation.
+	 */
+	private final ObjectWriter ndjsonWriter;
+
 	/**
 	 * In order to have a controller light design, we will just be doing straight
 	 * delegation to this service within the controller method bodies..
@@ -30,6 +60,45 @@ public class ProductController {
 	@Autowired
 	private ProductService productService;
 
+	/**
+	 * Constructs a <code>ProductController</code>.
+	 *
+	 * @param objectMapper - the application ObjectMapper
+	 */
+	@Autowired
+	public ProductController(final ObjectMapper objectMapper) {
+		this.ndjsonWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+	}
+
+	/**
+	 * Adjusts the current amount of a Product in stock by a delta, for example
+	 * minus one for each sale.
+	 *
+	 * @param name  - name of the Product
+	 * @param delta - amount to add to the current amount, negative to subtract
+	 * @return the current amount of the Product in stock after the adjustment, or
+	 *         202 Accepted with no body if the adjustment has been buffered and is
+	 *         not yet applied
+	 */
+	@PatchMapping("/current/{name}/delta/{delta}")
+	public ResponseEntity<Long> adjustCurrentAmount(@PathVariable(value = "name") final String name,
+			@PathVariable(value = "delta") final Long delta) {
+		final Long currentAmount = this.productService.adjustCurrentAmount(name, delta);
+		return currentAmount == null ? ResponseEntity.accepted().build() : ResponseEntity.ok(currentAmount);
+	}
+
+	/**
+	 * Applies a batch of mixed changes to Products, such as the results of a
+	 * stock-take, in a single call.
+	 *
+	 * @param productUpdates - the changes to apply, in order
+	 * @return the outcome of each change, in the same order
+	 */
+	@PostMapping("/bulk")
+	public List<ProductUpdateResult> applyBatch(@RequestBody final List<ProductUpdate> productUpdates) {
+		return this.productService.applyBatch(productUpdates);
+	}
+
 	/**
 	 * Block a Product.
 	 *
@@ -61,6 +130,17 @@ public class ProductController {
 		this.productService.delete(name);
 	}
 
+	/**
+	 * Gets the report of the last run of the retention of historical Product
+	 * purchase requirements. Will be empty if it has never been ran.
+	 *
+	 * @return the report of the last run
+	 */
+	@GetMapping("/retention")
+	public RetentionReport getLastRetentionReport() {
+		return this.productService.getLastRetentionReport();
+	}
+
 	/**
 	 * Gets the Last generated Product purchase requirements. Will return 404 if
 	 * /productPurchaseRequirements has never been ran.
@@ -72,9 +152,59 @@ public class ProductController {
 		return this.productService.getLatestProductPurchaseRequirements();
 	}
 
+	/**
+	 * Gets the average, peak and trend of the demand for a Product over time,
+	 * along with its daily and monthly breakdown. Will return 404 if no Product
+	 * purchase requirements have been recorded for the Product.
+	 *
+	 * @param name - name of the Product
+	 * @return the demand statistics of the Product
+	 */
+	@GetMapping("/stats/{name}")
+	public ProductDemandStatistics getProductDemandStatistics(@PathVariable(value = "name") final String name) {
+		return this.productService.getProductDemandStatistics(name);
+	}
+
+	/**
+	 * Gets the Product purchase requirements that were added, removed or changed
+	 * in amount in the latest generated Product purchase requirements, compared
+	 * with those that were the latest at the specified time. Will return 404 if
+	 * /productPurchaseRequirements has never been ran.
+	 *
+	 * @param since - time of the Product purchase requirements already held
+	 * @return the changes to the Product purchase requirements
+	 */
+	@GetMapping("/productPurchaseRequirements/changes")
+	public ProductPurchaseRequirementChanges getProductPurchaseRequirementChanges(
+			@RequestParam(value = "since") final Long since) {
+		return this.productService.getProductPurchaseRequirementChanges(since);
+	}
+
+	/**
+	 * Gets a page of the history of Product purchase requirements generated within
+	 * a time range, optionally for a single Product. Further pages are got by
+	 * passing the cursor returned with the previous page.
+	 *
+	 * @param from   - start of the time range, inclusive
+	 * @param to     - end of the time range, exclusive, no end if not specified
+	 * @param name   - name of the Product, every Product if not specified
+	 * @param cursor - cursor returned with the previous page, if any
+	 * @return the page of Product purchase requirements
+	 */
+	@GetMapping(value = "/productPurchaseRequirements", params = "from")
+	public ProductPurchaseRequirementPage getProductPurchaseRequirementHistory(
+			@RequestParam(value = "from") final Long from,
+			@RequestParam(value = "to", required = false) final Long to,
+			@RequestParam(value = "name", required = false) final String name,
+			@RequestParam(value = "cursor", required = false) final String cursor) {
+		return this.productService.getProductPurchaseRequirementHistory(from, to, name, cursor);
+	}
+
 	/**
 	 * Generates and gets Product purchase requirements, based on rules that have
-	 * been defined for Products.
+	 * been defined for Products. The request is held open until every one is
+	 * generated, so for a large catalogue a job started by POST /snapshots, then
+	 * polled, is preferred.
 	 *
 	 * @return Set of Product purchase requirements
 	 */
@@ -83,6 +213,19 @@ public class ProductController {
 		return this.productService.getProductPurchaseRequirements();
 	}
 
+	/**
+	 * Gets the progress or result of a job generating a snapshot of Product
+	 * purchase requirements. Will return 404 if the job was never started, or has
+	 * been forgotten since it finished.
+	 *
+	 * @param id - ID of the job
+	 * @return the job
+	 */
+	@GetMapping("/snapshots/{id}")
+	public SnapshotJob getSnapshotJob(@PathVariable(value = "id") final Long id) {
+		return this.productService.getSnapshotJob(id);
+	}
+
 	/**
 	 * Overrides a Product amount to purchase, regardless if the Product is blocked
 	 * or has a different minimum stock level already set.
@@ -96,6 +239,17 @@ public class ProductController {
 		this.productService.overrideMinAmount(name, amount);
 	}
 
+	/**
+	 * Purges historical Product purchase requirements that are no longer kept,
+	 * without waiting for the retention schedule.
+	 *
+	 * @return the report of the run, including what was purged
+	 */
+	@PostMapping("/retention/purge")
+	public RetentionReport purgeProductPurchaseRequirementSnapshots() {
+		return this.productService.purgeProductPurchaseRequirementSnapshots();
+	}
+
 	/**
 	 * Sets the current amount of a Product in stock.
 	 *
@@ -120,6 +274,71 @@ public class ProductController {
 		this.productService.setMinAmount(name, amount);
 	}
 
+	/**
+	 * Starts a job generating a snapshot of Product purchase requirements in the
+	 * background, or joins the job already generating one. Returns 202 with the
+	 * location of the job, to be polled until it is complete.
+	 *
+	 * @return the started or joined job
+	 */
+	@PostMapping("/snapshots")
+	public ResponseEntity<SnapshotJob> startSnapshotJob() {
+		final SnapshotJob snapshotJob = this.productService.startSnapshotJob();
+
+		return ResponseEntity.accepted().location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}")
+				.buildAndExpand(snapshotJob.getID()).toUri()).body(snapshotJob);
+	}
+
+	/**
+	 * Streams the Last generated Product purchase requirements as newline
+	 * delimited JSON. Will return 404 if /productPurchaseRequirements has never
+	 * been ran.
+	 *
+	 * @return the streamed body
+	 */
+	@GetMapping(value = "/latestProductPurchaseRequirements/stream",
+			produces = ProductController.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamLatestProductPurchaseRequirements() {
+		return this.toNdjson(this.productService::streamLatestProductPurchaseRequirements);
+	}
+
+	/**
+	 * Generates Product purchase requirements, based on rules that have been
+	 * defined for Products, and streams them as newline delimited JSON as they are
+	 * generated.
+	 *
+	 * @return the streamed body
+	 */
+	@GetMapping(value = "/productPurchaseRequirements/stream",
+			produces = ProductController.APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> streamProductPurchaseRequirements() {
+		return this.toNdjson(this.productService::streamProductPurchaseRequirements);
+	}
+
+	/**
+	 * Creates a newline delimited JSON response body that is written by the
+	 * specified streaming service method.
+	 *
+	 * @param streamer - service method that passes each Product purchase
+	 *                 requirement to a consumer
+	 * @return the streamed body
+	 */
+	private ResponseEntity<StreamingResponseBody> toNdjson(
+			final Consumer<Consumer<ProductPurchaseRequirement>> streamer) {
+
+		final StreamingResponseBody body = outputStream -> streamer.accept(productPurchaseRequirement -> {
+			try {
+				outputStream.write(this.ndjsonWriter.writeValueAsBytes(productPurchaseRequirement));
+				outputStream.write('\n');
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType(ProductController.APPLICATION_NDJSON_VALUE))
+				.body(body);
+	}
+
 	/**
 	 * Unblock a Product.
 	 *
@@ -0,0 +1,24 @@
+package product.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown to indicate that a cursor for the next page of results was not one
+ * that was returned with a previous page.
+ */
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class InvalidCursorException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs a <code>InvalidCursorException</code> with the specified detail
+	 * message.
+	 *
+	 * @param s the detail message.
+	 */
+	public InvalidCursorException(final String s) {
+		super(s);
+	}
+}
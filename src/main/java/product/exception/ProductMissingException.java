@@ -0,0 +1,25 @@
+package product.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * This Exception is thrown when a change is made to a <code>Product</code> that
+ * does not exist, even if the change would only have been applied later, such
+ * as a buffered stock adjustment.
+ */
+@ResponseStatus(value = HttpStatus.NOT_FOUND)
+public class ProductMissingException extends InvalidProductException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs a <code>ProductMissingException</code> with the specified detail
+	 * message.
+	 *
+	 * @param s the detail message.
+	 */
+	public ProductMissingException(final String s) {
+		super(s);
+	}
+}
@@ -21,4 +21,15 @@ public class ProductUpdateException extends RuntimeException {
 	public ProductUpdateException(final String s) {
 		super(s);
 	}
+
+	/**
+	 * Constructs a <code>ProductUpdateException</code> with the specified detail
+	 * message and cause.
+	 *
+	 * @param s     the detail message.
+	 * @param cause the cause.
+	 */
+	public ProductUpdateException(final String s, final Throwable cause) {
+		super(s, cause);
+	}
 }
@@ -0,0 +1,24 @@
+package product.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * This Exception is thrown when there is an attempt to get a snapshot job that
+ * was never started, or has been forgotten since it finished.
+ */
+@ResponseStatus(value = HttpStatus.NOT_FOUND)
+public class SnapshotJobMissingException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs a <code>SnapshotJobMissingException</code> with the specified
+	 * detail message.
+	 *
+	 * @param s the detail message.
+	 */
+	public SnapshotJobMissingException(final String s) {
+		super(s);
+	}
+}
@@ -7,14 +7,17 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.Version;
 
 /**
  * Product represents a product that can possibly be reordered, depending on
  * business rules.
  */
 @Entity
-@Table(name = "product")
+@Table(name = "product", indexes = {
+		@Index(name = "product_shortfall_index", columnList = "blocked, current_amount, min_amount") })
 public class Product {
 
 	/**
@@ -49,9 +52,18 @@ public class Product {
 	/**
 	 * The name of this <code>Product</code>
 	 */
-	@Column(name = "name", nullable = false)
+	@Column(name = "name", nullable = false, unique = true)
 	private String name;
 
+	/**
+	 * The number of times this <code>Product</code> has been updated, checked on
+	 * every save so that an update based on a stale read fails rather than
+	 * overwriting a concurrent one.
+	 */
+	@Version
+	@Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+	private Long version;
+
 	/**
 	 * Gets if the <code>Product</code> is blocked from further ordering.
 	 *
@@ -111,7 +123,11 @@ public class Product {
 	 * indicate that the best location would be inside the Product class, with the
 	 * logic part of the entity as opposed to in the service. Therefore, for this
 	 * purposes of this exercise I have placed it here.
-	 *
+	 * <P>
+	 * Snapshots of requirements are generated by the equivalent
+	 * <code>ProductRepository.findShortfallsAfterID</code> query, so that only
+	 * short Products leave the database. This method remains the reference
+	 * definition of the rule that the query is checked against.
 	 *
 	 * @return <code>ProductPurchaseRequirement</code> for this
 	 *         <code>Product</code>, if applicable
@@ -132,6 +148,15 @@ public class Product {
 		return Optional.ofNullable(productPurchaseRequirement);
 	}
 
+	/**
+	 * Gets the number of times the <code>Product</code> has been updated.
+	 *
+	 * @return the version of the <code>Product</code>
+	 */
+	public Long getVersion() {
+		return this.version;
+	}
+
 	/**
 	 * Sets if the <code>Product</code> is blocked from further ordering.
 	 *
@@ -179,4 +204,13 @@ public class Product {
 	public void setName(final String name) {
 		this.name = name;
 	}
+
+	/**
+	 * Sets the number of times the <code>Product</code> has been updated.
+	 *
+	 * @param version - version of the <code>Product</code>
+	 */
+	public void setVersion(final Long version) {
+		this.version = version;
+	}
 }
@@ -0,0 +1,192 @@
+package product.model;
+
+import java.time.ZoneId;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import product.utility.TimeUtilities;
+
+/**
+ * ProductDemandStatistic is a rollup of the <code>ProductPurchaseRequirement</code>
+ * instances of a single <code>Product</code> within a single day or month,
+ * maintained as requirements are generated and overridden, so that demand over
+ * time can be reported without reading the requirements themselves.
+ */
+@Entity
+@Table(name = "product_demand_statistic", uniqueConstraints = {
+		@UniqueConstraint(name = "product_demand_statistic_bucket_unique", columnNames = { "name", "granularity",
+				"bucket_start" }) })
+public class ProductDemandStatistic {
+
+	/**
+	 * The period covered by a <code>ProductDemandStatistic</code>.
+	 */
+	public enum Granularity {
+
+		/**
+		 * A calendar day.
+		 */
+		DAY {
+			@Override
+			public long getBucketStart(final long time, final ZoneId zoneId) {
+				return TimeUtilities.getStartOfDayTime(time, zoneId);
+			}
+		},
+
+		/**
+		 * A calendar month.
+		 */
+		MONTH {
+			@Override
+			public long getBucketStart(final long time, final ZoneId zoneId) {
+				return TimeUtilities.getStartOfMonthTime(time, zoneId);
+			}
+		};
+
+		/**
+		 * Gets the start of the period of this granularity that contains a time.
+		 *
+		 * @param time   - time as UTC milliseconds from the epoch
+		 * @param zoneId - time zone that periods start in
+		 * @return the start of the period as UTC milliseconds from the epoch
+		 */
+		public abstract long getBucketStart(long time, ZoneId zoneId);
+	}
+
+	/**
+	 * The largest amount required within the period.
+	 */
+	@Column(name = "amount_max", nullable = false)
+	private Long amountMax;
+
+	/**
+	 * The total amount required within the period.
+	 */
+	@Column(name = "amount_sum", nullable = false)
+	private Long amountSum;
+
+	/**
+	 * The start of the period as UTC milliseconds from the epoch.
+	 */
+	@Column(name = "bucket_start", nullable = false)
+	private Long bucketStart;
+
+	/**
+	 * The period covered.
+	 */
+	@Enumerated(EnumType.STRING)
+	@Column(name = "granularity", nullable = false, length = 8)
+	private Granularity granularity;
+
+	/**
+	 * Database primary key value.
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "id", nullable = false)
+	private Long ID;
+
+	/**
+	 * The name of the <code>Product</code>.
+	 */
+	@Column(name = "name", nullable = false)
+	private String name;
+
+	/**
+	 * The number of <code>ProductPurchaseRequirement</code> instances within the
+	 * period.
+	 */
+	@Column(name = "requirement_count", nullable = false)
+	private Long requirementCount;
+
+	/**
+	 * Constructs an empty <code>ProductDemandStatistic</code>, for JPA.
+	 */
+	protected ProductDemandStatistic() {
+	}
+
+	/**
+	 * Constructs a <code>ProductDemandStatistic</code>.
+	 *
+	 * @param name             - name of the <code>Product</code>
+	 * @param granularity      - the period covered
+	 * @param bucketStart      - start of the period as UTC milliseconds from the
+	 *                         epoch
+	 * @param requirementCount - number of <code>ProductPurchaseRequirement</code>
+	 *                         instances within the period
+	 * @param amountSum        - total amount required within the period
+	 * @param amountMax        - largest amount required within the period
+	 */
+	public ProductDemandStatistic(final String name, final Granularity granularity, final Long bucketStart,
+			final Long requirementCount, final Long amountSum, final Long amountMax) {
+		this.name = name;
+		this.granularity = granularity;
+		this.bucketStart = bucketStart;
+		this.requirementCount = requirementCount;
+		this.amountSum = amountSum;
+		this.amountMax = amountMax;
+	}
+
+	/**
+	 * Gets the largest amount required within the period.
+	 *
+	 * @return the largest amount required
+	 */
+	public Long getAmountMax() {
+		return this.amountMax;
+	}
+
+	/**
+	 * Gets the total amount required within the period.
+	 *
+	 * @return the total amount required
+	 */
+	public Long getAmountSum() {
+		return this.amountSum;
+	}
+
+	/**
+	 * Gets the start of the period.
+	 *
+	 * @return the start of the period as UTC milliseconds from the epoch
+	 */
+	public Long getBucketStart() {
+		return this.bucketStart;
+	}
+
+	/**
+	 * Gets the period covered.
+	 *
+	 * @return the period covered
+	 */
+	public Granularity getGranularity() {
+		return this.granularity;
+	}
+
+	/**
+	 * Gets the name of the <code>Product</code>.
+	 *
+	 * @return the name of the <code>Product</code>
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Gets the number of <code>ProductPurchaseRequirement</code> instances within
+	 * the period.
+	 *
+	 * @return the number of <code>ProductPurchaseRequirement</code> instances
+	 */
+	public Long getRequirementCount() {
+		return this.requirementCount;
+	}
+}
@@ -0,0 +1,195 @@
+package product.model;
+
+import java.util.List;
+
+/**
+ * ProductDemandStatistics summarises the demand for a single
+ * <code>Product</code> over time, from its
+ * <code>ProductDemandStatistic</code> rollups.
+ */
+public class ProductDemandStatistics {
+
+	/**
+	 * The demand within a single day or month.
+	 */
+	public static class Bucket {
+
+		/**
+		 * The average amount required.
+		 */
+		private final double average;
+
+		/**
+		 * The number of requirements.
+		 */
+		private final long count;
+
+		/**
+		 * The largest amount required.
+		 */
+		private final long peak;
+
+		/**
+		 * The period, as an ISO date for a day or year and month for a month.
+		 */
+		private final String period;
+
+		/**
+		 * The total amount required.
+		 */
+		private final long total;
+
+		/**
+		 * Constructs a <code>Bucket</code>.
+		 *
+		 * @param period - the period, as an ISO date or year and month
+		 * @param count  - number of requirements
+		 * @param total  - total amount required
+		 * @param peak   - largest amount required
+		 */
+		public Bucket(final String period, final long count, final long total, final long peak) {
+			this.period = period;
+			this.count = count;
+			this.total = total;
+			this.peak = peak;
+			this.average = count == 0 ? 0 : (double) total / count;
+		}
+
+		/**
+		 * Gets the average amount required.
+		 *
+		 * @return the average amount required, zero if there were no requirements
+		 */
+		public double getAverage() {
+			return this.average;
+		}
+
+		/**
+		 * Gets the number of requirements.
+		 *
+		 * @return the number of requirements
+		 */
+		public long getCount() {
+			return this.count;
+		}
+
+		/**
+		 * Gets the largest amount required.
+		 *
+		 * @return the largest amount required
+		 */
+		public long getPeak() {
+			return this.peak;
+		}
+
+		/**
+		 * Gets the period.
+		 *
+		 * @return the period, as an ISO date for a day, such as
+		 *         <code>2019-08-31</code>, or year and month for a month, such as
+		 *         <code>2019-08</code>
+		 */
+		public String getPeriod() {
+			return this.period;
+		}
+
+		/**
+		 * Gets the total amount required.
+		 *
+		 * @return the total amount required
+		 */
+		public long getTotal() {
+			return this.total;
+		}
+	}
+
+	/**
+	 * The demand on each day, oldest first.
+	 */
+	private final List<Bucket> daily;
+
+	/**
+	 * The demand in each month, oldest first.
+	 */
+	private final List<Bucket> monthly;
+
+	/**
+	 * The name of the <code>Product</code>.
+	 */
+	private final String name;
+
+	/**
+	 * The demand over the whole history.
+	 */
+	private final Bucket overall;
+
+	/**
+	 * The change in the daily average amount required per day.
+	 */
+	private final double trend;
+
+	/**
+	 * Constructs a <code>ProductDemandStatistics</code>.
+	 *
+	 * @param name    - name of the <code>Product</code>
+	 * @param overall - demand over the whole history
+	 * @param trend   - change in the daily average amount required per day
+	 * @param daily   - demand on each day, oldest first
+	 * @param monthly - demand in each month, oldest first
+	 */
+	public ProductDemandStatistics(final String name, final Bucket overall, final double trend,
+			final List<Bucket> daily, final List<Bucket> monthly) {
+		this.name = name;
+		this.overall = overall;
+		this.trend = trend;
+		this.daily = List.copyOf(daily);
+		this.monthly = List.copyOf(monthly);
+	}
+
+	/**
+	 * Gets the demand on each day.
+	 *
+	 * @return the demand on each day, oldest first
+	 */
+	public List<Bucket> getDaily() {
+		return this.daily;
+	}
+
+	/**
+	 * Gets the demand in each month.
+	 *
+	 * @return the demand in each month, oldest first
+	 */
+	public List<Bucket> getMonthly() {
+		return this.monthly;
+	}
+
+	/**
+	 * Gets the name of the <code>Product</code>.
+	 *
+	 * @return the name of the <code>Product</code>
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Gets the demand over the whole history, including its average and peak.
+	 *
+	 * @return the demand over the whole history
+	 */
+	public Bucket getOverall() {
+		return this.overall;
+	}
+
+	/**
+	 * Gets the trend of demand, as the slope of a least squares line through the
+	 * daily average amounts required.
+	 *
+	 * @return the change in the daily average amount required per day, positive
+	 *         if demand is rising, zero if there are fewer than two days
+	 */
+	public double getTrend() {
+		return this.trend;
+	}
+}
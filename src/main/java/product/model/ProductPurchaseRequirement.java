@@ -5,14 +5,21 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.Version;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * ProductPurchaseRequirement represents a requirement to make a Product
  * purchase in order to satisfy a minimum level of stock of the Product.
  */
 @Entity
-@Table(name = "product_purchase_requirement")
+@Table(name = "product_purchase_requirement", indexes = {
+		@Index(name = "product_purchase_requirement_snapshot_name_index", columnList = "snapshot_id, name", unique = true),
+		@Index(name = "product_purchase_requirement_time_name_index", columnList = "time, name"),
+		@Index(name = "product_purchase_requirement_name_time_index", columnList = "name, time") })
 public class ProductPurchaseRequirement {
 
 	/**
@@ -36,12 +43,28 @@ public class ProductPurchaseRequirement {
 	@Column(name = "name", nullable = false)
 	private String name;
 
+	/**
+	 * Database primary key value of the
+	 * <code>ProductPurchaseRequirementSnapshot</code> this belongs to.
+	 */
+	@Column(name = "snapshot_id", nullable = false)
+	private Long snapshotID;
+
 	/**
 	 * The time that this <code>ProductPurchaseRequirement</code> was generated.
 	 */
 	@Column(name = "time", nullable = false)
 	private Long time;
 
+	/**
+	 * The number of times this <code>ProductPurchaseRequirement</code> has been
+	 * overridden, checked on every save so that an override based on a stale read
+	 * fails rather than overwriting a concurrent one.
+	 */
+	@Version
+	@Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+	private Long version;
+
 	/**
 	 * Get the amount of the <code>Product</code> to be ordered.
 	 *
@@ -51,6 +74,16 @@ public class ProductPurchaseRequirement {
 		return this.amount;
 	}
 
+	/**
+	 * Gets the ID of the <code>ProductPurchaseRequirement</code>.
+	 *
+	 * @return the ID of the <code>ProductPurchaseRequirement</code>
+	 */
+	@JsonIgnore
+	public Long getID() {
+		return this.ID;
+	}
+
 	/**
 	 * Gets the name of the <code>Product</code>.
 	 *
@@ -60,6 +93,17 @@ public class ProductPurchaseRequirement {
 		return this.name;
 	}
 
+	/**
+	 * Gets the ID of the <code>ProductPurchaseRequirementSnapshot</code> this
+	 * belongs to.
+	 *
+	 * @return the ID of the snapshot
+	 */
+	@JsonIgnore
+	public Long getSnapshotID() {
+		return this.snapshotID;
+	}
+
 	/**
 	 * Gets the time that this <code>ProductPurchaseRequirement</code> was
 	 * generated.
@@ -70,6 +114,17 @@ public class ProductPurchaseRequirement {
 		return this.time;
 	}
 
+	/**
+	 * Gets the number of times this <code>ProductPurchaseRequirement</code> has
+	 * been overridden.
+	 *
+	 * @return the version of this <code>ProductPurchaseRequirement</code>
+	 */
+	@JsonIgnore
+	public Long getVersion() {
+		return this.version;
+	}
+
 	/**
 	 * Sets the amount of the <code>Product</code> to be ordered.
 	 *
@@ -88,6 +143,16 @@ public class ProductPurchaseRequirement {
 		this.name = name;
 	}
 
+	/**
+	 * Sets the ID of the <code>ProductPurchaseRequirementSnapshot</code> this
+	 * belongs to.
+	 *
+	 * @param snapshotID - the ID of the snapshot
+	 */
+	public void setSnapshotID(final Long snapshotID) {
+		this.snapshotID = snapshotID;
+	}
+
 	/**
 	 * Sets the time that this <code>ProductPurchaseRequirement</code> was
 	 * generated.
@@ -98,4 +163,14 @@ public class ProductPurchaseRequirement {
 	public void setTime(final Long time) {
 		this.time = time;
 	}
+
+	/**
+	 * Sets the number of times this <code>ProductPurchaseRequirement</code> has
+	 * been overridden.
+	 *
+	 * @param version - version of this <code>ProductPurchaseRequirement</code>
+	 */
+	public void setVersion(final Long version) {
+		this.version = version;
+	}
 }
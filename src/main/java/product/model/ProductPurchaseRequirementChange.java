@@ -0,0 +1,73 @@
+package product.model;
+
+/**
+ * ProductPurchaseRequirementChange is a difference, for a single
+ * <code>Product</code>, between the <code>ProductPurchaseRequirement</code>
+ * instances of two snapshots.
+ * <P>
+ * A requirement that was added has no previous amount, one that was removed has
+ * no amount, and one whose amount changed has both.
+ */
+public class ProductPurchaseRequirementChange {
+
+	/**
+	 * The amount required in the later snapshot, <code>null</code> if the
+	 * requirement was removed.
+	 */
+	private final Long amount;
+
+	/**
+	 * The name of the <code>Product</code>.
+	 */
+	private final String name;
+
+	/**
+	 * The amount required in the earlier snapshot, <code>null</code> if the
+	 * requirement was added.
+	 */
+	private final Long previousAmount;
+
+	/**
+	 * Constructs a <code>ProductPurchaseRequirementChange</code>.
+	 *
+	 * @param name           - name of the <code>Product</code>
+	 * @param previousAmount - amount required in the earlier snapshot, or
+	 *                       <code>null</code>
+	 * @param amount         - amount required in the later snapshot, or
+	 *                       <code>null</code>
+	 */
+	public ProductPurchaseRequirementChange(final String name, final Long previousAmount, final Long amount) {
+		this.name = name;
+		this.previousAmount = previousAmount;
+		this.amount = amount;
+	}
+
+	/**
+	 * Gets the amount required in the later snapshot.
+	 *
+	 * @return the amount required, or <code>null</code> if the requirement was
+	 *         removed
+	 */
+	public Long getAmount() {
+		return this.amount;
+	}
+
+	/**
+	 * Gets the name of the <code>Product</code>.
+	 *
+	 * @return the name of the <code>Product</code>
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Gets the amount required in the earlier snapshot.
+	 *
+	 * @return the amount previously required, or <code>null</code> if the
+	 *         requirement was added
+	 */
+	public Long getPreviousAmount() {
+		return this.previousAmount;
+	}
+}
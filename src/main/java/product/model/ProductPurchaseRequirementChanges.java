@@ -0,0 +1,103 @@
+package product.model;
+
+import java.util.List;
+
+/**
+ * ProductPurchaseRequirementChanges is the difference between an earlier
+ * snapshot of <code>ProductPurchaseRequirement</code> instances and the latest
+ * one, split into the requirements that were added, changed in amount and
+ * removed.
+ */
+public class ProductPurchaseRequirementChanges {
+
+	/**
+	 * The requirements in the latest snapshot only.
+	 */
+	private final List<ProductPurchaseRequirementChange> added;
+
+	/**
+	 * The requirements in both snapshots with a different amount.
+	 */
+	private final List<ProductPurchaseRequirementChange> changed;
+
+	/**
+	 * The requirements in the earlier snapshot only.
+	 */
+	private final List<ProductPurchaseRequirementChange> removed;
+
+	/**
+	 * The time of the earlier snapshot, <code>null</code> if there was none.
+	 */
+	private final Long sinceTime;
+
+	/**
+	 * The time of the latest snapshot.
+	 */
+	private final Long time;
+
+	/**
+	 * Constructs a <code>ProductPurchaseRequirementChanges</code>.
+	 *
+	 * @param sinceTime - time of the earlier snapshot, or <code>null</code> if
+	 *                  there was none
+	 * @param time      - time of the latest snapshot
+	 * @param added     - requirements in the latest snapshot only
+	 * @param changed   - requirements in both snapshots with a different amount
+	 * @param removed   - requirements in the earlier snapshot only
+	 */
+	public ProductPurchaseRequirementChanges(final Long sinceTime, final Long time,
+			final List<ProductPurchaseRequirementChange> added, final List<ProductPurchaseRequirementChange> changed,
+			final List<ProductPurchaseRequirementChange> removed) {
+		this.sinceTime = sinceTime;
+		this.time = time;
+		this.added = List.copyOf(added);
+		this.changed = List.copyOf(changed);
+		this.removed = List.copyOf(removed);
+	}
+
+	/**
+	 * Gets the requirements in the latest snapshot only.
+	 *
+	 * @return the added requirements, in name order
+	 */
+	public List<ProductPurchaseRequirementChange> getAdded() {
+		return this.added;
+	}
+
+	/**
+	 * Gets the requirements in both snapshots with a different amount.
+	 *
+	 * @return the changed requirements, in name order
+	 */
+	public List<ProductPurchaseRequirementChange> getChanged() {
+		return this.changed;
+	}
+
+	/**
+	 * Gets the requirements in the earlier snapshot only.
+	 *
+	 * @return the removed requirements, in name order
+	 */
+	public List<ProductPurchaseRequirementChange> getRemoved() {
+		return this.removed;
+	}
+
+	/**
+	 * Gets the time of the earlier snapshot that the changes are relative to.
+	 *
+	 * @return the time of the earlier snapshot, or <code>null</code> if there was
+	 *         none, in which case every requirement is added
+	 */
+	public Long getSinceTime() {
+		return this.sinceTime;
+	}
+
+	/**
+	 * Gets the time of the latest snapshot.
+	 *
+	 * @return the time of the latest snapshot
+	 */
+	public Long getTime() {
+		return this.time;
+	}
+}
@@ -0,0 +1,57 @@
+package product.model;
+
+import java.util.List;
+
+/**
+ * ProductPurchaseRequirementPage is a single page of historical
+ * <code>ProductPurchaseRequirement</code> instances, in time and then name
+ * order, along with the cursor for the next page.
+ */
+public class ProductPurchaseRequirementPage {
+
+	/**
+	 * The cursor for the next page, <code>null</code> if this is the last page.
+	 */
+	private final String nextCursor;
+
+	/**
+	 * The <code>ProductPurchaseRequirement</code> instances in this page.
+	 */
+	private final List<ProductPurchaseRequirement> productPurchaseRequirements;
+
+	/**
+	 * Constructs a <code>ProductPurchaseRequirementPage</code>.
+	 *
+	 * @param productPurchaseRequirements - the
+	 *                                    <code>ProductPurchaseRequirement</code>
+	 *                                    instances in this page
+	 * @param nextCursor                  - cursor for the next page, or
+	 *                                    <code>null</code> if this is the last
+	 *                                    page
+	 */
+	public ProductPurchaseRequirementPage(final List<ProductPurchaseRequirement> productPurchaseRequirements,
+			final String nextCursor) {
+		this.productPurchaseRequirements = List.copyOf(productPurchaseRequirements);
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * Gets the cursor for the next page.
+	 *
+	 * @return the cursor for the next page, or <code>null</code> if this is the
+	 *         last page
+	 */
+	public String getNextCursor() {
+		return this.nextCursor;
+	}
+
+	/**
+	 * Gets the <code>ProductPurchaseRequirement</code> instances in this page.
+	 *
+	 * @return the <code>ProductPurchaseRequirement</code> instances, in time and
+	 *         then name order
+	 */
+	public List<ProductPurchaseRequirement> getProductPurchaseRequirements() {
+		return this.productPurchaseRequirements;
+	}
+}
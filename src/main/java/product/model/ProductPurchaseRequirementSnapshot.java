@@ -0,0 +1,141 @@
+package product.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * ProductPurchaseRequirementSnapshot is the header of a single snapshot of
+ * <code>ProductPurchaseRequirement</code> instances, which each reference it by
+ * ID.
+ * <P>
+ * A snapshot is only read once it is complete, so one that is still being
+ * generated, or that failed part way through, is never returned as the latest.
+ */
+@Entity
+@Table(name = "product_purchase_requirement_snapshot", indexes = {
+		@Index(name = "product_purchase_requirement_snapshot_status_time_index", columnList = "status, time") })
+public class ProductPurchaseRequirementSnapshot {
+
+	/**
+	 * The possible states of a snapshot.
+	 */
+	public enum Status {
+
+		/**
+		 * Every <code>ProductPurchaseRequirement</code> of the snapshot has been
+		 * written.
+		 */
+		COMPLETE,
+
+		/**
+		 * Generating the snapshot failed, so it may be incomplete.
+		 */
+		FAILED,
+
+		/**
+		 * The snapshot is being generated.
+		 */
+		GENERATING
+	}
+
+	/**
+	 * Database primary key value.
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "id", nullable = false)
+	private Long ID;
+
+	/**
+	 * The number of <code>ProductPurchaseRequirement</code> instances in the
+	 * snapshot.
+	 */
+	@Column(name = "item_count", nullable = false)
+	private Long itemCount;
+
+	/**
+	 * The state of the snapshot.
+	 */
+	@Enumerated(EnumType.STRING)
+	@Column(name = "status", nullable = false, length = 16)
+	private Status status;
+
+	/**
+	 * The time that the snapshot was generated.
+	 */
+	@Column(name = "time", nullable = false)
+	private Long time;
+
+	/**
+	 * Gets the ID of the snapshot.
+	 *
+	 * @return the ID of the snapshot
+	 */
+	public Long getID() {
+		return this.ID;
+	}
+
+	/**
+	 * Gets the number of <code>ProductPurchaseRequirement</code> instances in the
+	 * snapshot.
+	 *
+	 * @return the number of <code>ProductPurchaseRequirement</code> instances
+	 */
+	public Long getItemCount() {
+		return this.itemCount;
+	}
+
+	/**
+	 * Gets the state of the snapshot.
+	 *
+	 * @return the state of the snapshot
+	 */
+	public Status getStatus() {
+		return this.status;
+	}
+
+	/**
+	 * Gets the time that the snapshot was generated.
+	 *
+	 * @return time that the snapshot was generated
+	 */
+	public Long getTime() {
+		return this.time;
+	}
+
+	/**
+	 * Sets the number of <code>ProductPurchaseRequirement</code> instances in the
+	 * snapshot.
+	 *
+	 * @param itemCount - the number of <code>ProductPurchaseRequirement</code>
+	 *                  instances
+	 */
+	public void setItemCount(final Long itemCount) {
+		this.itemCount = itemCount;
+	}
+
+	/**
+	 * Sets the state of the snapshot.
+	 *
+	 * @param status - the state of the snapshot
+	 */
+	public void setStatus(final Status status) {
+		this.status = status;
+	}
+
+	/**
+	 * Sets the time that the snapshot was generated.
+	 *
+	 * @param time - time that the snapshot was generated
+	 */
+	public void setTime(final Long time) {
+		this.time = time;
+	}
+}
@@ -0,0 +1,89 @@
+package product.model;
+
+/**
+ * ProductShortfall is a lightweight, read only projection of a
+ * <code>Product</code> that is below its minimum stock level and is not
+ * blocked, along with the amount that it is short by.
+ * <P>
+ * Instances are built directly by a repository query, so the shortfall is
+ * calculated by the database and no <code>Product</code> entities are loaded
+ * into the persistence context.
+ */
+public class ProductShortfall {
+
+	/**
+	 * The amount of the <code>Product</code> required to reach the minimum stock
+	 * level.
+	 */
+	private final Long amount;
+
+	/**
+	 * Database primary key value of the <code>Product</code>.
+	 */
+	private final Long ID;
+
+	/**
+	 * The name of the <code>Product</code>.
+	 */
+	private final String name;
+
+	/**
+	 * Constructs a <code>ProductShortfall</code>.
+	 *
+	 * @param ID     - database primary key value of the <code>Product</code>
+	 * @param name   - name of the <code>Product</code>
+	 * @param amount - amount of the <code>Product</code> required to reach the
+	 *               minimum stock level
+	 */
+	public ProductShortfall(final Long ID, final String name, final Long amount) {
+		this.ID = ID;
+		this.name = name;
+		this.amount = amount;
+	}
+
+	/**
+	 * Gets the amount of the <code>Product</code> required to reach the minimum
+	 * stock level.
+	 *
+	 * @return the amount of the <code>Product</code> required
+	 */
+	public Long getAmount() {
+		return this.amount;
+	}
+
+	/**
+	 * Gets the ID of the <code>Product</code>.
+	 *
+	 * @return the ID of the <code>Product</code>
+	 */
+	public Long getID() {
+		return this.ID;
+	}
+
+	/**
+	 * Gets the name of the <code>Product</code>.
+	 *
+	 * @return the name of the <code>Product</code>
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Creates a <code>ProductPurchaseRequirement</code> for this shortfall.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot that the
+	 *                                           <code>ProductPurchaseRequirement</code>
+	 *                                           belongs to
+	 * @return a new, unsaved <code>ProductPurchaseRequirement</code>
+	 */
+	public ProductPurchaseRequirement toProductPurchaseRequirement(
+			final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot) {
+		final ProductPurchaseRequirement productPurchaseRequirement = new ProductPurchaseRequirement();
+		productPurchaseRequirement.setName(this.name);
+		productPurchaseRequirement.setAmount(this.amount);
+		productPurchaseRequirement.setSnapshotID(productPurchaseRequirementSnapshot.getID());
+		productPurchaseRequirement.setTime(productPurchaseRequirementSnapshot.getTime());
+		return productPurchaseRequirement;
+	}
+}
@@ -0,0 +1,109 @@
+package product.model;
+
+import java.util.Objects;
+
+/**
+ * ProductStockFingerprint summarises the state of every <code>Product</code>
+ * as the number of Products, the highest ID and the sum of their versions.
+ * <P>
+ * As every update of a <code>Product</code> increments its version, and every
+ * new <code>Product</code> gets a higher ID than any before it, any change
+ * between two states changes the fingerprint, apart from creating and then
+ * deleting the same new <code>Product</code>, which leaves the state as it
+ * was. So a copy of the stock levels with the same fingerprint as the database
+ * holds the same Products, at the same versions.
+ */
+public class ProductStockFingerprint {
+
+	/**
+	 * The number of Products.
+	 */
+	private final long count;
+
+	/**
+	 * The highest ID of any <code>Product</code>, zero if there are none.
+	 */
+	private final long maxID;
+
+	/**
+	 * The sum of the versions of every <code>Product</code>.
+	 */
+	private final long versionSum;
+
+	/**
+	 * Constructs a <code>ProductStockFingerprint</code>.
+	 *
+	 * @param count      - number of Products
+	 * @param maxID      - highest ID of any <code>Product</code>, zero if there
+	 *                   are none
+	 * @param versionSum - sum of the versions of every <code>Product</code>
+	 */
+	public ProductStockFingerprint(final Long count, final Long maxID, final Long versionSum) {
+		this.count = count;
+		this.maxID = maxID;
+		this.versionSum = versionSum;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(final Object object) {
+
+		if (this == object) {
+			return true;
+		}
+
+		if (!(object instanceof ProductStockFingerprint)) {
+			return false;
+		}
+
+		final ProductStockFingerprint productStockFingerprint = (ProductStockFingerprint) object;
+		return (this.count == productStockFingerprint.count) && (this.maxID == productStockFingerprint.maxID)
+				&& (this.versionSum == productStockFingerprint.versionSum);
+	}
+
+	/**
+	 * Gets the number of Products.
+	 *
+	 * @return the number of Products
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Gets the highest ID of any <code>Product</code>.
+	 *
+	 * @return the highest ID, zero if there are no Products
+	 */
+	public long getMaxID() {
+		return this.maxID;
+	}
+
+	/**
+	 * Gets the sum of the versions of every <code>Product</code>.
+	 *
+	 * @return the sum of the versions
+	 */
+	public long getVersionSum() {
+		return this.versionSum;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.count, this.maxID, this.versionSum);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "ProductStockFingerprint [count=" + this.count + ", maxID=" + this.maxID + ", versionSum="
+				+ this.versionSum + "]";
+	}
+}
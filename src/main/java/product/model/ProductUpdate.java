@@ -0,0 +1,148 @@
+package product.model;
+
+/**
+ * ProductUpdate represents a single change to a <code>Product</code> as part
+ * of a batch of changes, such as those made by a nightly stock-take.
+ */
+public class ProductUpdate {
+
+	/**
+	 * The kinds of change that can be made to a <code>Product</code>.
+	 */
+	public enum Operation {
+
+		/**
+		 * Adds the amount to the current amount, the amount is required.
+		 */
+		ADJUST_CURRENT_AMOUNT,
+
+		/**
+		 * Blocks the <code>Product</code>.
+		 */
+		BLOCK,
+
+		/**
+		 * Creates the <code>Product</code> with default values, replacing any
+		 * existing <code>Product</code> of the same name.
+		 */
+		CREATE,
+
+		/**
+		 * Deletes the <code>Product</code>.
+		 */
+		DELETE,
+
+		/**
+		 * Sets the current amount, the amount is required.
+		 */
+		SET_CURRENT_AMOUNT,
+
+		/**
+		 * Sets the minimum amount, the amount is required.
+		 */
+		SET_MIN_AMOUNT,
+
+		/**
+		 * Unblocks the <code>Product</code>.
+		 */
+		UNBLOCK;
+
+		/**
+		 * Gets if this operation requires an amount.
+		 *
+		 * @return <code>true</code> if this operation requires an amount
+		 */
+		public boolean requiresAmount() {
+			return (this == ADJUST_CURRENT_AMOUNT) || (this == SET_CURRENT_AMOUNT) || (this == SET_MIN_AMOUNT);
+		}
+	}
+
+	/**
+	 * The amount used by the operation, if applicable.
+	 */
+	private Long amount;
+
+	/**
+	 * The name of the <code>Product</code>.
+	 */
+	private String name;
+
+	/**
+	 * The change to make to the <code>Product</code>.
+	 */
+	private Operation operation;
+
+	/**
+	 * Constructs an empty <code>ProductUpdate</code>.
+	 */
+	public ProductUpdate() {
+	}
+
+	/**
+	 * Constructs a <code>ProductUpdate</code>.
+	 *
+	 * @param operation - the change to make to the <code>Product</code>
+	 * @param name      - name of the <code>Product</code>
+	 * @param amount    - amount used by the operation, may be <code>null</code>
+	 *                  if not applicable
+	 */
+	public ProductUpdate(final Operation operation, final String name, final Long amount) {
+		this.operation = operation;
+		this.name = name;
+		this.amount = amount;
+	}
+
+	/**
+	 * Gets the amount used by the operation.
+	 *
+	 * @return the amount used by the operation, if applicable
+	 */
+	public Long getAmount() {
+		return this.amount;
+	}
+
+	/**
+	 * Gets the name of the <code>Product</code>.
+	 *
+	 * @return the name of the <code>Product</code>
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Gets the change to make to the <code>Product</code>.
+	 *
+	 * @return the change to make to the <code>Product</code>
+	 */
+	public Operation getOperation() {
+		return this.operation;
+	}
+
+	/**
+	 * Sets the amount used by the operation.
+	 *
+	 * @param amount - the amount used by the operation
+	 */
+	public void setAmount(final Long amount) {
+		this.amount = amount;
+	}
+
+	/**
+	 * Sets the name of the <code>Product</code>.
+	 *
+	 * @param name - name of the <code>Product</code>
+	 */
+	public void setName(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Sets the change to make to the <code>Product</code>.
+	 *
+	 * @param operation - the change to make to the <code>Product</code>
+	 */
+	public void setOperation(final Operation operation) {
+		this.operation = operation;
+	}
+}
@@ -0,0 +1,108 @@
+package product.model;
+
+/**
+ * ProductUpdateResult is the outcome of applying a single
+ * <code>ProductUpdate</code> as part of a batch.
+ */
+public class ProductUpdateResult {
+
+	/**
+	 * The possible outcomes of a <code>ProductUpdate</code>.
+	 */
+	public enum Status {
+
+		/**
+		 * The update was applied.
+		 */
+		APPLIED,
+
+		/**
+		 * The update was not applied because its chunk of the batch failed, and was
+		 * rolled back as a whole.
+		 */
+		FAILED,
+
+		/**
+		 * The update was not applied because it was missing a required value.
+		 */
+		INVALID,
+
+		/**
+		 * The update was not applied because the <code>Product</code> does not
+		 * exist.
+		 */
+		NOT_FOUND
+	}
+
+	/**
+	 * A description of why the update was not applied, if applicable.
+	 */
+	private final String message;
+
+	/**
+	 * The name of the <code>Product</code>.
+	 */
+	private final String name;
+
+	/**
+	 * The change that was requested.
+	 */
+	private final ProductUpdate.Operation operation;
+
+	/**
+	 * The outcome of the update.
+	 */
+	private final Status status;
+
+	/**
+	 * Constructs a <code>ProductUpdateResult</code>.
+	 *
+	 * @param productUpdate - the update this is the outcome of
+	 * @param status        - the outcome of the update
+	 * @param message       - a description of why the update was not applied, or
+	 *                      <code>null</code>
+	 */
+	public ProductUpdateResult(final ProductUpdate productUpdate, final Status status, final String message) {
+		this.name = productUpdate.getName();
+		this.operation = productUpdate.getOperation();
+		this.status = status;
+		this.message = message;
+	}
+
+	/**
+	 * Gets a description of why the update was not applied.
+	 *
+	 * @return a description of why the update was not applied, or
+	 *         <code>null</code> if it was applied
+	 */
+	public String getMessage() {
+		return this.message;
+	}
+
+	/**
+	 * Gets the name of the <code>Product</code>.
+	 *
+	 * @return the name of the <code>Product</code>
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Gets the change that was requested.
+	 *
+	 * @return the change that was requested
+	 */
+	public ProductUpdate.Operation getOperation() {
+		return this.operation;
+	}
+
+	/**
+	 * Gets the outcome of the update.
+	 *
+	 * @return the outcome of the update
+	 */
+	public Status getStatus() {
+		return this.status;
+	}
+}
@@ -0,0 +1,159 @@
+package product.model;
+
+import java.util.List;
+
+/**
+ * RetentionReport describes a single run of the retention of historical
+ * <code>ProductPurchaseRequirementSnapshot</code> instances, and each snapshot
+ * it purged.
+ */
+public class RetentionReport {
+
+	/**
+	 * A single snapshot that was purged.
+	 */
+	public static class PurgedSnapshot {
+
+		/**
+		 * The file the snapshot was archived to, <code>null</code> if it was not
+		 * archived.
+		 */
+		private final String archive;
+
+		/**
+		 * Database primary key value of the snapshot.
+		 */
+		private final Long ID;
+
+		/**
+		 * The number of <code>ProductPurchaseRequirement</code> rows deleted.
+		 */
+		private final long rowsDeleted;
+
+		/**
+		 * The time that the snapshot was generated.
+		 */
+		private final Long time;
+
+		/**
+		 * Constructs a <code>PurgedSnapshot</code>.
+		 *
+		 * @param productPurchaseRequirementSnapshot - the snapshot that was purged
+		 * @param rowsDeleted                        - number of
+		 *                                           <code>ProductPurchaseRequirement</code>
+		 *                                           rows deleted
+		 * @param archive                            - file the snapshot was
+		 *                                           archived to, or
+		 *                                           <code>null</code>
+		 */
+		public PurgedSnapshot(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot,
+				final long rowsDeleted, final String archive) {
+			this.ID = productPurchaseRequirementSnapshot.getID();
+			this.time = productPurchaseRequirementSnapshot.getTime();
+			this.rowsDeleted = rowsDeleted;
+			this.archive = archive;
+		}
+
+		/**
+		 * Gets the file the snapshot was archived to.
+		 *
+		 * @return the file the snapshot was archived to, or <code>null</code> if it
+		 *         was not archived
+		 */
+		public String getArchive() {
+			return this.archive;
+		}
+
+		/**
+		 * Gets the ID of the snapshot.
+		 *
+		 * @return the ID of the snapshot
+		 */
+		public Long getID() {
+			return this.ID;
+		}
+
+		/**
+		 * Gets the number of <code>ProductPurchaseRequirement</code> rows deleted.
+		 *
+		 * @return the number of rows deleted
+		 */
+		public long getRowsDeleted() {
+			return this.rowsDeleted;
+		}
+
+		/**
+		 * Gets the time that the snapshot was generated.
+		 *
+		 * @return time that the snapshot was generated
+		 */
+		public Long getTime() {
+			return this.time;
+		}
+	}
+
+	/**
+	 * The time taken by the run, in milliseconds.
+	 */
+	private final long duration;
+
+	/**
+	 * The snapshots that were purged, oldest first.
+	 */
+	private final List<PurgedSnapshot> purgedSnapshots;
+
+	/**
+	 * The time that the run started.
+	 */
+	private final long time;
+
+	/**
+	 * Constructs a <code>RetentionReport</code>.
+	 *
+	 * @param time            - time that the run started
+	 * @param duration        - time taken by the run, in milliseconds
+	 * @param purgedSnapshots - the snapshots that were purged, oldest first
+	 */
+	public RetentionReport(final long time, final long duration, final List<PurgedSnapshot> purgedSnapshots) {
+		this.time = time;
+		this.duration = duration;
+		this.purgedSnapshots = List.copyOf(purgedSnapshots);
+	}
+
+	/**
+	 * Gets the time taken by the run.
+	 *
+	 * @return the time taken by the run, in milliseconds
+	 */
+	public long getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * Gets the snapshots that were purged.
+	 *
+	 * @return the snapshots that were purged, oldest first
+	 */
+	public List<PurgedSnapshot> getPurgedSnapshots() {
+		return this.purgedSnapshots;
+	}
+
+	/**
+	 * Gets the total number of <code>ProductPurchaseRequirement</code> rows
+	 * deleted.
+	 *
+	 * @return the total number of rows deleted
+	 */
+	public long getRowsDeleted() {
+		return this.purgedSnapshots.stream().mapToLong(PurgedSnapshot::getRowsDeleted).sum();
+	}
+
+	/**
+	 * Gets the time that the run started.
+	 *
+	 * @return time that the run started, as UTC milliseconds from the epoch
+	 */
+	public long getTime() {
+		return this.time;
+	}
+}
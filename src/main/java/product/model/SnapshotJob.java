@@ -0,0 +1,191 @@
+package product.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SnapshotJob describes the generation of a single snapshot of
+ * <code>ProductPurchaseRequirement</code> instances in the background, which is
+ * polled for its progress and result.
+ * <P>
+ * Requests to start a snapshot while one is already being generated join that
+ * job rather than starting another, so the number of requests it was started
+ * for is also given.
+ */
+public class SnapshotJob {
+
+	/**
+	 * The time that generating the snapshot finished, <code>null</code> while it
+	 * is being generated.
+	 */
+	private volatile Long endTime;
+
+	/**
+	 * Why generating the snapshot failed, <code>null</code> unless it failed.
+	 */
+	private volatile String error;
+
+	/**
+	 * Identifies the job.
+	 */
+	private final Long ID;
+
+	/**
+	 * The number of <code>ProductPurchaseRequirement</code> instances generated so
+	 * far.
+	 */
+	private final AtomicLong itemCount = new AtomicLong();
+
+	/**
+	 * The number of requests the job was started for.
+	 */
+	private final AtomicInteger requestCount = new AtomicInteger(1);
+
+	/**
+	 * Database primary key value of the snapshot, <code>null</code> until its
+	 * first <code>ProductPurchaseRequirement</code> is generated.
+	 */
+	private volatile Long snapshotID;
+
+	/**
+	 * The time that the job started, which is also the time of the snapshot.
+	 */
+	private final Long startTime;
+
+	/**
+	 * The state of the snapshot.
+	 */
+	private volatile ProductPurchaseRequirementSnapshot.Status status = ProductPurchaseRequirementSnapshot.Status.GENERATING;
+
+	/**
+	 * Constructs a <code>SnapshotJob</code> for a snapshot being generated.
+	 *
+	 * @param ID        - identifies the job
+	 * @param startTime - time that the job started, and of the snapshot
+	 */
+	public SnapshotJob(final Long ID, final Long startTime) {
+		this.ID = ID;
+		this.startTime = startTime;
+	}
+
+	/**
+	 * Records that the snapshot is complete.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the complete snapshot
+	 * @param endTime                            - time that generating it
+	 *                                           finished
+	 */
+	public void complete(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot,
+			final long endTime) {
+		this.snapshotID = productPurchaseRequirementSnapshot.getID();
+		this.itemCount.set(productPurchaseRequirementSnapshot.getItemCount());
+		this.endTime = endTime;
+		this.status = ProductPurchaseRequirementSnapshot.Status.COMPLETE;
+	}
+
+	/**
+	 * Records that generating the snapshot failed.
+	 *
+	 * @param error   - why it failed
+	 * @param endTime - time that it failed
+	 */
+	public void fail(final String error, final long endTime) {
+		this.error = error;
+		this.endTime = endTime;
+		this.status = ProductPurchaseRequirementSnapshot.Status.FAILED;
+	}
+
+	/**
+	 * Gets the time that generating the snapshot finished.
+	 *
+	 * @return the time that it finished, <code>null</code> while it is being
+	 *         generated
+	 */
+	public Long getEndTime() {
+		return this.endTime;
+	}
+
+	/**
+	 * Gets why generating the snapshot failed.
+	 *
+	 * @return why it failed, <code>null</code> unless it failed
+	 */
+	public String getError() {
+		return this.error;
+	}
+
+	/**
+	 * Gets the ID of the job.
+	 *
+	 * @return the ID of the job
+	 */
+	public Long getID() {
+		return this.ID;
+	}
+
+	/**
+	 * Gets the number of <code>ProductPurchaseRequirement</code> instances
+	 * generated so far.
+	 *
+	 * @return the number generated so far, or in all once complete
+	 */
+	public long getItemCount() {
+		return this.itemCount.get();
+	}
+
+	/**
+	 * Gets the number of requests the job was started for.
+	 *
+	 * @return the number of requests, one plus those that joined it
+	 */
+	public int getRequestCount() {
+		return this.requestCount.get();
+	}
+
+	/**
+	 * Gets the ID of the snapshot.
+	 *
+	 * @return database primary key value of the snapshot, <code>null</code> until
+	 *         its first <code>ProductPurchaseRequirement</code> is generated
+	 */
+	public Long getSnapshotID() {
+		return this.snapshotID;
+	}
+
+	/**
+	 * Gets the time that the job started, which is also the time of the snapshot.
+	 *
+	 * @return the time that the job started
+	 */
+	public Long getStartTime() {
+		return this.startTime;
+	}
+
+	/**
+	 * Gets the state of the snapshot.
+	 *
+	 * @return the state of the snapshot
+	 */
+	public ProductPurchaseRequirementSnapshot.Status getStatus() {
+		return this.status;
+	}
+
+	/**
+	 * Records that another request joined the job.
+	 */
+	public void join() {
+		this.requestCount.incrementAndGet();
+	}
+
+	/**
+	 * Records the progress of the snapshot as a
+	 * <code>ProductPurchaseRequirement</code> is generated.
+	 *
+	 * @param productPurchaseRequirement - the generated
+	 *                                   <code>ProductPurchaseRequirement</code>
+	 */
+	public void record(final ProductPurchaseRequirement productPurchaseRequirement) {
+		this.snapshotID = productPurchaseRequirement.getSnapshotID();
+		this.itemCount.incrementAndGet();
+	}
+}
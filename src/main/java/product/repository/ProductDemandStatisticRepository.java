@@ -0,0 +1,26 @@
+package product.repository;
+
+import java.util.List;
+
+import org.springframework.data.repository.CrudRepository;
+
+import product.model.ProductDemandStatistic;
+
+/**
+ * CrudRepository for working with <code>ProductDemandStatistic</code>
+ * instances.
+ */
+public interface ProductDemandStatisticRepository
+		extends CrudRepository<ProductDemandStatistic, Long>, ProductDemandStatisticRepositoryCustom {
+
+	/**
+	 * Finds the <code>ProductDemandStatistic</code> instances of a
+	 * <code>Product</code> of a single granularity.
+	 *
+	 * @param name        - name of the <code>Product</code>
+	 * @param granularity - the period covered
+	 * @return the <code>ProductDemandStatistic</code> instances, oldest first
+	 */
+	List<ProductDemandStatistic> findByNameAndGranularityOrderByBucketStart(String name,
+			ProductDemandStatistic.Granularity granularity);
+}
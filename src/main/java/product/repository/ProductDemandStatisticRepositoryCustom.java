@@ -0,0 +1,35 @@
+package product.repository;
+
+import java.util.Collection;
+
+import product.model.ProductDemandStatistic;
+
+/**
+ * Custom persistence operations for <code>ProductDemandStatistic</code>
+ * instances that cannot be expressed efficiently through Spring Data.
+ */
+public interface ProductDemandStatisticRepositoryCustom {
+
+	/**
+	 * Adds the specified increments to the <code>ProductDemandStatistic</code>
+	 * instances of the same name, granularity and bucket, creating any that do
+	 * not exist yet, as a single JDBC batch within one transaction. Counts and
+	 * sums are added, and the larger of the maximums is kept.
+	 *
+	 * @param productDemandStatistics - the increments, at most one per name,
+	 *                                granularity and bucket
+	 */
+	void addAll(Collection<ProductDemandStatistic> productDemandStatistics);
+
+	/**
+	 * Adds every <code>ProductPurchaseRequirement</code> of a snapshot to the
+	 * <code>ProductDemandStatistic</code> of its name in a single bucket, as
+	 * <code>addAll</code> does, with one INSERT ... SELECT within the database.
+	 *
+	 * @param snapshotID  - ID of the <code>ProductPurchaseRequirementSnapshot</code>
+	 * @param granularity - granularity of the bucket
+	 * @param bucketStart - start of the bucket that the time of the snapshot falls
+	 *                    in
+	 */
+	void addSnapshot(Long snapshotID, ProductDemandStatistic.Granularity granularity, long bucketStart);
+}
@@ -0,0 +1,90 @@
+package product.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+
+import javax.transaction.Transactional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import product.model.ProductDemandStatistic;
+
+/**
+ * JDBC backed implementation of
+ * <code>ProductDemandStatisticRepositoryCustom</code>, picked up by Spring Data
+ * as part of <code>ProductDemandStatisticRepository</code>.
+ */
+public class ProductDemandStatisticRepositoryImpl implements ProductDemandStatisticRepositoryCustom {
+
+	/**
+	 * SQL that adds to existing <code>ProductDemandStatistic</code> instances,
+	 * completing an INSERT.
+	 */
+	private static final String ON_DUPLICATE_SQL = "on duplicate key update "
+			+ "amount_max = greatest(amount_max, values(amount_max)), amount_sum = amount_sum + values(amount_sum), "
+			+ "requirement_count = requirement_count + values(requirement_count)";
+
+	/**
+	 * SQL used to add the <code>ProductPurchaseRequirement</code> instances of a
+	 * snapshot to the <code>ProductDemandStatistic</code> instances of a bucket,
+	 * creating any that do not exist.
+	 */
+	private static final String UPSERT_SNAPSHOT_SQL = "insert into product_demand_statistic "
+			+ "(amount_max, amount_sum, bucket_start, granularity, name, requirement_count) "
+			+ "select amount, amount, ?, ?, name, 1 from product_purchase_requirement where snapshot_id = ? "
+			+ ProductDemandStatisticRepositoryImpl.ON_DUPLICATE_SQL;
+
+	/**
+	 * SQL used to add to a single <code>ProductDemandStatistic</code>, creating it
+	 * if it does not exist.
+	 */
+	private static final String UPSERT_SQL = "insert into product_demand_statistic "
+			+ "(amount_max, amount_sum, bucket_start, granularity, name, requirement_count) values (?, ?, ?, ?, ?, ?) "
+			+ ProductDemandStatisticRepositoryImpl.ON_DUPLICATE_SQL;
+
+	/**
+	 * The JdbcTemplate.
+	 */
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional
+	public void addAll(final Collection<ProductDemandStatistic> productDemandStatistics) {
+		Objects.requireNonNull(productDemandStatistics);
+
+		if (productDemandStatistics.isEmpty()) {
+			return;
+		}
+
+		this.jdbcTemplate.batchUpdate(ProductDemandStatisticRepositoryImpl.UPSERT_SQL,
+				new ArrayList<>(productDemandStatistics), productDemandStatistics.size(),
+				(preparedStatement, productDemandStatistic) -> {
+					preparedStatement.setLong(1, productDemandStatistic.getAmountMax());
+					preparedStatement.setLong(2, productDemandStatistic.getAmountSum());
+					preparedStatement.setLong(3, productDemandStatistic.getBucketStart());
+					preparedStatement.setString(4, productDemandStatistic.getGranularity().name());
+					preparedStatement.setString(5, productDemandStatistic.getName());
+					preparedStatement.setLong(6, productDemandStatistic.getRequirementCount());
+				});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional
+	public void addSnapshot(final Long snapshotID, final ProductDemandStatistic.Granularity granularity,
+			final long bucketStart) {
+		Objects.requireNonNull(snapshotID);
+		Objects.requireNonNull(granularity);
+
+		this.jdbcTemplate.update(ProductDemandStatisticRepositoryImpl.UPSERT_SNAPSHOT_SQL, bucketStart,
+				granularity.name(), snapshotID);
+	}
+}
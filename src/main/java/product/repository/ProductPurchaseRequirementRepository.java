@@ -1,19 +1,106 @@
 package product.repository;
 
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
 import product.model.ProductPurchaseRequirement;
 
-public interface ProductPurchaseRequirementRepository extends CrudRepository<ProductPurchaseRequirement, Long> {
+public interface ProductPurchaseRequirementRepository
+		extends CrudRepository<ProductPurchaseRequirement, Long>, ProductPurchaseRequirementRepositoryCustom {
+
+	/**
+	 * JPQL condition that selects only rows after a position in time, name and
+	 * then ID order. The range of times searched should already start at the time
+	 * of the position, so this only filters out the rows at that time which are
+	 * not after it.
+	 */
+	String AFTER_POSITION = "and (r.time > :afterTime or (r.time = :afterTime and (r.name > :afterName "
+			+ "or (r.name = :afterName and r.ID > :afterID)))) ";
+
+	/**
+	 * Finds the <code>ProductPurchaseRequirement</code> instances of a snapshot
+	 * through the (snapshot_id, name) index.
+	 *
+	 * @param snapshotID - ID of the <code>ProductPurchaseRequirementSnapshot</code>
+	 * @return <code>Set</code> of <code>ProductPurchaseRequirement</code>
+	 */
+	@Query("select r from ProductPurchaseRequirement r where r.snapshotID = :snapshotID")
+	Set<ProductPurchaseRequirement> findBySnapshotID(Long snapshotID);
+
+	/**
+	 * Finds the <code>ProductPurchaseRequirement</code> of a single
+	 * <code>Product</code> in a snapshot through the unique (snapshot_id, name)
+	 * index.
+	 *
+	 * @param snapshotID - ID of the <code>ProductPurchaseRequirementSnapshot</code>
+	 * @param name       - name of the <code>Product</code>
+	 * @return the <code>ProductPurchaseRequirement</code>, or <code>null</code> if
+	 *         the <code>Product</code> is not in the snapshot
+	 */
+	@Query("select r from ProductPurchaseRequirement r where r.snapshotID = :snapshotID and r.name = :name")
+	ProductPurchaseRequirement findBySnapshotIDAndName(Long snapshotID, String name);
 
-	// TODO: See if these can be non-native queries instead...
+	/**
+	 * Finds a page of the <code>ProductPurchaseRequirement</code> instances
+	 * generated within a time range, in time, name and then ID order, starting
+	 * after the specified position in that order. The range of the (time, name)
+	 * index that is read starts at the position, so later pages cost the same as
+	 * the first and there are no OFFSET scans.
+	 *
+	 * @param from      - start of the time range, inclusive, which for later pages
+	 *                  should be the time of the position to start after
+	 * @param to        - end of the time range, exclusive
+	 * @param afterTime - time of the position to start after, before the start
+	 *                  of the range for the first page
+	 * @param afterName - name of the position to start after
+	 * @param afterID   - ID of the position to start after
+	 * @param pageable  - the page size, the page number should be zero
+	 * @return the <code>ProductPurchaseRequirement</code> instances found
+	 */
+	@Query("select r from ProductPurchaseRequirement r where r.time >= :from and r.time < :to "
+			+ ProductPurchaseRequirementRepository.AFTER_POSITION + "order by r.time, r.name, r.ID")
+	List<ProductPurchaseRequirement> findByTimeAfter(Long from, Long to, Long afterTime, String afterName,
+			Long afterID, Pageable pageable);
 
-	@Query(value = "select max(time) from product_purchase_requirement", nativeQuery = true)
-	Long findMaxTime();
+	/**
+	 * Finds a page of the <code>ProductPurchaseRequirement</code> instances for a
+	 * single <code>Product</code> generated within a time range, as
+	 * <code>findByTimeAfter</code> does, reading a range of the (name, time) index.
+	 *
+	 * @param name      - name of the <code>Product</code>
+	 * @param from      - start of the time range, inclusive, which for later pages
+	 *                  should be the time of the position to start after
+	 * @param to        - end of the time range, exclusive
+	 * @param afterTime - time of the position to start after, before the start
+	 *                  of the range for the first page
+	 * @param afterName - name of the position to start after
+	 * @param afterID   - ID of the position to start after
+	 * @param pageable  - the page size, the page number should be zero
+	 * @return the <code>ProductPurchaseRequirement</code> instances found
+	 */
+	@Query("select r from ProductPurchaseRequirement r where r.name = :name and r.time >= :from and r.time < :to "
+			+ ProductPurchaseRequirementRepository.AFTER_POSITION + "order by r.time, r.name, r.ID")
+	List<ProductPurchaseRequirement> findByNameAndTimeAfter(String name, Long from, Long to, Long afterTime,
+			String afterName, Long afterID, Pageable pageable);
 
-	@Query(value = "select * from product_purchase_requirement where time = :time", nativeQuery = true)
-	Set<ProductPurchaseRequirement> findProductPurchaseRequirementsByTime(Long time);
+	/**
+	 * Streams the <code>ProductPurchaseRequirement</code> instances of a snapshot
+	 * from a database cursor, a fetch size at a time. Must be called within a
+	 * transaction, and the <code>Stream</code> must be closed.
+	 *
+	 * @param snapshotID - ID of the <code>ProductPurchaseRequirementSnapshot</code>
+	 * @return <code>Stream</code> of <code>ProductPurchaseRequirement</code>
+	 */
+	@QueryHints({ @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+			@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true") })
+	@Query("select r from ProductPurchaseRequirement r where r.snapshotID = :snapshotID")
+	Stream<ProductPurchaseRequirement> streamBySnapshotID(Long snapshotID);
 }
@@ -0,0 +1,53 @@
+package product.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import product.model.ProductPurchaseRequirement;
+import product.model.ProductPurchaseRequirementChange;
+
+/**
+ * Custom persistence operations for <code>ProductPurchaseRequirement</code>
+ * instances that cannot be expressed efficiently through Spring Data.
+ */
+public interface ProductPurchaseRequirementRepositoryCustom {
+
+	/**
+	 * Deletes up to the specified number of the
+	 * <code>ProductPurchaseRequirement</code> instances of a snapshot, in a
+	 * transaction of its own, so that deleting a large snapshot can be split into
+	 * short transactions that never hold locks for long.
+	 *
+	 * @param snapshotID - ID of the <code>ProductPurchaseRequirementSnapshot</code>
+	 * @param limit      - the maximum number of rows to delete
+	 * @return the number of rows deleted, less than the limit once none remain
+	 */
+	int deleteBySnapshotID(Long snapshotID, int limit);
+
+	/**
+	 * Finds the differences between two snapshots of
+	 * <code>ProductPurchaseRequirement</code> instances within the database, by
+	 * joining them on name through the (snapshot_id, name) index, so that only
+	 * the requirements that were added, removed or changed in amount are read.
+	 *
+	 * @param fromSnapshotID - ID of the earlier snapshot, or <code>null</code> to
+	 *                       compare with an empty snapshot
+	 * @param toSnapshotID   - ID of the later snapshot
+	 * @return the differences, in name order
+	 */
+	List<ProductPurchaseRequirementChange> findChanges(Long fromSnapshotID, Long toSnapshotID);
+
+	/**
+	 * Inserts the specified <code>ProductPurchaseRequirement</code> instances as a
+	 * single JDBC batch within one transaction.
+	 * <P>
+	 * <code>ProductPurchaseRequirement</code> uses an IDENTITY primary key, which
+	 * prevents Hibernate from batching inserts, so this bypasses JPA. The database
+	 * generated IDs are not populated on the specified instances.
+	 *
+	 * @param productPurchaseRequirements - the
+	 *                                    <code>ProductPurchaseRequirement</code>
+	 *                                    instances to insert
+	 */
+	void insertAll(Collection<ProductPurchaseRequirement> productPurchaseRequirements);
+}
@@ -0,0 +1,110 @@
+package product.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import javax.transaction.Transactional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import product.model.ProductPurchaseRequirement;
+import product.model.ProductPurchaseRequirementChange;
+
+/**
+ * JDBC backed implementation of
+ * <code>ProductPurchaseRequirementRepositoryCustom</code>, picked up by Spring
+ * Data as part of <code>ProductPurchaseRequirementRepository</code>.
+ */
+public class ProductPurchaseRequirementRepositoryImpl implements ProductPurchaseRequirementRepositoryCustom {
+
+	/**
+	 * SQL used to find the requirements of the later snapshot that were added or
+	 * changed in amount since the earlier snapshot.
+	 */
+	private static final String ADDED_OR_CHANGED_SQL = "select c.name, p.amount, c.amount from product_purchase_requirement c"
+			+ " left join product_purchase_requirement p on p.snapshot_id = ? and p.name = c.name"
+			+ " where c.snapshot_id = ? and (p.id is null or p.amount <> c.amount)";
+
+	/**
+	 * SQL used to delete a limited number of the rows of a snapshot.
+	 */
+	private static final String DELETE_BY_SNAPSHOT_ID_SQL = "delete from product_purchase_requirement where snapshot_id = ? limit ?";
+
+	/**
+	 * SQL used to insert a single <code>ProductPurchaseRequirement</code>.
+	 */
+	private static final String INSERT_SQL = "insert into product_purchase_requirement (amount, name, snapshot_id, time) values (?, ?, ?, ?)";
+
+	/**
+	 * SQL used to find the requirements of the earlier snapshot that are not in
+	 * the later snapshot.
+	 */
+	private static final String REMOVED_SQL = "select p.name, p.amount, null from product_purchase_requirement p"
+			+ " where p.snapshot_id = ? and not exists (select 1 from product_purchase_requirement c"
+			+ " where c.snapshot_id = ? and c.name = p.name)";
+
+	/**
+	 * The JdbcTemplate.
+	 */
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional
+	public int deleteBySnapshotID(final Long snapshotID, final int limit) {
+		Objects.requireNonNull(snapshotID);
+		return this.jdbcTemplate.update(ProductPurchaseRequirementRepositoryImpl.DELETE_BY_SNAPSHOT_ID_SQL, snapshotID,
+				limit);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional
+	public List<ProductPurchaseRequirementChange> findChanges(final Long fromSnapshotID, final Long toSnapshotID) {
+		Objects.requireNonNull(toSnapshotID);
+
+		final RowMapper<ProductPurchaseRequirementChange> rowMapper = (resultSet,
+				rowNumber) -> new ProductPurchaseRequirementChange(resultSet.getString(1),
+						resultSet.getObject(2, Long.class), resultSet.getObject(3, Long.class));
+
+		final List<ProductPurchaseRequirementChange> productPurchaseRequirementChanges = this.jdbcTemplate
+				.query(ProductPurchaseRequirementRepositoryImpl.ADDED_OR_CHANGED_SQL, rowMapper, fromSnapshotID, toSnapshotID);
+		productPurchaseRequirementChanges.addAll(this.jdbcTemplate
+				.query(ProductPurchaseRequirementRepositoryImpl.REMOVED_SQL, rowMapper, fromSnapshotID, toSnapshotID));
+		productPurchaseRequirementChanges.sort(Comparator.comparing(ProductPurchaseRequirementChange::getName));
+
+		return productPurchaseRequirementChanges;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional
+	public void insertAll(final Collection<ProductPurchaseRequirement> productPurchaseRequirements) {
+		Objects.requireNonNull(productPurchaseRequirements);
+
+		if (productPurchaseRequirements.isEmpty()) {
+			return;
+		}
+
+		this.jdbcTemplate.batchUpdate(ProductPurchaseRequirementRepositoryImpl.INSERT_SQL,
+				new ArrayList<>(productPurchaseRequirements), productPurchaseRequirements.size(),
+				(preparedStatement, productPurchaseRequirement) -> {
+					preparedStatement.setLong(1, productPurchaseRequirement.getAmount());
+					preparedStatement.setString(2, productPurchaseRequirement.getName());
+					preparedStatement.setLong(3, productPurchaseRequirement.getSnapshotID());
+					preparedStatement.setLong(4, productPurchaseRequirement.getTime());
+				});
+	}
+}
@@ -0,0 +1,74 @@
+package product.repository;
+
+import java.util.List;
+
+import javax.transaction.Transactional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+import product.model.ProductPurchaseRequirementSnapshot;
+
+/**
+ * CrudRepository for working with <code>ProductPurchaseRequirementSnapshot</code>
+ * headers.
+ */
+public interface ProductPurchaseRequirementSnapshotRepository
+		extends CrudRepository<ProductPurchaseRequirementSnapshot, Long> {
+
+	/**
+	 * Finds the IDs of complete snapshots, newest first.
+	 *
+	 * @param pageable - the page of IDs to find
+	 * @return the IDs of the complete snapshots in the page
+	 */
+	@Query("select s.ID from ProductPurchaseRequirementSnapshot s "
+			+ "where s.status = product.model.ProductPurchaseRequirementSnapshot$Status.COMPLETE order by s.ID desc")
+	List<Long> findCompleteIDs(Pageable pageable);
+
+	/**
+	 * Finds the latest complete snapshot.
+	 *
+	 * @return the latest complete snapshot, or <code>null</code> if there is none
+	 */
+	@Query("select s from ProductPurchaseRequirementSnapshot s where s.ID = (select max(l.ID) "
+			+ "from ProductPurchaseRequirementSnapshot l where l.status = product.model.ProductPurchaseRequirementSnapshot$Status.COMPLETE)")
+	ProductPurchaseRequirementSnapshot findLatest();
+
+	/**
+	 * Finds the latest complete snapshot generated at or before the specified
+	 * time.
+	 *
+	 * @param time - time as UTC milliseconds from the epoch
+	 * @return the snapshot, or <code>null</code> if there is none
+	 */
+	@Query("select s from ProductPurchaseRequirementSnapshot s where s.ID = (select max(l.ID) "
+			+ "from ProductPurchaseRequirementSnapshot l where l.status = product.model.ProductPurchaseRequirementSnapshot$Status.COMPLETE "
+			+ "and l.time <= :time)")
+	ProductPurchaseRequirementSnapshot findLatestAtOrBefore(Long time);
+
+	/**
+	 * Finds the snapshots, of any status, generated before the specified time and
+	 * with an ID lower than the specified ID, oldest first.
+	 *
+	 * @param time - time as UTC milliseconds from the epoch
+	 * @param id   - ID below which snapshots are found
+	 * @return the snapshots found
+	 */
+	@Query("select s from ProductPurchaseRequirementSnapshot s where s.time < :time and s.ID < :id order by s.ID")
+	List<ProductPurchaseRequirementSnapshot> findOlderThan(Long time, Long id);
+
+	/**
+	 * Adds one to the item count of a snapshot, for a
+	 * <code>ProductPurchaseRequirement</code> added to it after it was generated.
+	 *
+	 * @param id - ID of the snapshot
+	 * @return the number of snapshots updated, zero if it does not exist
+	 */
+	@Modifying
+	@Transactional
+	@Query("update ProductPurchaseRequirementSnapshot s set s.itemCount = s.itemCount + 1 where s.ID = :id")
+	int incrementItemCount(Long id);
+}
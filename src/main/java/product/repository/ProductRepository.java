@@ -1,16 +1,27 @@
 package product.repository;
 
+import java.util.Collection;
+import java.util.List;
+
 import javax.transaction.Transactional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
 import product.model.Product;
+import product.model.ProductShortfall;
+import product.model.ProductStockFingerprint;
 
 /**
  * CrudRepository for working with <code>Product</code> instances.
+ * <P>
+ * The single statement updates change one column in place, so they cannot lose
+ * a concurrent update, and also increment the version so that an entity read
+ * before them can no longer be saved over them.
  */
-public interface ProductRepository extends CrudRepository<Product, Long> {
+public interface ProductRepository extends CrudRepository<Product, Long>, ProductRepositoryCustom {
 
 	/**
 	 * Delete a <code>Product</code> by name.
@@ -29,4 +40,118 @@ public interface ProductRepository extends CrudRepository<Product, Long> {
 	 * @return the <code>Product</code> if it has found based on the specified name
 	 */
 	Product findByName(String name);
+
+	/**
+	 * Finds the highest ID of any <code>Product</code>.
+	 *
+	 * @return the highest ID, zero if there are no Products
+	 */
+	@Query("select coalesce(max(p.ID), 0) from Product p")
+	Long findMaxID();
+
+	/**
+	 * Finds the lowest ID of any <code>Product</code>.
+	 *
+	 * @return the lowest ID, zero if there are no Products
+	 */
+	@Query("select coalesce(min(p.ID), 0) from Product p")
+	Long findMinID();
+
+	/**
+	 * Finds a page of <code>ProductShortfall</code> projections for the
+	 * <code>Product</code> instances that are not blocked and have a current
+	 * amount below their minimum amount, ordered by ID. Only Products with an ID
+	 * greater than the specified ID are returned, so the whole catalogue can be
+	 * walked in chunks without OFFSET scans.
+	 * <P>
+	 * This gives the same results as
+	 * <code>Product.getProductPurchaseRequirement()</code>, but is worked out by
+	 * the database and does not load any entities.
+	 *
+	 * @param id       - ID after which shortfalls are returned
+	 * @param pageable - the page size, the page number should be zero
+	 * @return the <code>ProductShortfall</code> projections found, in ID order
+	 */
+	@Query("select new product.model.ProductShortfall(p.ID, p.name, p.minAmount - p.currentAmount) from Product p "
+			+ "where p.blocked = false and p.currentAmount < p.minAmount and p.ID > :id order by p.ID")
+	List<ProductShortfall> findShortfallsAfterID(Long id, Pageable pageable);
+
+	/**
+	 * Finds a page of <code>ProductShortfall</code> projections, as
+	 * <code>findShortfallsAfterID</code> does, but only for the Products with an
+	 * ID up to the specified last ID, so that separate ranges of IDs can be walked
+	 * at the same time.
+	 *
+	 * @param id       - ID after which shortfalls are returned
+	 * @param lastID   - highest ID for which shortfalls are returned
+	 * @param pageable - the page size, the page number should be zero
+	 * @return the <code>ProductShortfall</code> projections found, in ID order
+	 */
+	@Query("select new product.model.ProductShortfall(p.ID, p.name, p.minAmount - p.currentAmount) from Product p "
+			+ "where p.blocked = false and p.currentAmount < p.minAmount and p.ID > :id and p.ID <= :lastID "
+			+ "order by p.ID")
+	List<ProductShortfall> findShortfallsAfterIDUpTo(Long id, Long lastID, Pageable pageable);
+
+	/**
+	 * Finds the <code>ProductShortfall</code> projections of those of the named
+	 * <code>Product</code> instances that are not blocked and have a current
+	 * amount below their minimum amount.
+	 *
+	 * @param names - names of the <code>Product</code> instances
+	 * @return the <code>ProductShortfall</code> projections found
+	 */
+	@Query("select new product.model.ProductShortfall(p.ID, p.name, p.minAmount - p.currentAmount) from Product p "
+			+ "where p.blocked = false and p.currentAmount < p.minAmount and p.name in :names")
+	List<ProductShortfall> findShortfallsByNameIn(Collection<String> names);
+
+	/**
+	 * Gets the <code>ProductStockFingerprint</code> of every <code>Product</code>,
+	 * worked out by the database.
+	 *
+	 * @return the <code>ProductStockFingerprint</code>
+	 */
+	@Query("select new product.model.ProductStockFingerprint(count(p), coalesce(max(p.ID), 0), "
+			+ "coalesce(sum(p.version), 0)) from Product p")
+	ProductStockFingerprint findStockFingerprint();
+
+	/**
+	 * Sets whether a <code>Product</code> is blocked in a single statement.
+	 *
+	 * @param name    - name of the <code>Product</code>
+	 * @param blocked - <code>true</code> if the <code>Product</code> is blocked
+	 *                from further ordering
+	 * @return the number of <code>Product</code> instances updated, zero if the
+	 *         <code>Product</code> does not exist
+	 */
+	@Modifying
+	@Transactional
+	@Query("update Product p set p.blocked = :blocked, p.version = p.version + 1 where p.name = :name")
+	int updateBlocked(String name, Boolean blocked);
+
+	/**
+	 * Sets the current amount of a <code>Product</code> in a single statement.
+	 *
+	 * @param name   - name of the <code>Product</code>
+	 * @param amount - amount of the <code>Product</code> in stock
+	 * @return the number of <code>Product</code> instances updated, zero if the
+	 *         <code>Product</code> does not exist
+	 */
+	@Modifying
+	@Transactional
+	@Query("update Product p set p.currentAmount = :amount, p.version = p.version + 1 where p.name = :name")
+	int updateCurrentAmount(String name, Long amount);
+
+	/**
+	 * Sets the minimum amount of a <code>Product</code> in a single statement.
+	 *
+	 * @param name   - name of the <code>Product</code>
+	 * @param amount - minimum amount of the <code>Product</code> which should be in
+	 *               stock
+	 * @return the number of <code>Product</code> instances updated, zero if the
+	 *         <code>Product</code> does not exist
+	 */
+	@Modifying
+	@Transactional
+	@Query("update Product p set p.minAmount = :amount, p.version = p.version + 1 where p.name = :name")
+	int updateMinAmount(String name, Long amount);
 }
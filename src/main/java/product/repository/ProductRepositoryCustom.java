@@ -0,0 +1,74 @@
+package product.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import product.model.Product;
+import product.model.ProductUpdate;
+
+/**
+ * Custom persistence operations for <code>Product</code> instances that cannot
+ * be expressed through Spring Data.
+ */
+public interface ProductRepositoryCustom {
+
+	/**
+	 * Atomically adds the specified delta to the current amount of a
+	 * <code>Product</code>, treating a missing current amount as zero, and returns
+	 * the resulting current amount.
+	 *
+	 * @param name  - name of the <code>Product</code>
+	 * @param delta - amount to add to the current amount, negative to subtract
+	 * @return the current amount after the adjustment, or <code>null</code> if
+	 *         the <code>Product</code> does not exist
+	 */
+	Long adjustCurrentAmount(String name, long delta);
+
+	/**
+	 * Applies the specified <code>ProductUpdate</code> instances within a single
+	 * transaction, using as few JDBC batches as possible while still applying the
+	 * updates of each <code>Product</code> in order.
+	 * <P>
+	 * Every update must have an operation and a name, and an amount if its
+	 * operation requires one.
+	 *
+	 * @param productUpdates - the <code>ProductUpdate</code> instances to apply
+	 * @return the number of <code>Product</code> rows changed by each update, in
+	 *         the same order, zero meaning that the <code>Product</code> did not
+	 *         exist
+	 */
+	int[] applyAll(List<ProductUpdate> productUpdates);
+
+	/**
+	 * Reads the stock levels of a page of <code>Product</code> instances, in ID
+	 * order, starting after the specified ID, so the whole catalogue can be walked
+	 * in chunks without OFFSET scans.
+	 * <P>
+	 * A <code>Product</code> that is missing any of its values is passed as
+	 * blocked, as the purchase requirement rule never applies to it, with any
+	 * missing amount as zero.
+	 *
+	 * @param id       - ID after which <code>Product</code> instances are read
+	 * @param limit    - the maximum number of <code>Product</code> instances read
+	 * @param consumer - receives the stock levels of each <code>Product</code>
+	 */
+	void forEachStockAfterID(long id, int limit, ProductStockConsumer consumer);
+
+	/**
+	 * Reads the stock levels of those of the named <code>Product</code> instances
+	 * that exist, in ID order, as <code>forEachStockAfterID</code> does.
+	 *
+	 * @param names    - names of the <code>Product</code> instances
+	 * @param consumer - receives the stock levels of each <code>Product</code>
+	 */
+	void forEachStockByNameIn(Collection<String> names, ProductStockConsumer consumer);
+
+	/**
+	 * Inserts the specified <code>Product</code> instances, with their IDs and
+	 * versions, in a single transaction as one JDBC batch, such as to restore them
+	 * into an empty database. Every value must be set.
+	 *
+	 * @param products - the <code>Product</code> instances to insert
+	 */
+	void insertAll(Collection<Product> products);
+}
@@ -0,0 +1,332 @@
+package product.repository;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import javax.transaction.Transactional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import product.model.Product;
+import product.model.ProductUpdate;
+
+/**
+ * JDBC backed implementation of <code>ProductRepositoryCustom</code>, picked up
+ * by Spring Data as part of <code>ProductRepository</code>.
+ */
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+	/**
+	 * SQL used to adjust the current amount of a <code>Product</code>.
+	 */
+	private static final String ADJUST_CURRENT_AMOUNT_SQL = "update product set current_amount = coalesce(current_amount, 0) + ?, version = version + 1 where name = ?";
+
+	/**
+	 * SQL used to delete a <code>Product</code>.
+	 */
+	private static final String DELETE_SQL = "delete from product where name = ?";
+
+	/**
+	 * SQL used to insert a <code>Product</code> with default values.
+	 */
+	private static final String INSERT_SQL = "insert into product (blocked, current_amount, min_amount, name) values (false, 0, 0, ?)";
+
+	/**
+	 * SQL used to insert a <code>Product</code> with its ID and version.
+	 */
+	private static final String INSERT_WITH_ID_SQL = "insert into product (id, blocked, current_amount, min_amount, name, version) values (?, ?, ?, ?, ?, ?)";
+
+	/**
+	 * SQL used to read back the current amount of a <code>Product</code>.
+	 */
+	private static final String SELECT_CURRENT_AMOUNT_SQL = "select current_amount from product where name = ?";
+
+	/**
+	 * SQL used to read which of a number of <code>Product</code> names exist,
+	 * completed by a placeholder for each name.
+	 */
+	private static final String SELECT_NAMES_SQL = "select name from product where name in ";
+
+	/**
+	 * SQL used to read the stock levels of <code>Product</code> instances, holding
+	 * any that is missing a value as blocked, completed by a condition.
+	 */
+	private static final String SELECT_STOCK_SQL = "select id, name, "
+			+ "case when blocked is null or current_amount is null or min_amount is null then true else blocked end, "
+			+ "coalesce(current_amount, 0), coalesce(min_amount, 0), version from product ";
+
+	/**
+	 * SQL used to set whether a <code>Product</code> is blocked.
+	 */
+	private static final String UPDATE_BLOCKED_SQL = "update product set blocked = ?, version = version + 1 where name = ?";
+
+	/**
+	 * SQL used to set the current amount of a <code>Product</code>.
+	 */
+	private static final String UPDATE_CURRENT_AMOUNT_SQL = "update product set current_amount = ?, version = version + 1 where name = ?";
+
+	/**
+	 * SQL used to set the minimum amount of a <code>Product</code>.
+	 */
+	private static final String UPDATE_MIN_AMOUNT_SQL = "update product set min_amount = ?, version = version + 1 where name = ?";
+
+	/**
+	 * The JdbcTemplate.
+	 */
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * {@inheritDoc}
+	 * <P>
+	 * The update holds a lock on the row until the transaction commits, so the
+	 * amount read back is the one that this adjustment produced.
+	 */
+	@Override
+	@Transactional
+	public Long adjustCurrentAmount(final String name, final long delta) {
+		Objects.requireNonNull(name);
+
+		if (this.jdbcTemplate.update(ProductRepositoryImpl.ADJUST_CURRENT_AMOUNT_SQL, delta, name) == 0) {
+			return null;
+		}
+
+		return this.jdbcTemplate.queryForObject(ProductRepositoryImpl.SELECT_CURRENT_AMOUNT_SQL, Long.class, name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <P>
+	 * Each update is placed in a round numbered by how many earlier updates in the
+	 * list are for the same <code>Product</code>. Rounds are applied in order, and
+	 * within a round every <code>Product</code> appears at most once, so the
+	 * updates of a round are sent as one JDBC batch per operation while each
+	 * <code>Product</code> still sees its own updates in order.
+	 */
+	@Override
+	@Transactional
+	public int[] applyAll(final List<ProductUpdate> productUpdates) {
+		Objects.requireNonNull(productUpdates);
+
+		final int[] counts = new int[productUpdates.size()];
+		final Map<String, Integer> updatesPerName = new HashMap<>();
+		final List<Map<ProductUpdate.Operation, List<Integer>>> rounds = new ArrayList<>();
+
+		for (int i = 0; i < productUpdates.size(); i++) {
+			final ProductUpdate productUpdate = productUpdates.get(i);
+			final int round = updatesPerName.merge(productUpdate.getName(), 1, Integer::sum) - 1;
+
+			if (round == rounds.size()) {
+				rounds.add(new EnumMap<>(ProductUpdate.Operation.class));
+			}
+
+			rounds.get(round).computeIfAbsent(productUpdate.getOperation(), operation -> new ArrayList<>()).add(i);
+		}
+
+		for (final Map<ProductUpdate.Operation, List<Integer>> round : rounds) {
+			round.forEach((operation, indexes) -> {
+				final List<ProductUpdate> run = new ArrayList<>(indexes.size());
+				indexes.forEach(index -> run.add(productUpdates.get(index)));
+
+				final int[] runCounts = this.applyRun(operation, run);
+				for (int i = 0; i < runCounts.length; i++) {
+					counts[indexes.get(i)] = runCounts[i];
+				}
+			});
+		}
+
+		return counts;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void forEachStockAfterID(final long id, final int limit, final ProductStockConsumer consumer) {
+		Objects.requireNonNull(consumer);
+
+		this.jdbcTemplate.query(ProductRepositoryImpl.SELECT_STOCK_SQL + "where id > ? order by id limit ?",
+				ProductRepositoryImpl.rowCallbackHandler(consumer), id, limit);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void forEachStockByNameIn(final Collection<String> names, final ProductStockConsumer consumer) {
+		Objects.requireNonNull(names);
+		Objects.requireNonNull(consumer);
+
+		if (names.isEmpty()) {
+			return;
+		}
+
+		this.jdbcTemplate.query(
+				ProductRepositoryImpl.SELECT_STOCK_SQL + "where name in ("
+						+ String.join(", ", Collections.nCopies(names.size(), "?")) + ") order by id",
+				ProductRepositoryImpl.rowCallbackHandler(consumer), names.toArray());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional
+	public void insertAll(final Collection<Product> products) {
+		Objects.requireNonNull(products);
+
+		if (products.isEmpty()) {
+			return;
+		}
+
+		this.jdbcTemplate.batchUpdate(ProductRepositoryImpl.INSERT_WITH_ID_SQL, new ArrayList<>(products),
+				products.size(), (preparedStatement, product) -> {
+					preparedStatement.setLong(1, product.getID());
+					preparedStatement.setBoolean(2, product.getBlocked());
+					preparedStatement.setLong(3, product.getCurrentAmount());
+					preparedStatement.setLong(4, product.getMinAmount());
+					preparedStatement.setString(5, product.getName());
+					preparedStatement.setLong(6, product.getVersion());
+				});
+	}
+
+	/**
+	 * Applies a run of <code>ProductUpdate</code> instances that all have the
+	 * specified operation and are for different <code>Product</code> instances.
+	 *
+	 * @param operation - the operation of every update in the run
+	 * @param run       - the <code>ProductUpdate</code> instances to apply
+	 * @return the number of <code>Product</code> rows changed by each update
+	 */
+	private int[] applyRun(final ProductUpdate.Operation operation, final List<ProductUpdate> run) {
+
+		switch (operation) {
+		case ADJUST_CURRENT_AMOUNT:
+			return this.batchUpdate(ProductRepositoryImpl.ADJUST_CURRENT_AMOUNT_SQL, run,
+					(preparedStatement, productUpdate) -> {
+						preparedStatement.setLong(1, productUpdate.getAmount());
+						preparedStatement.setString(2, productUpdate.getName());
+					}, () -> this.findNames(run));
+		case BLOCK:
+		case UNBLOCK:
+			return this.batchUpdate(ProductRepositoryImpl.UPDATE_BLOCKED_SQL, run,
+					(preparedStatement, productUpdate) -> {
+						preparedStatement.setBoolean(1, operation == ProductUpdate.Operation.BLOCK);
+						preparedStatement.setString(2, productUpdate.getName());
+					}, () -> this.findNames(run));
+		case CREATE:
+			this.batchUpdate(ProductRepositoryImpl.DELETE_SQL, run,
+					(preparedStatement, productUpdate) -> preparedStatement.setString(1, productUpdate.getName()),
+					null);
+			return this.batchUpdate(ProductRepositoryImpl.INSERT_SQL, run,
+					(preparedStatement, productUpdate) -> preparedStatement.setString(1, productUpdate.getName()),
+					null);
+		case DELETE:
+			// The rows are gone once deleted, so which existed is read beforehand...
+
+			final Set<String> names = this.findNames(run);
+			return this.batchUpdate(ProductRepositoryImpl.DELETE_SQL, run,
+					(preparedStatement, productUpdate) -> preparedStatement.setString(1, productUpdate.getName()),
+					() -> names);
+		case SET_CURRENT_AMOUNT:
+			return this.batchUpdate(ProductRepositoryImpl.UPDATE_CURRENT_AMOUNT_SQL, run,
+					(preparedStatement, productUpdate) -> {
+						preparedStatement.setLong(1, productUpdate.getAmount());
+						preparedStatement.setString(2, productUpdate.getName());
+					}, () -> this.findNames(run));
+		case SET_MIN_AMOUNT:
+			return this.batchUpdate(ProductRepositoryImpl.UPDATE_MIN_AMOUNT_SQL, run,
+					(preparedStatement, productUpdate) -> {
+						preparedStatement.setLong(1, productUpdate.getAmount());
+						preparedStatement.setString(2, productUpdate.getName());
+					}, () -> this.findNames(run));
+		default:
+			throw new IllegalArgumentException("Unsupported operation " + operation);
+		}
+	}
+
+	/**
+	 * Executes the specified SQL once per <code>ProductUpdate</code> as a single
+	 * JDBC batch.
+	 *
+	 * Drivers that rewrite batches, such as MySQL with
+	 * <code>rewriteBatchedStatements</code>, may not report counts, in which case
+	 * each update is counted as one if its <code>Product</code> exists.
+	 *
+	 * @param sql           - the SQL to execute
+	 * @param run           - the <code>ProductUpdate</code> instances to execute it
+	 *                      for
+	 * @param setter        - sets the SQL parameters from each update
+	 * @param existingNames - gets the names of the <code>Product</code> instances
+	 *                      that the updates apply to, only if counts are not
+	 *                      reported, or <code>null</code> to count each update as
+	 *                      one
+	 * @return the number of rows changed by each update
+	 */
+	private int[] batchUpdate(final String sql, final List<ProductUpdate> run,
+			final ParameterizedPreparedStatementSetter<ProductUpdate> setter,
+			final Supplier<Set<String>> existingNames) {
+
+		final int[] counts = this.jdbcTemplate.batchUpdate(sql, run, run.size(), setter)[0];
+		Set<String> names = null;
+
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] == Statement.SUCCESS_NO_INFO) {
+
+				if (existingNames == null) {
+					counts[i] = 1;
+					continue;
+				}
+
+				if (names == null) {
+					names = existingNames.get();
+				}
+
+				counts[i] = names.contains(run.get(i).getName()) ? 1 : 0;
+			}
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Finds which of the <code>Product</code> instances that updates apply to
+	 * exist.
+	 *
+	 * @param run - the <code>ProductUpdate</code> instances
+	 * @return the names of those that exist
+	 */
+	private Set<String> findNames(final List<ProductUpdate> run) {
+		final String placeholders = String.join(", ", Collections.nCopies(run.size(), "?"));
+		final Object[] names = run.stream().map(ProductUpdate::getName).toArray();
+
+		return new HashSet<>(this.jdbcTemplate.queryForList(
+				ProductRepositoryImpl.SELECT_NAMES_SQL + "(" + placeholders + ")", String.class, names));
+	}
+
+	/**
+	 * Creates a <code>RowCallbackHandler</code> that passes the stock levels in
+	 * each row of a result set of <code>SELECT_STOCK_SQL</code> to a
+	 * <code>ProductStockConsumer</code>.
+	 *
+	 * @param consumer - receives the stock levels
+	 * @return the <code>RowCallbackHandler</code>
+	 */
+	private static RowCallbackHandler rowCallbackHandler(final ProductStockConsumer consumer) {
+		return resultSet -> consumer.accept(resultSet.getLong(1), resultSet.getString(2), resultSet.getBoolean(3),
+				resultSet.getLong(4), resultSet.getLong(5), resultSet.getLong(6));
+	}
+}
@@ -0,0 +1,26 @@
+package product.repository;
+
+/**
+ * Receives the stock levels of a <code>Product</code> as primitive values,
+ * straight from a row of a query, so that reading the whole catalogue does not
+ * box or allocate anything per <code>Product</code> beyond its name.
+ */
+@FunctionalInterface
+public interface ProductStockConsumer {
+
+	/**
+	 * Accepts the stock levels of a <code>Product</code>.
+	 *
+	 * @param ID            - database primary key value of the <code>Product</code>
+	 * @param name          - name of the <code>Product</code>
+	 * @param blocked       - <code>true</code> if the <code>Product</code> is
+	 *                      blocked, or is missing a value, so should never be
+	 *                      purchased
+	 * @param currentAmount - current amount of stock of the <code>Product</code>
+	 * @param minAmount     - minimum amount of stock of the <code>Product</code>
+	 *                      that should be present
+	 * @param version       - number of times the <code>Product</code> has been
+	 *                      updated
+	 */
+	void accept(long ID, String name, boolean blocked, long currentAmount, long minAmount, long version);
+}
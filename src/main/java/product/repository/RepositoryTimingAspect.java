@@ -0,0 +1,96 @@
+package product.repository;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times every call to a Spring Data repository of this application, including
+ * the JDBC batches of the custom fragments, with the
+ * <code>product.repository</code> timer.
+ * <P>
+ * Each call is tagged with the simple name of the <code>repository</code>
+ * interface, the <code>method</code> and the simple name of the
+ * <code>exception</code> thrown, or <code>none</code>, so that a slow query can
+ * be found without logging every statement.
+ */
+@Aspect
+@Component
+public class RepositoryTimingAspect {
+
+	/**
+	 * The name of the timer of every repository call.
+	 */
+	static final String TIMER_NAME = "product.repository";
+
+	/**
+	 * The registry the timers are registered with.
+	 */
+	private final MeterRegistry meterRegistry;
+
+	/**
+	 * The simple name of the repository interface of each repository class.
+	 */
+	private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructs a <code>RepositoryTimingAspect</code>.
+	 *
+	 * @param meterRegistry - the registry the timers are registered with
+	 */
+	@Autowired
+	public RepositoryTimingAspect(final MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * Times a repository call, recording its outcome whether it returns or throws.
+	 *
+	 * @param joinPoint - the repository call
+	 * @return the result of the call
+	 * @throws Throwable - anything thrown by the call
+	 */
+	@Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+	public Object time(final ProceedingJoinPoint joinPoint) throws Throwable {
+
+		final Timer.Sample sample = Timer.start(this.meterRegistry);
+		String exception = "none";
+
+		try {
+			return joinPoint.proceed();
+		} catch (final Throwable e) {
+			exception = e.getClass().getSimpleName();
+			throw e;
+		} finally {
+			sample.stop(Timer.builder(RepositoryTimingAspect.TIMER_NAME)
+					.tag("repository", this.getRepositoryName(joinPoint.getTarget()))
+					.tag("method", joinPoint.getSignature().getName()).tag("exception", exception)
+					.register(this.meterRegistry));
+		}
+	}
+
+	/**
+	 * Gets the simple name of the repository interface, in this package, that a
+	 * repository implements.
+	 *
+	 * @param repository - the repository
+	 * @return the simple name of its repository interface
+	 */
+	private String getRepositoryName(final Object repository) {
+		return this.repositoryNames.computeIfAbsent(repository.getClass(),
+				repositoryClass -> Arrays.stream(AopProxyUtils.proxiedUserInterfaces(repository))
+						.filter(repositoryInterface -> RepositoryTimingAspect.class.getPackage()
+								.equals(repositoryInterface.getPackage()))
+						.findFirst().map(Class::getSimpleName).orElse(repositoryClass.getSimpleName()));
+	}
+}
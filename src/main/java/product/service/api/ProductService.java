@@ -1,9 +1,18 @@
 package product.service.api;
 
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import product.model.Product;
+import product.model.ProductDemandStatistics;
 import product.model.ProductPurchaseRequirement;
+import product.model.ProductPurchaseRequirementChanges;
+import product.model.ProductPurchaseRequirementPage;
+import product.model.ProductUpdate;
+import product.model.ProductUpdateResult;
+import product.model.RetentionReport;
+import product.model.SnapshotJob;
 
 /**
  * Service for creating, blocking, deleting and setting values on
@@ -13,6 +22,34 @@ import product.model.ProductPurchaseRequirement;
  */
 public interface ProductService {
 
+	/**
+	 * Adjusts the current amount held of the specified <code>Product</code> by the
+	 * specified delta, in a single atomic operation, so that concurrent
+	 * adjustments, such as sales from many tills, are never lost. A missing current
+	 * amount is treated as zero.
+	 * <P>
+	 * If write-behind is enabled the adjustment is buffered and applied shortly
+	 * afterwards, once the <code>Product</code> has been found to exist, so its
+	 * current amount is not yet known.
+	 *
+	 * @param name  - name of the <code>Product</code>
+	 * @param delta - amount to add to the current amount, negative for a sale
+	 * @return the current amount of the <code>Product</code> after the adjustment,
+	 *         or <code>null</code> if write-behind is enabled and the adjustment
+	 *         has been buffered
+	 */
+	Long adjustCurrentAmount(String name, Long delta);
+
+	/**
+	 * Applies a batch of mixed changes to <code>Product</code> instances, in order,
+	 * such as the results of a stock-take. The batch is applied in chunks, each in
+	 * its own transaction, so a failure only affects the chunk it occurred in.
+	 *
+	 * @param productUpdates - the changes to apply
+	 * @return the outcome of each change, in the same order
+	 */
+	List<ProductUpdateResult> applyBatch(List<ProductUpdate> productUpdates);
+
 	/**
 	 * Block a <code>Product</code> by name.
 	 *
@@ -42,6 +79,15 @@ public interface ProductService {
 	 */
 	void delete(String name);
 
+	/**
+	 * Gets the report of the last run of the retention of historical snapshots of
+	 * <code>ProductPurchaseRequirement</code> instances.
+	 *
+	 * @return the report of the last run, or <code>null</code> if there has not
+	 *         been one
+	 */
+	RetentionReport getLastRetentionReport();
+
 	/**
 	 * Gets the lastest <code>Set</code> of all
 	 * <code>ProductPurchaseRequirement</code> for all <code>Product</code>
@@ -65,6 +111,50 @@ public interface ProductService {
 	 */
 	Set<ProductPurchaseRequirement> getLatestProductPurchaseRequirements();
 
+	/**
+	 * Gets the average, peak and trend of the demand for a <code>Product</code>
+	 * over time, along with its daily and monthly breakdown, from rollups that are
+	 * maintained as <code>ProductPurchaseRequirement</code> instances are
+	 * generated and overridden.
+	 *
+	 * @param name - name of the <code>Product</code>
+	 * @return the demand for the <code>Product</code>
+	 */
+	ProductDemandStatistics getProductDemandStatistics(String name);
+
+	/**
+	 * Gets the differences between the snapshot of
+	 * <code>ProductPurchaseRequirement</code> instances that was the latest at the
+	 * specified time and the latest snapshot, so that a consumer that already holds
+	 * the earlier snapshot only needs to process the requirements that were added,
+	 * removed or changed in amount.
+	 *
+	 * @param since - time of the snapshot held, as UTC milliseconds from the
+	 *              epoch. If no snapshot had been generated by then, every
+	 *              requirement of the latest snapshot is added
+	 * @return the differences between the two snapshots
+	 */
+	ProductPurchaseRequirementChanges getProductPurchaseRequirementChanges(Long since);
+
+	/**
+	 * Gets a page of the <code>ProductPurchaseRequirement</code> instances
+	 * generated within a time range, across every snapshot, in time and then name
+	 * order. Every page is read as quickly as the first, however far into the
+	 * history it is, and only one page is held in memory at a time.
+	 *
+	 * @param from   - start of the time range as UTC milliseconds from the epoch,
+	 *               inclusive
+	 * @param to     - end of the time range as UTC milliseconds from the epoch,
+	 *               exclusive, or <code>null</code> for no end
+	 * @param name   - name of the <code>Product</code> to get the history of, or
+	 *               <code>null</code> for every <code>Product</code>
+	 * @param cursor - cursor returned with the previous page, or
+	 *               <code>null</code> for the first page
+	 * @return the page, with the cursor for the next page if there may be one
+	 */
+	ProductPurchaseRequirementPage getProductPurchaseRequirementHistory(Long from, Long to, String name,
+			String cursor);
+
 	/**
 	 * Generates and gets a <code>Set</code> of all
 	 * <code>ProductPurchaseRequirement</code> for all <code>Product</code>
@@ -79,6 +169,16 @@ public interface ProductService {
 	 */
 	Set<ProductPurchaseRequirement> getProductPurchaseRequirements();
 
+	/**
+	 * Gets a job started by <code>startSnapshotJob()</code>, with the progress or
+	 * result of its snapshot. A <code>SnapshotJobMissingException</code> is thrown
+	 * if the job was never started, or has been forgotten since it finished.
+	 *
+	 * @param ID - ID of the job
+	 * @return the job
+	 */
+	SnapshotJob getSnapshotJob(Long ID);
+
 	/**
 	 * Overrides the minimum purchase amount in the last set of product purchase
 	 * requirements generated.
@@ -102,8 +202,22 @@ public interface ProductService {
 	 */
 	void overrideMinAmount(String name, Long amount);
 
+	/**
+	 * Purges the historical snapshots of <code>ProductPurchaseRequirement</code>
+	 * instances that are no longer kept now, rather than waiting for the retention
+	 * schedule. The latest snapshot is always kept.
+	 *
+	 * @return the report of the run, including each snapshot that was purged
+	 */
+	RetentionReport purgeProductPurchaseRequirementSnapshots();
+
 	/**
 	 * Sets the current amount held of the specified <code>Product</code>.
+	 * <P>
+	 * If write-behind is enabled the change is buffered and applied shortly
+	 * afterwards, coalesced with any other changes to the same
+	 * <code>Product</code>, once the <code>Product</code> has been found to
+	 * exist.
 	 *
 	 * @param name   - name of the <code>Product</code>
 	 * @param amount - amount of the <code>Product</code> in stock
@@ -121,6 +235,40 @@ public interface ProductService {
 	 */
 	void setMinAmount(String name, Long amount);
 
+	/**
+	 * Starts generating and persisting a snapshot of
+	 * <code>ProductPurchaseRequirement</code> instances, as
+	 * <code>getProductPurchaseRequirements()</code> does, in the background. If a
+	 * snapshot is already being generated this way, its job is joined instead of
+	 * starting another.
+	 *
+	 * @return the started or joined job, whose progress and result are got by
+	 *         <code>getSnapshotJob(Long)</code>
+	 */
+	SnapshotJob startSnapshotJob();
+
+	/**
+	 * Streams the lastest <code>Set</code> of all
+	 * <code>ProductPurchaseRequirement</code>, as returned by
+	 * <code>getLatestProductPurchaseRequirements()</code>, to the specified
+	 * consumer one at a time from a database cursor, without holding the whole
+	 * <code>Set</code> in memory.
+	 *
+	 * @param consumer - consumer of each <code>ProductPurchaseRequirement</code>
+	 */
+	void streamLatestProductPurchaseRequirements(Consumer<ProductPurchaseRequirement> consumer);
+
+	/**
+	 * Generates <code>ProductPurchaseRequirement</code> for all
+	 * <code>Product</code> currently recorded, as
+	 * <code>getProductPurchaseRequirements()</code> does, and streams each to the
+	 * specified consumer as soon as it has been persisted, without holding the
+	 * whole <code>Set</code> in memory.
+	 *
+	 * @param consumer - consumer of each <code>ProductPurchaseRequirement</code>
+	 */
+	void streamProductPurchaseRequirements(Consumer<ProductPurchaseRequirement> consumer);
+
 	/**
 	 * Unblock a <code>Product</code> by name.
 	 *
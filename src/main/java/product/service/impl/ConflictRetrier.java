@@ -0,0 +1,208 @@
+package product.service.impl;
+
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import product.exception.ProductUpdateException;
+
+/**
+ * Retries an update that lost a race with a concurrent update of the same row,
+ * either because the version it read is no longer current or because a
+ * concurrent insert of the same key got there first. Any other integrity
+ * violation, such as a null or overlong value, is not a conflict and is thrown
+ * at once.
+ * <P>
+ * Each attempt after the first waits a random time of up to the backoff
+ * doubled for every attempt so far, so that the updates that conflicted do not
+ * conflict again in lock step. Once the maximum number of attempts have
+ * conflicted, a <code>ProductUpdateException</code> is thrown.
+ * <P>
+ * Every conflict is counted by the <code>product.conflicts</code> counter,
+ * tagged with the <code>operation</code> and the <code>outcome</code>, either
+ * <code>retried</code> or <code>exhausted</code>, so the conflict rate of each
+ * operation is its own series.
+ */
+@Component
+public class ConflictRetrier {
+
+	/**
+	 * The name of the counter of conflicts.
+	 */
+	static final String COUNTER_NAME = "product.conflicts";
+
+	/**
+	 * The maximum backoff, in milliseconds, before any attempt.
+	 */
+	private static final long MAXIMUM_BACKOFF = 1000;
+
+	/**
+	 * The backoff, in milliseconds, before the second attempt.
+	 */
+	private final long backoff;
+
+	/**
+	 * Translates the SQLException behind an integrity violation, to tell a
+	 * duplicate key from any other.
+	 */
+	private final SQLExceptionTranslator exceptionTranslator;
+
+	/**
+	 * The maximum number of attempts, including the first.
+	 */
+	private final int maxAttempts;
+
+	/**
+	 * The registry the counters are registered with.
+	 */
+	private final MeterRegistry meterRegistry;
+
+	/**
+	 * Constructs a <code>ConflictRetrier</code>.
+	 *
+	 * @param meterRegistry - the registry the counters are registered with
+	 * @param jdbcTemplate  - the JdbcTemplate whose exception translator tells a
+	 *                      duplicate key from any other integrity violation
+	 * @param maxAttempts   - maximum number of attempts, including the first
+	 * @param backoff       - backoff in milliseconds before the second attempt
+	 */
+	@Autowired
+	public ConflictRetrier(final MeterRegistry meterRegistry, final JdbcTemplate jdbcTemplate,
+			@Value("${product.retry.max-attempts:10}") final int maxAttempts,
+			@Value("${product.retry.backoff:2}") final long backoff) {
+
+		this.meterRegistry = Objects.requireNonNull(meterRegistry);
+		this.exceptionTranslator = jdbcTemplate.getExceptionTranslator();
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.backoff = Math.max(0, backoff);
+	}
+
+	/**
+	 * Runs an update, again as long as it conflicts and attempts remain, and
+	 * returns its result.
+	 *
+	 * @param <T>       - type of the result
+	 * @param operation - name of the operation, as tagged on the counter
+	 * @param update    - the update, which must read what it depends on afresh
+	 *                  each time it is run
+	 * @return the result of the attempt that did not conflict
+	 */
+	public <T> T execute(final String operation, final Supplier<T> update) {
+		Objects.requireNonNull(operation);
+		Objects.requireNonNull(update);
+
+		for (int attempt = 1;; attempt++) {
+
+			try {
+				return update.get();
+			} catch (final OptimisticLockingFailureException e) {
+				this.conflicted(operation, attempt, e);
+			} catch (final DataIntegrityViolationException e) {
+
+				// JPA reports a duplicate key only as an integrity violation, so the
+				// SQLException behind it is translated to tell it from any other...
+
+				if (!(this.translate(e) instanceof DuplicateKeyException)) {
+					throw e;
+				}
+
+				this.conflicted(operation, attempt, e);
+			}
+		}
+	}
+
+	/**
+	 * Runs an update, again as long as it conflicts and attempts remain.
+	 *
+	 * @param operation - name of the operation, as tagged on the counter
+	 * @param update    - the update, which must read what it depends on afresh
+	 *                  each time it is run
+	 */
+	public void run(final String operation, final Runnable update) {
+		Objects.requireNonNull(update);
+
+		this.execute(operation, () -> {
+			update.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Counts an attempt that conflicted, and waits before the next, or throws a
+	 * <code>ProductUpdateException</code> if no attempts remain.
+	 *
+	 * @param operation - name of the operation, as tagged on the counter
+	 * @param attempt   - number of the attempt that conflicted, from one
+	 * @param e         - the conflict
+	 */
+	private void conflicted(final String operation, final int attempt, final DataAccessException e) {
+
+		if (attempt >= this.maxAttempts) {
+			this.meterRegistry
+					.counter(ConflictRetrier.COUNTER_NAME, "operation", operation, "outcome", "exhausted")
+					.increment();
+			throw new ProductUpdateException(operation + " still conflicted after " + attempt + " attempts", e);
+		}
+
+		this.meterRegistry.counter(ConflictRetrier.COUNTER_NAME, "operation", operation, "outcome", "retried")
+				.increment();
+		this.sleep(operation, attempt);
+	}
+
+	/**
+	 * Waits a random time of up to the backoff doubled for each attempt so far.
+	 *
+	 * @param operation - name of the operation being retried
+	 * @param attempt   - number of the attempt that conflicted, from one
+	 */
+	private void sleep(final String operation, final int attempt) {
+
+		final long bound = Math.min(ConflictRetrier.MAXIMUM_BACKOFF, this.backoff << Math.min(attempt - 1, 20));
+
+		if (bound == 0) {
+			return;
+		}
+
+		try {
+			TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ProductUpdateException(operation + " was interrupted while waiting to retry", e);
+		}
+	}
+
+	/**
+	 * Translates the SQLException behind an integrity violation, if there is
+	 * one.
+	 *
+	 * @param e - the integrity violation
+	 * @return the translated SQLException, or the integrity violation if there is
+	 *         none or it cannot be translated
+	 */
+	private DataAccessException translate(final DataIntegrityViolationException e) {
+
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+
+			if (cause instanceof SQLException) {
+				final DataAccessException translated = this.exceptionTranslator.translate("conflict", null,
+						(SQLException) cause);
+				return translated != null ? translated : e;
+			}
+		}
+
+		return e;
+	}
+}
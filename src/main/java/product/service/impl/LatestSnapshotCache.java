@@ -0,0 +1,101 @@
+package product.service.impl;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import product.model.ProductPurchaseRequirementSnapshot;
+import product.repository.ProductPurchaseRequirementSnapshotRepository;
+
+/**
+ * Caches the latest complete <code>ProductPurchaseRequirementSnapshot</code>,
+ * so that getting the latest <code>ProductPurchaseRequirement</code> instances
+ * does not need to look it up first.
+ * <P>
+ * The snapshot is loaded when first needed, replaced whenever a newer one is
+ * completed and loaded again after being invalidated. Other instances of this
+ * service do not see the snapshots completed here, so if more than one instance
+ * generates snapshots against the same database they should invalidate it
+ * before reading.
+ * <P>
+ * The number of requirements in the cached snapshot is reported by the
+ * <code>product.requirements.snapshot.items</code> gauge, which is not a number
+ * while no snapshot is cached.
+ */
+@Component
+public class LatestSnapshotCache {
+
+	/**
+	 * The latest complete snapshot, <code>null</code> if not loaded.
+	 */
+	private final AtomicReference<ProductPurchaseRequirementSnapshot> latest = new AtomicReference<>();
+
+	/**
+	 * The ProductPurchaseRequirementSnapshotRepository.
+	 */
+	@Autowired
+	private ProductPurchaseRequirementSnapshotRepository productPurchaseRequirementSnapshotRepository;
+
+	/**
+	 * Constructs a <code>LatestSnapshotCache</code>.
+	 *
+	 * @param meterRegistry - registry the snapshot size gauge is bound to
+	 */
+	@Autowired
+	public LatestSnapshotCache(final MeterRegistry meterRegistry) {
+		meterRegistry.gauge("product.requirements.snapshot.items", this.latest, latest -> {
+			final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot = latest.get();
+			return productPurchaseRequirementSnapshot == null ? Double.NaN
+					: productPurchaseRequirementSnapshot.getItemCount();
+		});
+	}
+
+	/**
+	 * Gets the latest complete snapshot, loading it if it is not cached.
+	 *
+	 * @return the latest complete snapshot, or <code>null</code> if none has been
+	 *         generated
+	 */
+	public ProductPurchaseRequirementSnapshot get() {
+
+		final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot = this.latest.get();
+
+		if (productPurchaseRequirementSnapshot != null) {
+			return productPurchaseRequirementSnapshot;
+		}
+
+		final ProductPurchaseRequirementSnapshot latestProductPurchaseRequirementSnapshot = this.productPurchaseRequirementSnapshotRepository
+				.findLatest();
+
+		if (latestProductPurchaseRequirementSnapshot == null) {
+			return null;
+		}
+
+		return this.set(latestProductPurchaseRequirementSnapshot);
+	}
+
+	/**
+	 * Invalidates the cached snapshot, so that it is loaded again when next
+	 * needed.
+	 */
+	public void invalidate() {
+		this.latest.set(null);
+	}
+
+	/**
+	 * Caches a complete snapshot, unless a newer one is already cached.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the complete snapshot
+	 * @return the snapshot that is now cached
+	 */
+	public ProductPurchaseRequirementSnapshot set(
+			final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot) {
+		Objects.requireNonNull(productPurchaseRequirementSnapshot);
+
+		return this.latest.accumulateAndGet(productPurchaseRequirementSnapshot,
+				(cached, completed) -> (cached == null) || (cached.getID() < completed.getID()) ? completed : cached);
+	}
+}
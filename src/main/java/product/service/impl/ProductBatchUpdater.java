@@ -0,0 +1,151 @@
+package product.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import product.model.ProductUpdate;
+import product.model.ProductUpdateResult;
+import product.repository.ProductRepository;
+
+/**
+ * Applies batches of <code>ProductUpdate</code> instances in chunks, each chunk
+ * in its own transaction as a handful of JDBC batches.
+ * <P>
+ * A chunk that fails is rolled back as a whole and every update in it is
+ * reported as failed, while the other chunks are still applied.
+ */
+@Component
+public class ProductBatchUpdater {
+
+	/**
+	 * The maximum number of <code>ProductUpdate</code> instances applied per
+	 * transaction.
+	 */
+	@Value("${product.bulk.chunk-size:1000}")
+	private int chunkSize;
+
+	/**
+	 * The ProductChangeListener instances notified of every change to a
+	 * <code>Product</code>.
+	 */
+	@Autowired
+	private List<ProductChangeListener> productChangeListeners;
+
+	/**
+	 * The ProductRepository.
+	 */
+	@Autowired
+	private ProductRepository productRepository;
+
+	/**
+	 * Applies the specified <code>ProductUpdate</code> instances in order.
+	 *
+	 * @param productUpdates - the <code>ProductUpdate</code> instances to apply
+	 * @return a <code>ProductUpdateResult</code> for each update, in the same
+	 *         order
+	 */
+	public List<ProductUpdateResult> apply(final List<ProductUpdate> productUpdates) {
+		Objects.requireNonNull(productUpdates);
+
+		final ProductUpdateResult[] productUpdateResults = new ProductUpdateResult[productUpdates.size()];
+		final List<ProductUpdate> chunk = new ArrayList<>(this.chunkSize);
+		final List<Integer> chunkIndexes = new ArrayList<>(this.chunkSize);
+
+		for (int i = 0; i < productUpdates.size(); i++) {
+
+			final ProductUpdate productUpdate = Objects.requireNonNullElseGet(productUpdates.get(i),
+					ProductUpdate::new);
+			final String invalidMessage = ProductBatchUpdater.validate(productUpdate);
+
+			if (invalidMessage != null) {
+				productUpdateResults[i] = new ProductUpdateResult(productUpdate, ProductUpdateResult.Status.INVALID,
+						invalidMessage);
+				continue;
+			}
+
+			chunk.add(productUpdate);
+			chunkIndexes.add(i);
+
+			if (chunk.size() == this.chunkSize) {
+				this.applyChunk(chunk, chunkIndexes, productUpdateResults);
+				chunk.clear();
+				chunkIndexes.clear();
+			}
+		}
+
+		if (!chunk.isEmpty()) {
+			this.applyChunk(chunk, chunkIndexes, productUpdateResults);
+		}
+
+		return Arrays.asList(productUpdateResults);
+	}
+
+	/**
+	 * Applies a chunk of valid <code>ProductUpdate</code> instances in a single
+	 * transaction and records their results.
+	 *
+	 * @param chunk                - the <code>ProductUpdate</code> instances to
+	 *                             apply
+	 * @param chunkIndexes         - the index of each update in the whole batch
+	 * @param productUpdateResults - the results of the whole batch
+	 */
+	private void applyChunk(final List<ProductUpdate> chunk, final List<Integer> chunkIndexes,
+			final ProductUpdateResult[] productUpdateResults) {
+
+		try {
+			final int[] counts = this.productRepository.applyAll(chunk);
+
+			for (int i = 0; i < chunk.size(); i++) {
+				final ProductUpdate productUpdate = chunk.get(i);
+				productUpdateResults[chunkIndexes.get(i)] = counts[i] == 0
+						? new ProductUpdateResult(productUpdate, ProductUpdateResult.Status.NOT_FOUND,
+								"Product " + productUpdate.getName() + " does not exist")
+						: new ProductUpdateResult(productUpdate, ProductUpdateResult.Status.APPLIED, null);
+			}
+
+		} catch (final DataAccessException | TransactionException e) {
+
+			for (int i = 0; i < chunk.size(); i++) {
+				productUpdateResults[chunkIndexes.get(i)] = new ProductUpdateResult(chunk.get(i),
+						ProductUpdateResult.Status.FAILED, e.getMostSpecificCause().getMessage());
+			}
+
+		} finally {
+			chunk.forEach(productUpdate -> this.productChangeListeners
+					.forEach(productChangeListener -> productChangeListener.productChanged(productUpdate.getName())));
+		}
+	}
+
+	/**
+	 * Checks that a <code>ProductUpdate</code> has every value its operation
+	 * requires.
+	 *
+	 * @param productUpdate - the <code>ProductUpdate</code> to check
+	 * @return a description of what is missing, or <code>null</code> if the
+	 *         update is valid
+	 */
+	private static String validate(final ProductUpdate productUpdate) {
+
+		if (productUpdate.getOperation() == null) {
+			return "An operation is required";
+		}
+
+		if (productUpdate.getName() == null) {
+			return "A product name is required";
+		}
+
+		if (productUpdate.getOperation().requiresAmount() && (productUpdate.getAmount() == null)) {
+			return "An amount is required for " + productUpdate.getOperation();
+		}
+
+		return null;
+	}
+}
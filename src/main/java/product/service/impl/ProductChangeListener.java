@@ -0,0 +1,23 @@
+package product.service.impl;
+
+/**
+ * Notified after a change to <code>Product</code> instances has been written to
+ * the database, by any path through the service layer, so that anything held
+ * in memory that is derived from them can be kept up to date.
+ */
+public interface ProductChangeListener {
+
+	/**
+	 * Called when any <code>Product</code> may have changed, for example when the
+	 * table has been changed other than through the service layer.
+	 */
+	void allProductsChanged();
+
+	/**
+	 * Called when a <code>Product</code> may have been created, changed or
+	 * deleted.
+	 *
+	 * @param name - name of the <code>Product</code>
+	 */
+	void productChanged(String name);
+}
@@ -0,0 +1,223 @@
+package product.service.impl;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import product.exception.ProductPurchaseRequirementMissingException;
+import product.model.ProductDemandStatistic;
+import product.model.ProductDemandStatistics;
+import product.model.ProductPurchaseRequirement;
+import product.model.ProductPurchaseRequirementSnapshot;
+import product.repository.ProductDemandStatisticRepository;
+
+/**
+ * Maintains daily and monthly <code>ProductDemandStatistic</code> rollups of
+ * the <code>ProductPurchaseRequirement</code> instances of each
+ * <code>Product</code>, and summarises them.
+ * <P>
+ * Rollups are added to as requirements are overridden, as a single JDBC batch
+ * of upserts, and once a snapshot is complete, by upserting from its rows
+ * within the database, so that a snapshot that fails is never counted. They are
+ * kept when the requirements themselves are purged. When an override lowers an
+ * amount, the peak is not lowered with it, so it is the largest amount that was
+ * ever required.
+ */
+@Component
+public class ProductDemandAggregator {
+
+	/**
+	 * The ProductDemandStatisticRepository.
+	 */
+	@Autowired
+	private ProductDemandStatisticRepository productDemandStatisticRepository;
+
+	/**
+	 * The time zone that days and months start in.
+	 */
+	@Value("${product.stats.zone:UTC}")
+	private String zone;
+
+	/**
+	 * Adds an override of the amount of a <code>ProductPurchaseRequirement</code>
+	 * that was already recorded to the rollups.
+	 *
+	 * @param productPurchaseRequirement - the overridden
+	 *                                   <code>ProductPurchaseRequirement</code>
+	 * @param previousAmount             - amount required before the override
+	 */
+	public void amend(final ProductPurchaseRequirement productPurchaseRequirement, final long previousAmount) {
+		Objects.requireNonNull(productPurchaseRequirement);
+
+		final ZoneId zoneId = ZoneId.of(this.zone);
+		final List<ProductDemandStatistic> productDemandStatistics = new ArrayList<>();
+
+		for (final ProductDemandStatistic.Granularity granularity : ProductDemandStatistic.Granularity.values()) {
+			productDemandStatistics.add(new ProductDemandStatistic(productPurchaseRequirement.getName(), granularity,
+					granularity.getBucketStart(productPurchaseRequirement.getTime(), zoneId), 0L,
+					productPurchaseRequirement.getAmount() - previousAmount, productPurchaseRequirement.getAmount()));
+		}
+
+		this.productDemandStatisticRepository.addAll(productDemandStatistics);
+	}
+
+	/**
+	 * Summarises the demand for a <code>Product</code> from its rollups.
+	 *
+	 * @param name - name of the <code>Product</code>
+	 * @return the demand for the <code>Product</code>
+	 * @throws ProductPurchaseRequirementMissingException if no requirements have
+	 *                                                    been recorded for the
+	 *                                                    <code>Product</code>
+	 */
+	public ProductDemandStatistics getStatistics(final String name) {
+		Objects.requireNonNull(name);
+
+		final List<ProductDemandStatistic> daily = this.productDemandStatisticRepository
+				.findByNameAndGranularityOrderByBucketStart(name, ProductDemandStatistic.Granularity.DAY);
+
+		if (daily.isEmpty()) {
+			throw new ProductPurchaseRequirementMissingException(
+					"No requirements have been recorded for Product " + name);
+		}
+
+		final List<ProductDemandStatistic> monthly = this.productDemandStatisticRepository
+				.findByNameAndGranularityOrderByBucketStart(name, ProductDemandStatistic.Granularity.MONTH);
+
+		final ZoneId zoneId = ZoneId.of(this.zone);
+		final List<ProductDemandStatistics.Bucket> dailyBuckets = new ArrayList<>(daily.size());
+		final List<ProductDemandStatistics.Bucket> monthlyBuckets = new ArrayList<>(monthly.size());
+
+		long count = 0;
+		long total = 0;
+		long peak = 0;
+
+		// Least squares sums of the daily averages against the day...
+
+		long n = 0;
+		double sumX = 0;
+		double sumY = 0;
+		double sumXY = 0;
+		double sumXX = 0;
+
+		for (final ProductDemandStatistic productDemandStatistic : daily) {
+			final LocalDate day = Instant.ofEpochMilli(productDemandStatistic.getBucketStart()).atZone(zoneId)
+					.toLocalDate();
+			final ProductDemandStatistics.Bucket bucket = ProductDemandAggregator.toBucket(day.toString(),
+					productDemandStatistic);
+			dailyBuckets.add(bucket);
+
+			count += bucket.getCount();
+			total += bucket.getTotal();
+			peak = Math.max(peak, bucket.getPeak());
+
+			if (bucket.getCount() > 0) {
+				final double x = day.toEpochDay();
+				n++;
+				sumX += x;
+				sumY += bucket.getAverage();
+				sumXY += x * bucket.getAverage();
+				sumXX += x * x;
+			}
+		}
+
+		for (final ProductDemandStatistic productDemandStatistic : monthly) {
+			final YearMonth month = YearMonth.from(
+					Instant.ofEpochMilli(productDemandStatistic.getBucketStart()).atZone(zoneId).toLocalDate());
+			monthlyBuckets.add(ProductDemandAggregator.toBucket(month.toString(), productDemandStatistic));
+		}
+
+		final double denominator = (n * sumXX) - (sumX * sumX);
+		final double trend = (n < 2) || (denominator == 0) ? 0 : ((n * sumXY) - (sumX * sumY)) / denominator;
+
+		return new ProductDemandStatistics(name, new ProductDemandStatistics.Bucket(null, count, total, peak), trend,
+				dailyBuckets, monthlyBuckets);
+	}
+
+	/**
+	 * Adds newly recorded <code>ProductPurchaseRequirement</code> instances to the
+	 * rollups.
+	 *
+	 * @param productPurchaseRequirements - the recorded
+	 *                                    <code>ProductPurchaseRequirement</code>
+	 *                                    instances
+	 */
+	public void record(final Collection<ProductPurchaseRequirement> productPurchaseRequirements) {
+		Objects.requireNonNull(productPurchaseRequirements);
+
+		final ZoneId zoneId = ZoneId.of(this.zone);
+		final Map<List<Object>, ProductDemandStatistic> productDemandStatistics = new LinkedHashMap<>();
+
+		for (final ProductPurchaseRequirement productPurchaseRequirement : productPurchaseRequirements) {
+			for (final ProductDemandStatistic.Granularity granularity : ProductDemandStatistic.Granularity.values()) {
+
+				final long bucketStart = granularity.getBucketStart(productPurchaseRequirement.getTime(), zoneId);
+				final ProductDemandStatistic productDemandStatistic = new ProductDemandStatistic(
+						productPurchaseRequirement.getName(), granularity, bucketStart, 1L,
+						productPurchaseRequirement.getAmount(), productPurchaseRequirement.getAmount());
+
+				productDemandStatistics.merge(List.of(productPurchaseRequirement.getName(), granularity, bucketStart),
+						productDemandStatistic, ProductDemandAggregator::merge);
+			}
+		}
+
+		this.productDemandStatisticRepository.addAll(productDemandStatistics.values());
+	}
+
+	/**
+	 * Adds the <code>ProductPurchaseRequirement</code> instances of a snapshot to
+	 * the rollups. Should be called within the transaction that marks the
+	 * snapshot complete, so that they are added exactly when it is.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot, whose
+	 *                                           requirements are all written
+	 */
+	public void recordSnapshot(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot) {
+		Objects.requireNonNull(productPurchaseRequirementSnapshot);
+
+		final ZoneId zoneId = ZoneId.of(this.zone);
+
+		for (final ProductDemandStatistic.Granularity granularity : ProductDemandStatistic.Granularity.values()) {
+			this.productDemandStatisticRepository.addSnapshot(productPurchaseRequirementSnapshot.getID(),
+					granularity, granularity.getBucketStart(productPurchaseRequirementSnapshot.getTime(), zoneId));
+		}
+	}
+
+	/**
+	 * Merges two increments to the same rollup.
+	 *
+	 * @param first  - the first increment
+	 * @param second - the second increment
+	 * @return the merged increment
+	 */
+	private static ProductDemandStatistic merge(final ProductDemandStatistic first,
+			final ProductDemandStatistic second) {
+		return new ProductDemandStatistic(first.getName(), first.getGranularity(), first.getBucketStart(),
+				first.getRequirementCount() + second.getRequirementCount(),
+				first.getAmountSum() + second.getAmountSum(), Math.max(first.getAmountMax(), second.getAmountMax()));
+	}
+
+	/**
+	 * Converts a rollup to a summary bucket.
+	 *
+	 * @param period                 - the period of the rollup
+	 * @param productDemandStatistic - the rollup
+	 * @return the summary bucket
+	 */
+	private static ProductDemandStatistics.Bucket toBucket(final String period,
+			final ProductDemandStatistic productDemandStatistic) {
+		return new ProductDemandStatistics.Bucket(period, productDemandStatistic.getRequirementCount(),
+				productDemandStatistic.getAmountSum(), productDemandStatistic.getAmountMax());
+	}
+}
@@ -0,0 +1,113 @@
+package product.service.impl;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import product.model.Product;
+import product.repository.ProductRepository;
+
+/**
+ * A bounded, read-through cache of <code>Product</code> instances by name, in
+ * front of <code>ProductRepository.findByName</code>.
+ * <P>
+ * Eviction is size based using Caffeine's Window TinyLFU policy. Entries are
+ * written through when a <code>Product</code> is saved and invalidated when one
+ * is changed or deleted in the database by any other means, as a
+ * <code>ProductChangeListener</code>. Hit, miss and
+ * eviction counts are published to Micrometer under the
+ * <code>products.byName</code> cache name.
+ * <P>
+ * Other instances of this service do not see these invalidations, so if more
+ * than one instance writes to the same database the maximum size should be set
+ * to zero.
+ */
+@Component
+public class ProductNameCache implements ProductChangeListener {
+
+	/**
+	 * The name the cache metrics are published under.
+	 */
+	private static final String CACHE_NAME = "products.byName";
+
+	/**
+	 * The cache of <code>Product</code> by name.
+	 */
+	private final Cache<String, Product> cache;
+
+	/**
+	 * The ProductRepository.
+	 */
+	private final ProductRepository productRepository;
+
+	/**
+	 * Constructs a <code>ProductNameCache</code>.
+	 *
+	 * @param productRepository - the ProductRepository
+	 * @param meterRegistry     - registry the cache metrics are bound to
+	 * @param maximumSize       - maximum number of <code>Product</code> instances
+	 *                          to cache
+	 */
+	@Autowired
+	public ProductNameCache(final ProductRepository productRepository, final MeterRegistry meterRegistry,
+			@Value("${product.cache.maximum-size:10000}") final long maximumSize) {
+		this.productRepository = productRepository;
+		this.cache = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+		CaffeineCacheMetrics.monitor(meterRegistry, this.cache, ProductNameCache.CACHE_NAME);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <P>
+	 * Invalidates every cached <code>Product</code>.
+	 */
+	@Override
+	public void allProductsChanged() {
+		this.cache.invalidateAll();
+	}
+
+	/**
+	 * Gets a <code>Product</code> by name, loading it from the database if it is
+	 * not cached. A <code>Product</code> that does not exist is not cached.
+	 * <P>
+	 * The returned <code>Product</code> is shared, so it must only be changed in
+	 * order to be saved through <code>put</code>, or else be invalidated.
+	 *
+	 * @param name - name of the <code>Product</code>
+	 * @return <code>Optional</code> of the <code>Product</code>, which will be
+	 *         empty if the <code>Product</code> was not found
+	 */
+	public Optional<Product> get(final String name) {
+		Objects.requireNonNull(name);
+		return Optional.ofNullable(this.cache.get(name, this.productRepository::findByName));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <P>
+	 * Invalidates the cached <code>Product</code>.
+	 */
+	@Override
+	public void productChanged(final String name) {
+		Objects.requireNonNull(name);
+		this.cache.invalidate(name);
+	}
+
+	/**
+	 * Caches a <code>Product</code> that has just been saved.
+	 *
+	 * @param product - the saved <code>Product</code>
+	 */
+	public void put(final Product product) {
+		Objects.requireNonNull(product);
+		this.cache.put(product.getName(), product);
+	}
+}
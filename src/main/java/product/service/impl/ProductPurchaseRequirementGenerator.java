@@ -0,0 +1,527 @@
+package product.service.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import product.model.ProductPurchaseRequirement;
+import product.model.ProductPurchaseRequirementSnapshot;
+import product.model.ProductShortfall;
+import product.repository.ProductPurchaseRequirementRepository;
+import product.repository.ProductPurchaseRequirementSnapshotRepository;
+import product.repository.ProductRepository;
+
+/**
+ * Generates a snapshot of <code>ProductPurchaseRequirement</code> instances for
+ * every <code>Product</code> currently recorded.
+ * <P>
+ * Only the <code>Product</code> instances that are short are read, as
+ * <code>ProductShortfall</code> projections, either from the
+ * <code>ProductShortfallTracker</code>, from a scan of the columnar
+ * <code>ProductStockView</code>, or a chunk at a time in ID order. The
+ * requirements of each chunk are written as a single JDBC batch, so that
+ * neither the whole catalogue nor one INSERT per requirement is needed.
+ * <P>
+ * With a parallelism above one, the work is spread over a dedicated pool of
+ * that many threads. A scan is split into ranges of IDs, each of which is read,
+ * filtered and written a chunk at a time by its own task, while the chunks of
+ * incrementally found shortfalls are each written by their own task. Every
+ * task writes into the same snapshot, with the same time, and the consumer is
+ * passed one chunk at a time. If any task fails, the others stop at their next
+ * chunk and the snapshot is marked failed.
+ * <P>
+ * Each snapshot has a <code>ProductPurchaseRequirementSnapshot</code> header,
+ * which is only marked complete once all of its requirements are written, in
+ * the same transaction that adds them to the demand statistics. The
+ * requirements of a snapshot that fails are deleted, and never counted. If
+ * the <code>ProductStockFile</code> is kept, the requirements are also written
+ * to it, replacing those of the previous snapshot once complete.
+ * <P>
+ * Every <code>SnapshotListener</code> is notified as each snapshot is started,
+ * and once it has completed or failed.
+ */
+@Component
+public class ProductPurchaseRequirementGenerator {
+
+	/**
+	 * The number of ID ranges a scan is split into per thread, so that a range
+	 * with more shortfalls than the others does not leave the other threads idle.
+	 */
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+	/**
+	 * The number of <code>ProductShortfall</code> projections read, and
+	 * <code>ProductPurchaseRequirement</code> instances written, per chunk.
+	 */
+	@Value("${product.requirements.batch-size:1000}")
+	private int batchSize;
+
+	/**
+	 * Runs the tasks of each snapshot, <code>null</code> if the parallelism is one.
+	 */
+	private ExecutorService executorService;
+
+	/**
+	 * <code>true</code> if the shortfalls are kept up to date incrementally by the
+	 * <code>ProductShortfallTracker</code>, <code>false</code> to read them from
+	 * the whole catalogue every time.
+	 */
+	@Value("${product.requirements.incremental:true}")
+	private boolean incremental;
+
+	/**
+	 * The LatestSnapshotCache, updated as each snapshot is completed.
+	 */
+	@Autowired
+	private LatestSnapshotCache latestSnapshotCache;
+
+	/**
+	 * The number of threads a snapshot is generated on, one to generate it on the
+	 * calling thread.
+	 */
+	@Value("${product.requirements.parallelism:1}")
+	private int parallelism;
+
+	/**
+	 * The ProductDemandAggregator, which each complete snapshot is added to.
+	 */
+	@Autowired
+	private ProductDemandAggregator productDemandAggregator;
+
+	/**
+	 * The ProductPurchaseRequirementRepository.
+	 */
+	@Autowired
+	private ProductPurchaseRequirementRepository productPurchaseRequirementRepository;
+
+	/**
+	 * The ProductPurchaseRequirementSnapshotRepository.
+	 */
+	@Autowired
+	private ProductPurchaseRequirementSnapshotRepository productPurchaseRequirementSnapshotRepository;
+
+	/**
+	 * The ProductRepository.
+	 */
+	@Autowired
+	private ProductRepository productRepository;
+
+	/**
+	 * The ProductShortfallTracker.
+	 */
+	@Autowired
+	private ProductShortfallTracker productShortfallTracker;
+
+	/**
+	 * The ProductStockFile, which the requirements of each snapshot are written
+	 * to.
+	 */
+	@Autowired
+	private ProductStockFile productStockFile;
+
+	/**
+	 * The ProductStockView.
+	 */
+	@Autowired
+	private ProductStockView productStockView;
+
+	/**
+	 * <code>true</code> if, when incremental, the shortfalls are found by a scan of
+	 * the <code>ProductStockView</code> rather than kept by the
+	 * <code>ProductShortfallTracker</code>.
+	 */
+	@Value("${product.requirements.stock-view:false}")
+	private boolean stockView;
+
+	/**
+	 * The SnapshotListener instances notified as each snapshot is generated,
+	 * resolved lazily as some start snapshots themselves.
+	 */
+	@Autowired
+	@Lazy
+	private List<SnapshotListener> snapshotListeners;
+
+	/**
+	 * The StockWriteBehindBuffer, flushed so that snapshots include buffered
+	 * changes.
+	 */
+	@Autowired
+	private StockWriteBehindBuffer stockWriteBehindBuffer;
+
+	/**
+	 * The PlatformTransactionManager, used to complete each snapshot.
+	 */
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * Generates and persists a <code>ProductPurchaseRequirement</code> for every
+	 * applicable <code>Product</code>, all stamped with the specified time.
+	 *
+	 * @param time - time of the snapshot as UTC milliseconds from the epoch
+	 * @return <code>Set</code> of the generated
+	 *         <code>ProductPurchaseRequirement</code> instances
+	 */
+	public Set<ProductPurchaseRequirement> generate(final long time) {
+		final Set<ProductPurchaseRequirement> productPurchaseRequirements = new HashSet<>();
+		this.generate(time, productPurchaseRequirements::add);
+		return productPurchaseRequirements;
+	}
+
+	/**
+	 * Generates and persists a <code>ProductPurchaseRequirement</code> for every
+	 * applicable <code>Product</code>, all stamped with the specified time, passing
+	 * each one to the specified consumer once its chunk has been written. Nothing
+	 * beyond the current chunk is held in memory.
+	 *
+	 * @param time     - time of the snapshot as UTC milliseconds from the epoch
+	 * @param consumer - consumer of each generated
+	 *                 <code>ProductPurchaseRequirement</code>
+	 * @return the number of <code>ProductPurchaseRequirement</code> instances
+	 *         generated
+	 */
+	public long generate(final long time, final Consumer<ProductPurchaseRequirement> consumer) {
+		return this.generateSnapshot(time, consumer).getItemCount();
+	}
+
+	/**
+	 * Generates and persists a <code>ProductPurchaseRequirement</code> for every
+	 * applicable <code>Product</code>, as <code>generate</code> does, returning
+	 * the header of the snapshot.
+	 *
+	 * @param time     - time of the snapshot as UTC milliseconds from the epoch
+	 * @param consumer - consumer of each generated
+	 *                 <code>ProductPurchaseRequirement</code>
+	 * @return the <code>ProductPurchaseRequirementSnapshot</code>, complete
+	 */
+	public ProductPurchaseRequirementSnapshot generateSnapshot(final long time,
+			final Consumer<ProductPurchaseRequirement> consumer) {
+		Objects.requireNonNull(consumer);
+
+		this.stockWriteBehindBuffer.flush();
+
+		ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot = new ProductPurchaseRequirementSnapshot();
+		productPurchaseRequirementSnapshot.setItemCount(0L);
+		productPurchaseRequirementSnapshot.setStatus(ProductPurchaseRequirementSnapshot.Status.GENERATING);
+		productPurchaseRequirementSnapshot.setTime(time);
+		productPurchaseRequirementSnapshot = this.productPurchaseRequirementSnapshotRepository
+				.save(productPurchaseRequirementSnapshot);
+
+		for (final SnapshotListener snapshotListener : this.snapshotListeners) {
+			snapshotListener.snapshotStarted(productPurchaseRequirementSnapshot);
+		}
+
+		final ProductStockFile.RequirementsWriter requirementsWriter = this.productStockFile
+				.openRequirements(productPurchaseRequirementSnapshot);
+		final Consumer<ProductPurchaseRequirement> writingConsumer = consumer.andThen(requirementsWriter::write);
+		final long count;
+
+		try {
+			count = this.incremental
+					? this.generateIncrementally(productPurchaseRequirementSnapshot, writingConsumer)
+					: this.generateByScan(productPurchaseRequirementSnapshot, writingConsumer);
+		} catch (final RuntimeException e) {
+			requirementsWriter.abandon();
+			this.fail(productPurchaseRequirementSnapshot, e);
+
+			for (final SnapshotListener snapshotListener : this.snapshotListeners) {
+				snapshotListener.snapshotFailed(productPurchaseRequirementSnapshot);
+			}
+
+			throw e;
+		}
+
+		final ProductPurchaseRequirementSnapshot generatedSnapshot = productPurchaseRequirementSnapshot;
+		generatedSnapshot.setItemCount(count);
+		generatedSnapshot.setStatus(ProductPurchaseRequirementSnapshot.Status.COMPLETE);
+
+		productPurchaseRequirementSnapshot = new TransactionTemplate(this.transactionManager).execute(status -> {
+			this.productDemandAggregator.recordSnapshot(generatedSnapshot);
+			return this.productPurchaseRequirementSnapshotRepository.save(generatedSnapshot);
+		});
+		this.latestSnapshotCache.set(productPurchaseRequirementSnapshot);
+		requirementsWriter.commit();
+
+		for (final SnapshotListener snapshotListener : this.snapshotListeners) {
+			snapshotListener.snapshotCompleted(productPurchaseRequirementSnapshot);
+		}
+
+		return productPurchaseRequirementSnapshot;
+	}
+
+	/**
+	 * Shuts down the pool, if there is one.
+	 */
+	@PreDestroy
+	public void shutdown() {
+
+		if (this.executorService != null) {
+			this.executorService.shutdownNow();
+		}
+	}
+
+	/**
+	 * Starts the pool, if the parallelism is above one.
+	 */
+	@PostConstruct
+	public void start() {
+
+		if (this.parallelism > 1) {
+			final AtomicInteger threads = new AtomicInteger();
+			this.executorService = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+				final Thread thread = new Thread(runnable, "product-requirements-" + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Marks a snapshot that could not be generated as failed, first deleting the
+	 * requirements already written for it a chunk at a time, so that they are
+	 * never read as history. A failure to delete them is added to the failure of
+	 * the snapshot, and they are then left to be purged with it.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot that failed
+	 * @param e                                  - why it failed
+	 */
+	private void fail(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot,
+			final RuntimeException e) {
+
+		try {
+			while (this.productPurchaseRequirementRepository.deleteBySnapshotID(
+					productPurchaseRequirementSnapshot.getID(), this.batchSize) == this.batchSize) {
+				// Deleted a full chunk, so there may be more...
+			}
+		} catch (final RuntimeException deleteException) {
+			e.addSuppressed(deleteException);
+		}
+
+		productPurchaseRequirementSnapshot.setStatus(ProductPurchaseRequirementSnapshot.Status.FAILED);
+		this.productPurchaseRequirementSnapshotRepository.save(productPurchaseRequirementSnapshot);
+	}
+
+	/**
+	 * Generates the <code>ProductPurchaseRequirement</code> instances of a snapshot
+	 * by reading the shortfalls of the whole catalogue a chunk at a time in ID
+	 * order, either on the calling thread or split into ranges of IDs on the pool.
+	 * The last range is open ended, so Products created while it is read may be
+	 * included, as they may when read on the calling thread.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot being generated
+	 * @param consumer                           - consumer of each generated
+	 *                                           <code>ProductPurchaseRequirement</code>
+	 * @return the number of <code>ProductPurchaseRequirement</code> instances
+	 *         generated
+	 */
+	private long generateByScan(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot,
+			final Consumer<ProductPurchaseRequirement> consumer) {
+
+		final AtomicBoolean abandoned = new AtomicBoolean();
+
+		if (this.executorService == null) {
+			return this.generateByScan(productPurchaseRequirementSnapshot, Long.MIN_VALUE, Long.MAX_VALUE, abandoned,
+					consumer);
+		}
+
+		final long minID = this.productRepository.findMinID();
+		final long maxID = this.productRepository.findMaxID();
+		final long width = ((maxID - minID)
+				/ (this.parallelism * ProductPurchaseRequirementGenerator.PARTITIONS_PER_THREAD)) + 1;
+		final List<Supplier<Long>> partitions = new ArrayList<>();
+
+		for (long id = minID - 1; id < maxID; id += width) {
+			final long afterID = id;
+			final long lastID = (id + width) >= maxID ? Long.MAX_VALUE : id + width;
+			partitions.add(() -> this.generateByScan(productPurchaseRequirementSnapshot, afterID, lastID, abandoned,
+					consumer));
+		}
+
+		return this.run(partitions, abandoned);
+	}
+
+	/**
+	 * Generates the <code>ProductPurchaseRequirement</code> instances of a snapshot
+	 * for a range of IDs, by reading its shortfalls a chunk at a time in ID order.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot being generated
+	 * @param afterID                            - ID after which the range starts
+	 * @param lastID                             - highest ID in the range
+	 * @param abandoned                          - set once the snapshot is
+	 *                                           abandoned, which stops the range
+	 *                                           at its next chunk
+	 * @param consumer                           - consumer of each generated
+	 *                                           <code>ProductPurchaseRequirement</code>
+	 * @return the number of <code>ProductPurchaseRequirement</code> instances
+	 *         generated
+	 */
+	private long generateByScan(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot,
+			final long afterID, final long lastID, final AtomicBoolean abandoned,
+			final Consumer<ProductPurchaseRequirement> consumer) {
+
+		final PageRequest pageRequest = PageRequest.of(0, this.batchSize);
+
+		long count = 0;
+		Long lastReadID = afterID;
+		List<ProductShortfall> productShortfalls;
+
+		do {
+			productShortfalls = this.productRepository.findShortfallsAfterIDUpTo(lastReadID, lastID, pageRequest);
+
+			if (!productShortfalls.isEmpty()) {
+				this.write(productPurchaseRequirementSnapshot, productShortfalls, consumer);
+				count += productShortfalls.size();
+				lastReadID = productShortfalls.get(productShortfalls.size() - 1).getID();
+			}
+
+		} while ((productShortfalls.size() == this.batchSize) && !abandoned.get());
+
+		return count;
+	}
+
+	/**
+	 * Generates the <code>ProductPurchaseRequirement</code> instances of a snapshot
+	 * from the shortfalls kept up to date by the
+	 * <code>ProductShortfallTracker</code> or found in the
+	 * <code>ProductStockView</code>, writing each chunk either on the calling
+	 * thread or as its own task on the pool.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot being generated
+	 * @param consumer                           - consumer of each generated
+	 *                                           <code>ProductPurchaseRequirement</code>
+	 * @return the number of <code>ProductPurchaseRequirement</code> instances
+	 *         generated
+	 */
+	private long generateIncrementally(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot,
+			final Consumer<ProductPurchaseRequirement> consumer) {
+
+		final List<ProductShortfall> productShortfalls = this.stockView ? this.productStockView.getProductShortfalls()
+				: this.productShortfallTracker.getProductShortfalls();
+		final AtomicBoolean abandoned = new AtomicBoolean();
+		final List<Supplier<Long>> chunks = new ArrayList<>();
+
+		for (int from = 0; from < productShortfalls.size(); from += this.batchSize) {
+			final List<ProductShortfall> chunk = productShortfalls.subList(from,
+					Math.min(from + this.batchSize, productShortfalls.size()));
+
+			chunks.add(() -> {
+				if (abandoned.get()) {
+					return 0L;
+				}
+				this.write(productPurchaseRequirementSnapshot, chunk, consumer);
+				return (long) chunk.size();
+			});
+		}
+
+		return this.run(chunks, abandoned);
+	}
+
+	/**
+	 * Runs the tasks of a snapshot, in order on the calling thread if there is no
+	 * pool, and otherwise on the pool, waiting for every one of them to finish.
+	 * Once any task fails the snapshot is abandoned, so the others stop at their
+	 * next chunk.
+	 *
+	 * @param tasks     - the tasks, each returning the number of
+	 *                  <code>ProductPurchaseRequirement</code> instances it
+	 *                  generated
+	 * @param abandoned - set once the snapshot is abandoned
+	 * @return the number of <code>ProductPurchaseRequirement</code> instances
+	 *         generated by every task
+	 */
+	private long run(final List<Supplier<Long>> tasks, final AtomicBoolean abandoned) {
+
+		long count = 0;
+
+		if (this.executorService == null) {
+			for (final Supplier<Long> task : tasks) {
+				count += task.get();
+			}
+			return count;
+		}
+
+		final List<Future<Long>> futures = new ArrayList<>(tasks.size());
+		tasks.forEach(task -> futures.add(this.executorService.submit(task::get)));
+
+		RuntimeException failure = null;
+		boolean interrupted = false;
+
+		for (final Future<Long> future : futures) {
+			while (true) {
+				try {
+					count += future.get();
+					break;
+				} catch (final ExecutionException e) {
+					abandoned.set(true);
+					if (failure == null) {
+						failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+								: new IllegalStateException(e.getCause());
+					}
+					break;
+				} catch (final InterruptedException e) {
+					abandoned.set(true);
+					interrupted = true;
+					if (failure == null) {
+						failure = new IllegalStateException("Interrupted while generating product purchase requirements",
+								e);
+					}
+				}
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Writes the <code>ProductPurchaseRequirement</code> instances for a chunk of
+	 * shortfalls as a single JDBC batch and then passes each to the consumer,
+	 * which is only passed one chunk at a time.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot being generated
+	 * @param productShortfalls                  - the chunk of shortfalls
+	 * @param consumer                           - consumer of each generated
+	 *                                           <code>ProductPurchaseRequirement</code>
+	 */
+	private void write(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot,
+			final List<ProductShortfall> productShortfalls, final Consumer<ProductPurchaseRequirement> consumer) {
+
+		final List<ProductPurchaseRequirement> chunk = new ArrayList<>(productShortfalls.size());
+		productShortfalls.forEach(productShortfall -> chunk
+				.add(productShortfall.toProductPurchaseRequirement(productPurchaseRequirementSnapshot)));
+
+		this.productPurchaseRequirementRepository.insertAll(chunk);
+
+		synchronized (consumer) {
+			chunk.forEach(consumer);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package product.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import product.exception.InvalidCursorException;
+import product.model.ProductPurchaseRequirement;
+import product.model.ProductPurchaseRequirementPage;
+import product.repository.ProductPurchaseRequirementRepository;
+
+/**
+ * Reads the history of <code>ProductPurchaseRequirement</code> instances within
+ * a time range a page at a time, using keyset pagination in time, name and then
+ * ID order.
+ * <P>
+ * Each page ends with an opaque cursor, which encodes the position of its last
+ * requirement, so the next page is read from that position through the (time,
+ * name) index rather than by skipping the earlier pages.
+ */
+@Component
+public class ProductPurchaseRequirementHistory {
+
+	/**
+	 * Separates the parts of a decoded cursor.
+	 */
+	private static final String CURSOR_SEPARATOR = ":";
+
+	/**
+	 * The number of <code>ProductPurchaseRequirement</code> instances per page.
+	 */
+	@Value("${product.requirements.history-page-size:1000}")
+	private int pageSize;
+
+	/**
+	 * The ProductPurchaseRequirementRepository.
+	 */
+	@Autowired
+	private ProductPurchaseRequirementRepository productPurchaseRequirementRepository;
+
+	/**
+	 * Gets a page of the <code>ProductPurchaseRequirement</code> instances
+	 * generated within a time range.
+	 *
+	 * @param from   - start of the time range, inclusive
+	 * @param to     - end of the time range, exclusive, or <code>null</code> for
+	 *               no end
+	 * @param name   - name of the <code>Product</code> to get the history of, or
+	 *               <code>null</code> for every <code>Product</code>
+	 * @param cursor - cursor returned with the previous page, or
+	 *               <code>null</code> for the first page
+	 * @return the page
+	 * @throws InvalidCursorException if the cursor was not returned with a
+	 *                                previous page
+	 */
+	public ProductPurchaseRequirementPage getPage(final long from, final Long to, final String name,
+			final String cursor) {
+
+		final long toTime = to == null ? Long.MAX_VALUE : to;
+
+		Long afterTime = from - 1;
+		String afterName = "";
+		Long afterID = Long.MIN_VALUE;
+
+		if (cursor != null) {
+			final String[] position = ProductPurchaseRequirementHistory.decode(cursor);
+			afterTime = Long.valueOf(position[0]);
+			afterID = Long.valueOf(position[1]);
+			afterName = position[2];
+		}
+
+		// Later pages read the index from the time of the position, rather than from
+		// the start of the range, and skip the rows at that time before it...
+
+		final long start = Math.max(from, afterTime);
+		final PageRequest pageRequest = PageRequest.of(0, this.pageSize);
+		final List<ProductPurchaseRequirement> productPurchaseRequirements = name == null
+				? this.productPurchaseRequirementRepository.findByTimeAfter(start, toTime, afterTime, afterName,
+						afterID, pageRequest)
+				: this.productPurchaseRequirementRepository.findByNameAndTimeAfter(name, start, toTime, afterTime,
+						afterName, afterID, pageRequest);
+
+		if (productPurchaseRequirements.size() < this.pageSize) {
+			return new ProductPurchaseRequirementPage(productPurchaseRequirements, null);
+		}
+
+		return new ProductPurchaseRequirementPage(productPurchaseRequirements, ProductPurchaseRequirementHistory
+				.encode(productPurchaseRequirements.get(productPurchaseRequirements.size() - 1)));
+	}
+
+	/**
+	 * Decodes a cursor into the time, ID and name of the position it encodes.
+	 *
+	 * @param cursor - the cursor
+	 * @return the time, ID and name of the position
+	 * @throws InvalidCursorException if the cursor is not valid
+	 */
+	private static String[] decode(final String cursor) {
+
+		try {
+			final String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+					.split(ProductPurchaseRequirementHistory.CURSOR_SEPARATOR, 3);
+
+			if (position.length == 3) {
+				Long.parseLong(position[0]);
+				Long.parseLong(position[1]);
+				return position;
+			}
+
+		} catch (final IllegalArgumentException e) {
+			// Not Base64, or not numbers, so reported below...
+		}
+
+		throw new InvalidCursorException("Cursor " + cursor + " is not valid");
+	}
+
+	/**
+	 * Encodes the position of a <code>ProductPurchaseRequirement</code> as a
+	 * cursor.
+	 *
+	 * @param productPurchaseRequirement - the last
+	 *                                   <code>ProductPurchaseRequirement</code>
+	 *                                   of a page
+	 * @return the cursor
+	 */
+	private static String encode(final ProductPurchaseRequirement productPurchaseRequirement) {
+		final String position = productPurchaseRequirement.getTime() + ProductPurchaseRequirementHistory.CURSOR_SEPARATOR
+				+ productPurchaseRequirement.getID() + ProductPurchaseRequirementHistory.CURSOR_SEPARATOR
+				+ productPurchaseRequirement.getName();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -1,26 +1,42 @@
 package product.service.impl;
 
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import product.exception.InvalidProductException;
+import product.exception.ProductMissingException;
 import product.exception.ProductPurchaseRequirementMissingException;
 import product.exception.ProductUpdateException;
 import product.model.Product;
+import product.model.ProductDemandStatistics;
 import product.model.ProductPurchaseRequirement;
+import product.model.ProductPurchaseRequirementChange;
+import product.model.ProductPurchaseRequirementChanges;
+import product.model.ProductPurchaseRequirementPage;
+import product.model.ProductPurchaseRequirementSnapshot;
+import product.model.ProductUpdate;
+import product.model.ProductUpdateResult;
+import product.model.RetentionReport;
+import product.model.SnapshotJob;
 import product.repository.ProductPurchaseRequirementRepository;
+import product.repository.ProductPurchaseRequirementSnapshotRepository;
 import product.repository.ProductRepository;
 import product.service.api.ProductService;
-import product.utility.TimeUtilities;
 
 /**
  * An implementation of ProductService which leverages Spring Data for
@@ -29,34 +45,166 @@ import product.utility.TimeUtilities;
 @Service
 public class ProductServiceImpl implements ProductService {
 
+	/**
+	 * The Clock that snapshot times are read from.
+	 */
+	@Autowired
+	private Clock clock;
+
+	/**
+	 * The ConflictRetrier, which retries updates that conflict with concurrent
+	 * ones.
+	 */
+	@Autowired
+	private ConflictRetrier conflictRetrier;
+
+	/**
+	 * The EntityManager.
+	 */
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * Held while the first snapshot is created by an override, so that concurrent
+	 * overrides create only one.
+	 */
+	private final Object firstSnapshotLock = new Object();
+
+	/**
+	 * The LatestSnapshotCache.
+	 */
+	@Autowired
+	private LatestSnapshotCache latestSnapshotCache;
+
+	/**
+	 * The ProductDemandAggregator.
+	 */
+	@Autowired
+	private ProductDemandAggregator productDemandAggregator;
+
+	/**
+	 * The ProductPurchaseRequirementGenerator.
+	 */
+	@Autowired
+	private ProductPurchaseRequirementGenerator productPurchaseRequirementGenerator;
+
+	/**
+	 * The ProductBatchUpdater.
+	 */
+	@Autowired
+	private ProductBatchUpdater productBatchUpdater;
+
+	/**
+	 * The ProductChangeListener instances notified of every change to a
+	 * <code>Product</code>.
+	 */
+	@Autowired
+	private List<ProductChangeListener> productChangeListeners;
+
+	/**
+	 * The ProductNameCache, through which every <code>Product</code> is read and
+	 * saved by name.
+	 */
+	@Autowired
+	private ProductNameCache productNameCache;
+
+	/**
+	 * The ProductPurchaseRequirementHistory.
+	 */
+	@Autowired
+	private ProductPurchaseRequirementHistory productPurchaseRequirementHistory;
+
 	/**
 	 * The ProductPurchaseRequirementRepository.
 	 */
 	@Autowired
 	private ProductPurchaseRequirementRepository productPurchaseRequirementRepository;
 
+	/**
+	 * The ProductPurchaseRequirementSnapshotRepository.
+	 */
+	@Autowired
+	private ProductPurchaseRequirementSnapshotRepository productPurchaseRequirementSnapshotRepository;
+
 	/**
 	 * The ProductRepository.
 	 */
 	@Autowired
 	private ProductRepository productRepository;
 
+	/**
+	 * The PlatformTransactionManager, used for streaming queries that need an open
+	 * transaction.
+	 */
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * The SnapshotRetention.
+	 */
+	@Autowired
+	private SnapshotRetention snapshotRetention;
+
+	/**
+	 * The SnapshotJobRunner, which generates snapshots in the background.
+	 */
+	@Autowired
+	private SnapshotJobRunner snapshotJobRunner;
+
+	/**
+	 * The StockWriteBehindBuffer, used for changes to the current amount when it
+	 * is enabled.
+	 */
+	@Autowired
+	private StockWriteBehindBuffer stockWriteBehindBuffer;
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void block(final String name) {
+	public Long adjustCurrentAmount(final String name, final Long delta) {
 		Objects.requireNonNull(name);
+		Objects.requireNonNull(delta);
 
-		final Optional<Product> productOptional = this.getByName(name);
+		if (this.stockWriteBehindBuffer.isEnabled()) {
+			this.requireExisting(name, "adjust current amount");
+			this.stockWriteBehindBuffer.adjustCurrentAmount(name, delta);
+			return null;
+		}
+
+		final Long currentAmount = this.productRepository.adjustCurrentAmount(name, delta);
+
+		if (currentAmount == null) {
+			throw new ProductMissingException(
+					"Could not adjust current amount on product " + name + " as is does not exist");
+		}
 
-		if (productOptional.isEmpty()) {
+		this.productChanged(name);
+		return currentAmount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<ProductUpdateResult> applyBatch(final List<ProductUpdate> productUpdates) {
+		Objects.requireNonNull(productUpdates);
+		this.stockWriteBehindBuffer.flush();
+		return this.productBatchUpdater.apply(productUpdates);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void block(final String name) {
+		Objects.requireNonNull(name);
+
+		if (this.productRepository.updateBlocked(name, true) == 0) {
 			throw new InvalidProductException("Could not block product " + name + " as is does not exist");
 		}
 
-		final Product product = productOptional.get();
-		product.setBlocked(true);
-		this.save(product).orElseThrow(() -> new ProductUpdateException("Could not save product with name " + name));
+		this.productChanged(name);
 	}
 
 	/**
@@ -66,26 +214,61 @@ public class ProductServiceImpl implements ProductService {
 	public Product create(final String name) {
 		Objects.requireNonNull(name);
 
-		// TODO: there is probably a better way of doing this!
+		this.stockWriteBehindBuffer.flush(name);
 
-		Optional<Product> optionalProduct = this.getByName(name);
-		if (optionalProduct.isPresent()) {
-			this.delete(name);
-		}
+		// A concurrent create, or update, of the same Product conflicts with this
+		// one, so it is retried from the start...
 
-		final Product product = new Product();
-		product.setName(name);
-		product.setBlocked(false);
-		product.setMinAmount((long) 0);
-		product.setCurrentAmount((long) 0);
-		this.save(product);
+		return this.conflictRetrier.execute("create", () -> {
 
-		optionalProduct = this.getByName(product.getName());
-		if (optionalProduct.isPresent()) {
-			return optionalProduct.get();
-		}
+			// An existing Product of the same name is replaced by a new one, with its
+			// rules and stock reset...
+
+			if (this.getByName(name).isPresent()) {
+				this.productRepository.deleteByName(name);
+				this.productChanged(name);
+			}
+
+			final Product product = new Product();
+			product.setName(name);
+			product.setBlocked(false);
+			product.setMinAmount((long) 0);
+			product.setCurrentAmount((long) 0);
+
+			return this.save(product)
+					.orElseThrow(() -> new ProductUpdateException("Could not save product with name " + name));
+		});
+	}
+
+	/**
+	 * Creates a snapshot holding only the override of a single
+	 * <code>Product</code>, along with the demand statistics, in a single
+	 * transaction.
+	 *
+	 * @param name   - name of the <code>Product</code>
+	 * @param amount - the amount to override with
+	 * @return the created snapshot
+	 */
+	private ProductPurchaseRequirementSnapshot createSnapshot(final String name, final Long amount) {
 
-		throw new ProductUpdateException("Could not save product with name " + name);
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+		return transactionTemplate.execute(status -> {
+			final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot = new ProductPurchaseRequirementSnapshot();
+			productPurchaseRequirementSnapshot.setItemCount(1L);
+			productPurchaseRequirementSnapshot.setStatus(ProductPurchaseRequirementSnapshot.Status.COMPLETE);
+			productPurchaseRequirementSnapshot.setTime(this.clock.millis());
+			this.productPurchaseRequirementSnapshotRepository.save(productPurchaseRequirementSnapshot);
+
+			final ProductPurchaseRequirement productPurchaseRequirement = new ProductPurchaseRequirement();
+			productPurchaseRequirement.setName(name);
+			productPurchaseRequirement.setAmount(amount);
+			productPurchaseRequirement.setSnapshotID(productPurchaseRequirementSnapshot.getID());
+			productPurchaseRequirement.setTime(productPurchaseRequirementSnapshot.getTime());
+			this.productPurchaseRequirementRepository.save(productPurchaseRequirement);
+			this.productDemandAggregator.record(List.of(productPurchaseRequirement));
+
+			return productPurchaseRequirementSnapshot;
+		});
 	}
 
 	/**
@@ -95,11 +278,13 @@ public class ProductServiceImpl implements ProductService {
 	public void delete(final String name) {
 		Objects.requireNonNull(name);
 
-		if (this.getByName(name).isEmpty()) {
+		this.stockWriteBehindBuffer.flush(name);
+
+		if (this.productRepository.deleteByName(name) == 0) {
 			throw new InvalidProductException("Could not delete product " + name + " as is does not exist");
 		}
 
-		this.productRepository.deleteByName(name);
+		this.productChanged(name);
 	}
 
 	/**
@@ -111,43 +296,122 @@ public class ProductServiceImpl implements ProductService {
 	 */
 	private Optional<Product> getByName(final String name) {
 		Objects.requireNonNull(name);
-		return Optional.ofNullable(this.productRepository.findByName(name));
+		return this.productNameCache.get(name);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public Set<ProductPurchaseRequirement> getLatestProductPurchaseRequirements() {
+	public RetentionReport getLastRetentionReport() {
+		return this.snapshotRetention.getLastRetentionReport();
+	}
+
+	/**
+	 * Gets the latest complete snapshot of <code>ProductPurchaseRequirement</code>
+	 * instances.
+	 *
+	 * @return the latest complete snapshot
+	 * @throws ProductPurchaseRequirementMissingException if none has been
+	 *                                                    generated
+	 */
+	private ProductPurchaseRequirementSnapshot getLatestProductPurchaseRequirementSnapshot() {
 
-		final Long latestTime = this.productPurchaseRequirementRepository.findMaxTime();
+		final ProductPurchaseRequirementSnapshot latestProductPurchaseRequirementSnapshot = this.latestSnapshotCache
+				.get();
 
-		if (latestTime == null) {
+		if (latestProductPurchaseRequirementSnapshot == null) {
 			throw new ProductPurchaseRequirementMissingException(
 					"Requirements have never been generated, please run getProductPurchaseRequirements() method");
 		}
 
-		return Collections.unmodifiableSet(
-				this.productPurchaseRequirementRepository.findProductPurchaseRequirementsByTime(latestTime));
+		return latestProductPurchaseRequirementSnapshot;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public Set<ProductPurchaseRequirement> getProductPurchaseRequirements() {
+	public Set<ProductPurchaseRequirement> getLatestProductPurchaseRequirements() {
+
+		final ProductPurchaseRequirementSnapshot latestProductPurchaseRequirementSnapshot = this
+				.getLatestProductPurchaseRequirementSnapshot();
+
+		return Collections.unmodifiableSet(this.productPurchaseRequirementRepository
+				.findBySnapshotID(latestProductPurchaseRequirementSnapshot.getID()));
+	}
 
-		final Long currentTime = TimeUtilities.getCurrentTime();
-		final List<Product> products = new ArrayList<>();
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ProductDemandStatistics getProductDemandStatistics(final String name) {
+		return this.productDemandAggregator.getStatistics(name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ProductPurchaseRequirementChanges getProductPurchaseRequirementChanges(final Long since) {
+		Objects.requireNonNull(since);
+
+		final ProductPurchaseRequirementSnapshot latestProductPurchaseRequirementSnapshot = this
+				.getLatestProductPurchaseRequirementSnapshot();
+
+		final ProductPurchaseRequirementSnapshot sinceProductPurchaseRequirementSnapshot = this.productPurchaseRequirementSnapshotRepository
+				.findLatestAtOrBefore(since);
+		final Long sinceSnapshotID = sinceProductPurchaseRequirementSnapshot == null ? null
+				: sinceProductPurchaseRequirementSnapshot.getID();
+		final Long sinceTime = sinceProductPurchaseRequirementSnapshot == null ? null
+				: sinceProductPurchaseRequirementSnapshot.getTime();
+
+		final List<ProductPurchaseRequirementChange> added = new ArrayList<>();
+		final List<ProductPurchaseRequirementChange> changed = new ArrayList<>();
+		final List<ProductPurchaseRequirementChange> removed = new ArrayList<>();
+
+		for (final ProductPurchaseRequirementChange productPurchaseRequirementChange : this.productPurchaseRequirementRepository
+				.findChanges(sinceSnapshotID, latestProductPurchaseRequirementSnapshot.getID())) {
+
+			if (productPurchaseRequirementChange.getPreviousAmount() == null) {
+				added.add(productPurchaseRequirementChange);
+			} else if (productPurchaseRequirementChange.getAmount() == null) {
+				removed.add(productPurchaseRequirementChange);
+			} else {
+				changed.add(productPurchaseRequirementChange);
+			}
+		}
+
+		return new ProductPurchaseRequirementChanges(sinceTime, latestProductPurchaseRequirementSnapshot.getTime(),
+				added, changed, removed);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ProductPurchaseRequirementPage getProductPurchaseRequirementHistory(final Long from, final Long to,
+			final String name, final String cursor) {
+		Objects.requireNonNull(from);
+		return this.productPurchaseRequirementHistory.getPage(from, to, name, cursor);
+	}
 
-		this.productRepository.findAll().forEach(product -> products.add(product));
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<ProductPurchaseRequirement> getProductPurchaseRequirements() {
+		return Collections.unmodifiableSet(
+				this.productPurchaseRequirementGenerator.generate(this.clock.millis()));
+	}
 
-		return Collections.unmodifiableSet(products.stream().map(Product::getProductPurchaseRequirement)
-				.filter(Optional::isPresent).map(Optional::get).map(productPurchaseRequirement -> {
-					productPurchaseRequirement.setTime(currentTime);
-					this.productPurchaseRequirementRepository.save(productPurchaseRequirement);
-					return productPurchaseRequirement;
-				}).collect(Collectors.toSet()));
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SnapshotJob getSnapshotJob(final Long ID) {
+		Objects.requireNonNull(ID);
+		return this.snapshotJobRunner.get(ID);
 	}
 
 	/**
@@ -158,54 +422,122 @@ public class ProductServiceImpl implements ProductService {
 		Objects.requireNonNull(name);
 		Objects.requireNonNull(amount);
 
-		final Long latestTime = this.productPurchaseRequirementRepository.findMaxTime();
+		ProductPurchaseRequirementSnapshot latestProductPurchaseRequirementSnapshot = this.latestSnapshotCache.get();
 
-		if (latestTime == null) {
+		if (latestProductPurchaseRequirementSnapshot == null) {
 
-			// Means that getProductPurchaseRequirements() has never been ran...
-			// So we shall create a single entry with a time of now...
+			// Concurrent overrides wait here for the first to create the snapshot, and
+			// then add to it below...
 
-			final ProductPurchaseRequirement productPurchaseRequirement = new ProductPurchaseRequirement();
-			productPurchaseRequirement.setName(name);
-			productPurchaseRequirement.setAmount(amount);
-			productPurchaseRequirement.setTime(TimeUtilities.getCurrentTime());
-			this.productPurchaseRequirementRepository.save(productPurchaseRequirement);
-			return;
+			synchronized (this.firstSnapshotLock) {
+				latestProductPurchaseRequirementSnapshot = this.latestSnapshotCache.get();
+
+				if (latestProductPurchaseRequirementSnapshot == null) {
+
+					// Means that getProductPurchaseRequirements() has never been ran...
+					// So we shall create a snapshot with a single entry with a time of now...
+
+					this.latestSnapshotCache.set(this.createSnapshot(name, amount));
+					return;
+				}
+			}
 		}
 
-		final Set<ProductPurchaseRequirement> latestProductPurchaseRequirements = this
-				.getLatestProductPurchaseRequirements();
+		final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot = latestProductPurchaseRequirementSnapshot;
 
-		final Map<String, List<ProductPurchaseRequirement>> latestProductPurchaseRequirementsMap = latestProductPurchaseRequirements
-				.stream().collect(Collectors.groupingBy(ProductPurchaseRequirement::getName));
+		this.conflictRetrier.run("overrideMinAmount",
+				() -> this.overrideMinAmount(productPurchaseRequirementSnapshot, name, amount));
+	}
 
-		if (latestProductPurchaseRequirementsMap.containsKey(name)) {
+	/**
+	 * Overrides the amount of the <code>ProductPurchaseRequirement</code> of a
+	 * <code>Product</code> in a snapshot, adding one if the <code>Product</code>
+	 * is not in it, along with the demand statistics, in a single transaction.
+	 * <P>
+	 * An amended requirement is saved against the version it was read at, and an
+	 * added one against the unique (snapshot_id, name) index, so if a concurrent
+	 * override got there first the whole transaction is rolled back and fails
+	 * rather than either losing it or counting it twice in the statistics.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot to override in
+	 * @param name                               - name of the <code>Product</code>
+	 * @param amount                             - the amount to override with
+	 */
+	private void overrideMinAmount(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot,
+			final String name, final Long amount) {
 
-			final Optional<ProductPurchaseRequirement> productPurchaseRequirementOptional = latestProductPurchaseRequirementsMap
-					.get(name).stream().findFirst();
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+		final Boolean added = transactionTemplate.execute(status -> {
 
-			if (productPurchaseRequirementOptional.isPresent()) {
+			final ProductPurchaseRequirement latestProductPurchaseRequirement = this.productPurchaseRequirementRepository
+					.findBySnapshotIDAndName(productPurchaseRequirementSnapshot.getID(), name);
+
+			if (latestProductPurchaseRequirement != null) {
 
 				// Means we already have a Product purchase requirements for this Product set...
 				// Now we will get and amend it...
 
-				final ProductPurchaseRequirement productPurchaseRequirement = productPurchaseRequirementOptional.get();
-				productPurchaseRequirement.setAmount(amount);
-				this.productPurchaseRequirementRepository.save(productPurchaseRequirement);
-				return;
+				final long previousAmount = latestProductPurchaseRequirement.getAmount();
+				latestProductPurchaseRequirement.setAmount(amount);
+				this.productPurchaseRequirementRepository.save(latestProductPurchaseRequirement);
+				this.productDemandAggregator.amend(latestProductPurchaseRequirement, previousAmount);
+				return false;
 			}
+
+			// Means there is a latest Set of Product purchase requirements, but did not
+			// feature
+			// the Product in question. So we will add it to the latest snapshot, with the
+			// same time as the existing records...
+
+			final ProductPurchaseRequirement productPurchaseRequirement = new ProductPurchaseRequirement();
+			productPurchaseRequirement.setName(name);
+			productPurchaseRequirement.setAmount(amount);
+			productPurchaseRequirement.setSnapshotID(productPurchaseRequirementSnapshot.getID());
+			productPurchaseRequirement.setTime(productPurchaseRequirementSnapshot.getTime());
+			this.productPurchaseRequirementRepository.save(productPurchaseRequirement);
+			this.productDemandAggregator.record(List.of(productPurchaseRequirement));
+			this.productPurchaseRequirementSnapshotRepository
+					.incrementItemCount(productPurchaseRequirementSnapshot.getID());
+			return true;
+		});
+
+		if (Boolean.TRUE.equals(added)) {
+			this.latestSnapshotCache.invalidate();
 		}
+	}
 
-		// Means there is a latest Set of Product purchase requirements, but did not
-		// feature
-		// the Product in question. So we will add it with the same time as the existing
-		// records...
+	/**
+	 * Notifies every <code>ProductChangeListener</code> that a
+	 * <code>Product</code> may have changed.
+	 *
+	 * @param name - name of the <code>Product</code>
+	 */
+	private void productChanged(final String name) {
+		this.productChangeListeners.forEach(productChangeListener -> productChangeListener.productChanged(name));
+	}
 
-		final ProductPurchaseRequirement productPurchaseRequirement = new ProductPurchaseRequirement();
-		productPurchaseRequirement.setName(name);
-		productPurchaseRequirement.setAmount(amount);
-		productPurchaseRequirement.setTime(latestTime);
-		this.productPurchaseRequirementRepository.save(productPurchaseRequirement);
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RetentionReport purgeProductPurchaseRequirementSnapshots() {
+		return this.snapshotRetention.purge();
+	}
+
+	/**
+	 * Checks that a <code>Product</code> exists before a change to it is buffered,
+	 * as the change would otherwise only be dropped when it is flushed.
+	 *
+	 * @param name      - name of the <code>Product</code>
+	 * @param operation - the change, as described in the exception message
+	 * @throws ProductMissingException if the <code>Product</code> does not exist
+	 */
+	private void requireExisting(final String name, final String operation) {
+
+		if (this.getByName(name).isEmpty()) {
+			throw new ProductMissingException(
+					"Could not " + operation + " on product " + name + " as it does not exist");
+		}
 	}
 
 	/**
@@ -216,8 +548,17 @@ public class ProductServiceImpl implements ProductService {
 	 */
 	private Optional<Product> save(final Product product) {
 		Objects.requireNonNull(product);
-		this.productRepository.save(product);
-		return Optional.ofNullable(this.productRepository.findByName(product.getName()));
+
+		final Product savedProduct;
+
+		try {
+			savedProduct = this.productRepository.save(product);
+		} finally {
+			this.productChanged(product.getName());
+		}
+
+		this.productNameCache.put(savedProduct);
+		return Optional.of(savedProduct);
 	}
 
 	/**
@@ -228,16 +569,18 @@ public class ProductServiceImpl implements ProductService {
 		Objects.requireNonNull(name);
 		Objects.requireNonNull(amount);
 
-		final Optional<Product> productOptional = this.getByName(name);
+		if (this.stockWriteBehindBuffer.isEnabled()) {
+			this.requireExisting(name, "set current amount");
+			this.stockWriteBehindBuffer.setCurrentAmount(name, amount);
+			return;
+		}
 
-		if (productOptional.isEmpty()) {
+		if (this.productRepository.updateCurrentAmount(name, amount) == 0) {
 			throw new InvalidProductException(
 					"Could not set current amount on product " + name + " as is does not exist");
 		}
 
-		final Product product = productOptional.get();
-		product.setCurrentAmount(amount);
-		this.save(product).orElseThrow(() -> new ProductUpdateException("Could not save product with name " + name));
+		this.productChanged(name);
 	}
 
 	/**
@@ -248,16 +591,56 @@ public class ProductServiceImpl implements ProductService {
 		Objects.requireNonNull(name);
 		Objects.requireNonNull(amount);
 
-		final Optional<Product> productOptional = this.getByName(name);
-
-		if (productOptional.isEmpty()) {
+		if (this.productRepository.updateMinAmount(name, amount) == 0) {
 			throw new InvalidProductException(
 					"Could not set minimum amount on product " + name + " as is does not exist");
 		}
 
-		final Product product = productOptional.get();
-		product.setMinAmount(amount);
-		this.save(product).orElseThrow(() -> new ProductUpdateException("Could not save product with name " + name));
+		this.productChanged(name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SnapshotJob startSnapshotJob() {
+		return this.snapshotJobRunner.start();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void streamLatestProductPurchaseRequirements(final Consumer<ProductPurchaseRequirement> consumer) {
+		Objects.requireNonNull(consumer);
+
+		final ProductPurchaseRequirementSnapshot latestProductPurchaseRequirementSnapshot = this
+				.getLatestProductPurchaseRequirementSnapshot();
+
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+		transactionTemplate.setReadOnly(true);
+		transactionTemplate.execute(status -> {
+			try (Stream<ProductPurchaseRequirement> productPurchaseRequirements = this.productPurchaseRequirementRepository
+					.streamBySnapshotID(latestProductPurchaseRequirementSnapshot.getID())) {
+
+				// Detach each one once consumed so the persistence context stays empty...
+
+				productPurchaseRequirements.forEach(productPurchaseRequirement -> {
+					consumer.accept(productPurchaseRequirement);
+					this.entityManager.detach(productPurchaseRequirement);
+				});
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void streamProductPurchaseRequirements(final Consumer<ProductPurchaseRequirement> consumer) {
+		Objects.requireNonNull(consumer);
+		this.productPurchaseRequirementGenerator.generate(this.clock.millis(), consumer);
 	}
 
 	/**
@@ -267,14 +650,10 @@ public class ProductServiceImpl implements ProductService {
 	public void unblock(final String name) {
 		Objects.requireNonNull(name);
 
-		final Optional<Product> productOptional = this.getByName(name);
-
-		if (productOptional.isEmpty()) {
+		if (this.productRepository.updateBlocked(name, false) == 0) {
 			throw new InvalidProductException("Could not unblock product " + name + " as is does not exist");
 		}
 
-		final Product product = productOptional.get();
-		product.setBlocked(false);
-		this.save(product).orElseThrow(() -> new ProductUpdateException("Could not save product with name " + name));
+		this.productChanged(name);
 	}
 }
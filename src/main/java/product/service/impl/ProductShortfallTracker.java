@@ -0,0 +1,170 @@
+package product.service.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import product.model.ProductShortfall;
+import product.repository.ProductRepository;
+
+/**
+ * Keeps the set of <code>Product</code> instances that are currently short, as
+ * <code>ProductShortfall</code> projections, up to date incrementally.
+ * <P>
+ * The whole catalogue is only read the first time the shortfalls are needed,
+ * or after every <code>Product</code> may have changed. After that, as a
+ * <code>ProductChangeListener</code>, the names of changed Products are
+ * recorded and only those are read again, so getting the shortfalls costs the
+ * number of short and changed Products rather than the size of the catalogue.
+ * <P>
+ * Changes made to the database other than through the service layer, such as
+ * by another instance of this service, are not seen, so in that case
+ * <code>product.requirements.incremental</code> should be set to
+ * <code>false</code>.
+ */
+@Component
+public class ProductShortfallTracker implements ProductChangeListener {
+
+	/**
+	 * The number of Products read per query.
+	 */
+	@Value("${product.requirements.batch-size:1000}")
+	private int batchSize;
+
+	/**
+	 * The names of the Products that have changed since the shortfalls were last
+	 * brought up to date.
+	 */
+	private final Set<String> changedNames = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * <code>true</code> from when the whole catalogue starts to be read, until
+	 * every Product may have changed, while changed names are recorded.
+	 */
+	private volatile boolean loaded;
+
+	/**
+	 * The ProductRepository.
+	 */
+	@Autowired
+	private ProductRepository productRepository;
+
+	/**
+	 * The Products that are currently short, by name.
+	 */
+	private final Map<String, ProductShortfall> productShortfalls = new ConcurrentHashMap<>();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void allProductsChanged() {
+		this.loaded = false;
+	}
+
+	/**
+	 * Gets the Products that are currently short, first reading any that have
+	 * changed.
+	 *
+	 * @return the <code>ProductShortfall</code> of every Product that is currently
+	 *         short, in ID order
+	 */
+	public synchronized List<ProductShortfall> getProductShortfalls() {
+
+		if (this.loaded) {
+			this.refreshChanged();
+		} else {
+			this.load();
+		}
+
+		final List<ProductShortfall> productShortfalls = new ArrayList<>(this.productShortfalls.values());
+		productShortfalls.sort(Comparator.comparing(ProductShortfall::getID));
+		return productShortfalls;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void productChanged(final String name) {
+		Objects.requireNonNull(name);
+
+		// Until the shortfalls are loaded, the whole catalogue is read when they are,
+		// so the names need not be kept...
+
+		if (this.loaded) {
+			this.changedNames.add(name);
+		}
+	}
+
+	/**
+	 * Reads the shortfalls of the whole catalogue. Changes recorded before this
+	 * starts are covered by the read, while those recorded during it are read
+	 * again next time, as are all Products if every one may have changed during
+	 * it.
+	 */
+	private void load() {
+		this.changedNames.clear();
+		this.productShortfalls.clear();
+		this.loaded = true;
+
+		try {
+			this.readCatalogue();
+		} catch (final RuntimeException e) {
+			this.loaded = false;
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the shortfalls of the whole catalogue, a page at a time.
+	 */
+	private void readCatalogue() {
+		final PageRequest pageRequest = PageRequest.of(0, this.batchSize);
+		Long lastID = Long.MIN_VALUE;
+		List<ProductShortfall> page;
+
+		do {
+			page = this.productRepository.findShortfallsAfterID(lastID, pageRequest);
+
+			for (final ProductShortfall productShortfall : page) {
+				this.productShortfalls.put(productShortfall.getName(), productShortfall);
+				lastID = productShortfall.getID();
+			}
+
+		} while (page.size() == this.batchSize);
+	}
+
+	/**
+	 * Reads the shortfalls of the Products that have changed. Each name is removed
+	 * from the changed names before it is read, so a change recorded during the
+	 * read is read again next time.
+	 */
+	private void refreshChanged() {
+		final List<String> names = new ArrayList<>(this.batchSize);
+		final Iterator<String> changedNamesIterator = this.changedNames.iterator();
+
+		while (changedNamesIterator.hasNext()) {
+			names.add(changedNamesIterator.next());
+			changedNamesIterator.remove();
+
+			if ((names.size() == this.batchSize) || !changedNamesIterator.hasNext()) {
+				names.forEach(this.productShortfalls::remove);
+				this.productRepository.findShortfallsByNameIn(names)
+						.forEach(productShortfall -> this.productShortfalls.put(productShortfall.getName(),
+								productShortfall));
+				names.clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,945 @@
+package product.service.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import product.model.Product;
+import product.model.ProductPurchaseRequirement;
+import product.model.ProductPurchaseRequirementSnapshot;
+import product.repository.ProductPurchaseRequirementRepository;
+import product.repository.ProductPurchaseRequirementSnapshotRepository;
+import product.repository.ProductRepository;
+import product.repository.ProductStockConsumer;
+
+/**
+ * An optional pair of files, in the stock file directory, that keep the stock
+ * levels of every <code>Product</code> and the latest generated snapshot of
+ * <code>ProductPurchaseRequirement</code> instances across restarts, without
+ * going through JPA.
+ * <P>
+ * <code>stock.dat</code> is memory mapped and holds one fixed size record per
+ * slot of the <code>ProductStockView</code>, written in place as the view
+ * changes. Each record, and the header holding the number of records, has its
+ * own CRC32, so a record torn by a crash is detected rather than read. The
+ * records reflect the view as of its last refresh, so the view only trusts them
+ * when their <code>ProductStockFingerprint</code> matches the database, and
+ * otherwise reads the database and rewrites them.
+ * <P>
+ * The header also records whether the file was checkpointed, that is, forced
+ * to disk by the view once every change it had seen was written. The flag is
+ * cleared, and forced to disk, before the first change after a checkpoint, so
+ * a file left behind by a crash with changes the view had not yet written is
+ * never taken as checkpointed.
+ * <P>
+ * <code>requirements.dat</code> holds the requirements of the latest snapshot
+ * as generated. They are written to a temporary file as each chunk is
+ * generated, which only replaces the previous file once the snapshot is
+ * complete, so a crash part way through leaves the previous snapshot in place.
+ * Overrides made after the snapshot was generated are not written.
+ * <P>
+ * On startup, if the database has no Products, such as the in-memory database
+ * after a restart, the Products are restored from <code>stock.dat</code> with
+ * their IDs and versions, as long as it was checkpointed, and if it also has no
+ * snapshots, the latest snapshot
+ * is restored from <code>requirements.dat</code>. A <code>Product</code> that
+ * was missing a value is restored blocked, with any missing amount as zero,
+ * which the purchase requirement rule treats in the same way. The demand
+ * statistics are not restored.
+ */
+@Component
+public class ProductStockFile {
+
+	/**
+	 * Writes the <code>ProductPurchaseRequirement</code> instances of a snapshot,
+	 * as they are generated, to a temporary file that only replaces
+	 * <code>requirements.dat</code> once the snapshot is complete. If the stock
+	 * file directory is not set, or a write fails, nothing is written.
+	 */
+	public static final class RequirementsWriter {
+
+		/**
+		 * The records waiting to be written.
+		 */
+		private final ByteBuffer buffer = ByteBuffer.allocate(ProductStockFile.RECORD_SIZE * 1024);
+
+		/**
+		 * The channel of the temporary file, <code>null</code> once closed or if
+		 * nothing is written.
+		 */
+		private FileChannel channel;
+
+		/**
+		 * The number of requirements written.
+		 */
+		private long count;
+
+		/**
+		 * The <code>requirements.dat</code> file that is replaced on commit.
+		 */
+		private final Path path;
+
+		/**
+		 * The snapshot being written.
+		 */
+		private final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot;
+
+		/**
+		 * The temporary file.
+		 */
+		private final Path temporaryPath;
+
+		/**
+		 * Constructs a <code>RequirementsWriter</code>.
+		 *
+		 * @param path                               - the file that is replaced on
+		 *                                           commit, <code>null</code> to
+		 *                                           write nothing
+		 * @param productPurchaseRequirementSnapshot - the snapshot being written
+		 */
+		private RequirementsWriter(final Path path,
+				final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot) {
+
+			this.path = path;
+			this.productPurchaseRequirementSnapshot = productPurchaseRequirementSnapshot;
+
+			Path temporaryPath = null;
+
+			if (path != null) {
+				try {
+					temporaryPath = Files.createTempFile(path.getParent(), "requirements", ".tmp");
+					this.channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE);
+					this.channel.position(ProductStockFile.HEADER_SIZE);
+				} catch (final IOException e) {
+					this.fail(e);
+				}
+			}
+
+			this.temporaryPath = temporaryPath;
+		}
+
+		/**
+		 * Abandons the snapshot, deleting the temporary file and leaving
+		 * <code>requirements.dat</code> as it was.
+		 */
+		public void abandon() {
+			this.close();
+		}
+
+		/**
+		 * Completes the snapshot, replacing <code>requirements.dat</code> with the
+		 * temporary file once it is on disk.
+		 */
+		public void commit() {
+
+			if (this.channel == null) {
+				return;
+			}
+
+			try {
+				this.flush();
+
+				final ByteBuffer header = ByteBuffer.allocate(ProductStockFile.HEADER_SIZE);
+				header.putInt(ProductStockFile.REQUIREMENTS_MAGIC);
+				header.putInt(ProductStockFile.FORMAT);
+				header.putLong(this.count);
+				header.putLong(this.productPurchaseRequirementSnapshot.getTime());
+				ProductStockFile.seal(header.array(), ProductStockFile.HEADER_SIZE);
+				header.clear();
+				this.channel.write(header, 0);
+				this.channel.force(true);
+				this.channel.close();
+				this.channel = null;
+
+				Files.move(this.temporaryPath, this.path, StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (final IOException e) {
+				this.fail(e);
+			}
+		}
+
+		/**
+		 * Writes a generated <code>ProductPurchaseRequirement</code>.
+		 *
+		 * @param productPurchaseRequirement - the generated
+		 *                                   <code>ProductPurchaseRequirement</code>
+		 */
+		public void write(final ProductPurchaseRequirement productPurchaseRequirement) {
+
+			if (this.channel == null) {
+				return;
+			}
+
+			final byte[] name = productPurchaseRequirement.getName().getBytes(StandardCharsets.UTF_8);
+
+			if (name.length > ProductStockFile.NAME_CAPACITY) {
+				this.fail(new IOException("The name of product " + productPurchaseRequirement.getName()
+						+ " is longer than " + ProductStockFile.NAME_CAPACITY + " bytes"));
+				return;
+			}
+
+			final byte[] record = new byte[ProductStockFile.RECORD_SIZE];
+			final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+			recordBuffer.putLong(ProductStockFile.AMOUNT_OFFSET, productPurchaseRequirement.getAmount());
+			recordBuffer.put(ProductStockFile.NAME_LENGTH_OFFSET, (byte) name.length);
+			System.arraycopy(name, 0, record, ProductStockFile.NAME_OFFSET, name.length);
+			ProductStockFile.seal(record, ProductStockFile.RECORD_SIZE);
+
+			try {
+				if (!this.buffer.hasRemaining()) {
+					this.flush();
+				}
+				this.buffer.put(record);
+				this.count++;
+			} catch (final IOException e) {
+				this.fail(e);
+			}
+		}
+
+		/**
+		 * Closes the temporary file, if open, and deletes it.
+		 */
+		private void close() {
+
+			if (this.channel != null) {
+				try {
+					this.channel.close();
+				} catch (final IOException e) {
+					ProductStockFile.LOGGER.warn("Could not close {}", this.temporaryPath, e);
+				}
+				this.channel = null;
+			}
+
+			if (this.temporaryPath != null) {
+				try {
+					Files.deleteIfExists(this.temporaryPath);
+				} catch (final IOException e) {
+					ProductStockFile.LOGGER.warn("Could not delete {}", this.temporaryPath, e);
+				}
+			}
+		}
+
+		/**
+		 * Logs a failure to write and stops writing, leaving
+		 * <code>requirements.dat</code> as it was.
+		 *
+		 * @param e - the failure
+		 */
+		private void fail(final IOException e) {
+			ProductStockFile.LOGGER.warn("Could not write the latest product purchase requirements to {}", this.path,
+					e);
+			this.close();
+		}
+
+		/**
+		 * Writes the records waiting to be written.
+		 *
+		 * @throws IOException if they could not be written
+		 */
+		private void flush() throws IOException {
+			this.buffer.flip();
+			while (this.buffer.hasRemaining()) {
+				this.channel.write(this.buffer);
+			}
+			this.buffer.clear();
+		}
+	}
+
+	/**
+	 * The offset of the amount in a requirement record.
+	 */
+	private static final int AMOUNT_OFFSET = 0;
+
+	/**
+	 * The offset of the flags in a stock record.
+	 */
+	private static final int FLAGS_OFFSET = 32;
+
+	/**
+	 * The flag of a stock record whose <code>Product</code> is blocked or missing
+	 * a value.
+	 */
+	private static final byte FLAG_BLOCKED = 1;
+
+	/**
+	 * The flag of a stock record whose slot is empty.
+	 */
+	private static final byte FLAG_REMOVED = 2;
+
+	/**
+	 * The offset of the flags in the header of <code>stock.dat</code>.
+	 */
+	private static final int HEADER_FLAGS_OFFSET = 12;
+
+	/**
+	 * The flag of the header of <code>stock.dat</code> when it was checkpointed.
+	 */
+	private static final int HEADER_FLAG_CHECKPOINTED = 1;
+
+	/**
+	 * The version of the layout of both files.
+	 */
+	private static final int FORMAT = 1;
+
+	/**
+	 * The size of the header of both files, the last four bytes of which are its
+	 * CRC32.
+	 */
+	private static final int HEADER_SIZE = 64;
+
+	/**
+	 * The number of stock records the file is first mapped for.
+	 */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * The Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ProductStockFile.class);
+
+	/**
+	 * The maximum length of a name, in UTF-8 bytes.
+	 */
+	private static final int NAME_CAPACITY = 88;
+
+	/**
+	 * The offset of the length of the name in a record.
+	 */
+	private static final int NAME_LENGTH_OFFSET = 33;
+
+	/**
+	 * The offset of the name in a record.
+	 */
+	private static final int NAME_OFFSET = 34;
+
+	/**
+	 * The size of a record of either file, the last four bytes of which are its
+	 * CRC32.
+	 */
+	private static final int RECORD_SIZE = 128;
+
+	/**
+	 * Identifies <code>requirements.dat</code>.
+	 */
+	private static final int REQUIREMENTS_MAGIC = 0x50505231;
+
+	/**
+	 * Identifies <code>stock.dat</code>.
+	 */
+	private static final int STOCK_MAGIC = 0x50535431;
+
+	/**
+	 * The number of Products restored per transaction.
+	 */
+	@Value("${product.requirements.batch-size:1000}")
+	private int batchSize;
+
+	/**
+	 * The directory the files are kept in, empty to not keep them.
+	 */
+	@Value("${product.stock-file.directory:}")
+	private String directory;
+
+	/**
+	 * The LatestSnapshotCache, set to a restored snapshot.
+	 */
+	@Autowired
+	private LatestSnapshotCache latestSnapshotCache;
+
+	/**
+	 * The ProductPurchaseRequirementRepository.
+	 */
+	@Autowired
+	private ProductPurchaseRequirementRepository productPurchaseRequirementRepository;
+
+	/**
+	 * The ProductPurchaseRequirementSnapshotRepository.
+	 */
+	@Autowired
+	private ProductPurchaseRequirementSnapshotRepository productPurchaseRequirementSnapshotRepository;
+
+	/**
+	 * The ProductRepository.
+	 */
+	@Autowired
+	private ProductRepository productRepository;
+
+	/**
+	 * The <code>requirements.dat</code> file, <code>null</code> if not open.
+	 */
+	private Path requirementsPath;
+
+	/**
+	 * The mapping of <code>stock.dat</code>, <code>null</code> if not open.
+	 */
+	private MappedByteBuffer stock;
+
+	/**
+	 * <code>true</code> if <code>stock.dat</code> may have changed since it was
+	 * last checkpointed.
+	 */
+	private volatile boolean stockChanged;
+
+	/**
+	 * The number of stock records <code>stock.dat</code> is mapped for.
+	 */
+	private int stockCapacity;
+
+	/**
+	 * The channel of <code>stock.dat</code>, <code>null</code> if not open.
+	 */
+	private FileChannel stockChannel;
+
+	/**
+	 * The number of stock records in use.
+	 */
+	private int stockSize;
+
+	/**
+	 * Forces the changes to <code>stock.dat</code> to disk and marks it
+	 * checkpointed, so that it is restored on the next start, as long as the
+	 * specified condition holds once no other change can be made to the file.
+	 *
+	 * @param upToDate - <code>true</code> if every change seen has been written
+	 */
+	public synchronized void checkpoint(final BooleanSupplier upToDate) {
+		Objects.requireNonNull(upToDate);
+
+		if ((this.stock != null) && this.stockChanged && upToDate.getAsBoolean()) {
+			this.stock.force();
+			this.stockChanged = false;
+			this.writeStockHeader();
+			this.stock.force();
+		}
+	}
+
+	/**
+	 * Empties <code>stock.dat</code>, so that it can be written again from the
+	 * first slot.
+	 */
+	public synchronized void clearStock() {
+
+		if (this.stock != null) {
+			this.markStockChanged();
+			this.stockSize = 0;
+			this.writeStockHeader();
+		}
+	}
+
+	/**
+	 * Forces the changes to <code>stock.dat</code> to disk and closes both files.
+	 */
+	@PreDestroy
+	public synchronized void close() {
+
+		if (this.stock != null) {
+			this.stock.force();
+			this.stock = null;
+		}
+
+		if (this.stockChannel != null) {
+			try {
+				this.stockChannel.close();
+			} catch (final IOException e) {
+				ProductStockFile.LOGGER.warn("Could not close the stock file", e);
+			}
+			this.stockChannel = null;
+		}
+
+		this.requirementsPath = null;
+	}
+
+	/**
+	 * Gets if the files are kept.
+	 *
+	 * @return <code>true</code> if the stock file directory is set and the files
+	 *         could be opened
+	 */
+	public synchronized boolean isEnabled() {
+		return this.stock != null;
+	}
+
+	/**
+	 * Marks <code>stock.dat</code> as no longer checkpointed, forcing the mark to
+	 * disk, before a change to the Products it holds is written, or once one has
+	 * been seen that is not yet written.
+	 */
+	public void markStockChanged() {
+
+		if (this.stockChanged) {
+			return;
+		}
+
+		synchronized (this) {
+
+			if ((this.stock != null) && !this.stockChanged) {
+				this.stockChanged = true;
+				this.writeStockFlags();
+				this.stock.force();
+			}
+		}
+	}
+
+	/**
+	 * Opens the files in the stock file directory, if it is set, creating the
+	 * directory if needed. If they cannot be opened they are not kept.
+	 */
+	@PostConstruct
+	public synchronized void open() {
+		this.close();
+
+		if ((this.directory == null) || this.directory.isEmpty()) {
+			return;
+		}
+
+		try {
+			final Path directoryPath = Paths.get(this.directory);
+			Files.createDirectories(directoryPath);
+
+			this.stockChannel = FileChannel.open(directoryPath.resolve("stock.dat"), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			this.stockCapacity = (int) Math.max(ProductStockFile.INITIAL_CAPACITY,
+					(this.stockChannel.size() - ProductStockFile.HEADER_SIZE) / ProductStockFile.RECORD_SIZE);
+			this.mapStock();
+			this.stockChanged = false;
+			this.stockSize = 0;
+			this.requirementsPath = directoryPath.resolve("requirements.dat");
+
+		} catch (final IOException e) {
+			ProductStockFile.LOGGER.error("Could not open the stock file in {}, so it is not kept", this.directory,
+					e);
+			this.close();
+		}
+	}
+
+	/**
+	 * Starts writing the requirements of a snapshot that is being generated.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot being generated
+	 * @return the <code>RequirementsWriter</code>, which writes nothing if the
+	 *         files are not kept
+	 */
+	public synchronized RequirementsWriter openRequirements(
+			final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot) {
+
+		Objects.requireNonNull(productPurchaseRequirementSnapshot);
+		return new RequirementsWriter(this.requirementsPath, productPurchaseRequirementSnapshot);
+	}
+
+	/**
+	 * Reads the requirements of the latest snapshot written to
+	 * <code>requirements.dat</code>.
+	 *
+	 * @return the requirements, each with the time of the snapshot, or an empty
+	 *         <code>List</code> if there are none or any of them could not be
+	 *         read
+	 */
+	public List<ProductPurchaseRequirement> readRequirements() {
+
+		final Path path;
+
+		synchronized (this) {
+			path = this.requirementsPath;
+		}
+
+		if (path == null) {
+			return Collections.emptyList();
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			final ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			final byte[] header = new byte[ProductStockFile.HEADER_SIZE];
+
+			if (file.remaining() < header.length) {
+				return Collections.emptyList();
+			}
+
+			file.get(header);
+
+			if (!ProductStockFile.isSealed(header)) {
+				return Collections.emptyList();
+			}
+
+			final ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+			final long count = headerBuffer.getLong(8);
+			final long time = headerBuffer.getLong(16);
+
+			if ((headerBuffer.getInt(0) != ProductStockFile.REQUIREMENTS_MAGIC)
+					|| (headerBuffer.getInt(4) != ProductStockFile.FORMAT)
+					|| (file.remaining() != (count * ProductStockFile.RECORD_SIZE))) {
+				return Collections.emptyList();
+			}
+
+			final List<ProductPurchaseRequirement> productPurchaseRequirements = new ArrayList<>((int) count);
+			final byte[] record = new byte[ProductStockFile.RECORD_SIZE];
+			final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+
+			for (long i = 0; i < count; i++) {
+
+				file.get(record);
+
+				if (!ProductStockFile.isSealed(record)) {
+					return Collections.emptyList();
+				}
+
+				final ProductPurchaseRequirement productPurchaseRequirement = new ProductPurchaseRequirement();
+				productPurchaseRequirement.setAmount(recordBuffer.getLong(ProductStockFile.AMOUNT_OFFSET));
+				productPurchaseRequirement.setName(ProductStockFile.name(record));
+				productPurchaseRequirement.setTime(time);
+				productPurchaseRequirements.add(productPurchaseRequirement);
+			}
+
+			return productPurchaseRequirements;
+
+		} catch (final NoSuchFileException e) {
+			return Collections.emptyList();
+		} catch (final IOException e) {
+			ProductStockFile.LOGGER.warn("Could not read {}", path, e);
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * Reads every stock record of <code>stock.dat</code>, slot by slot, passing
+	 * an empty slot with a <code>null</code> name.
+	 *
+	 * @param consumer - receives each slot, which may already have been given
+	 *                 some of them when the file turns out not to be readable
+	 * @return <code>true</code> if every record was read, <code>false</code> if
+	 *         the files are not kept, or the file is empty, was written by a
+	 *         different format, or has a torn header or record
+	 */
+	public synchronized boolean readStock(final ProductStockConsumer consumer) {
+		Objects.requireNonNull(consumer);
+
+		if (this.stock == null) {
+			return false;
+		}
+
+		final ByteBuffer file = this.stock.duplicate();
+		final byte[] header = new byte[ProductStockFile.HEADER_SIZE];
+		final ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+		file.get(header);
+
+		if (!ProductStockFile.isSealed(header) || (headerBuffer.getInt(0) != ProductStockFile.STOCK_MAGIC)
+				|| (headerBuffer.getInt(4) != ProductStockFile.FORMAT)
+				|| (headerBuffer.getInt(8) > this.stockCapacity)) {
+			return false;
+		}
+
+		final int size = headerBuffer.getInt(8);
+		final byte[] record = new byte[ProductStockFile.RECORD_SIZE];
+		final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+
+		for (int slot = 0; slot < size; slot++) {
+
+			file.get(record);
+
+			if (!ProductStockFile.isSealed(record)) {
+				return false;
+			}
+
+			if ((record[ProductStockFile.FLAGS_OFFSET] & ProductStockFile.FLAG_REMOVED) != 0) {
+				consumer.accept(0, null, true, 0, 0, 0);
+			} else {
+				consumer.accept(recordBuffer.getLong(0), ProductStockFile.name(record),
+						(record[ProductStockFile.FLAGS_OFFSET] & ProductStockFile.FLAG_BLOCKED) != 0,
+						recordBuffer.getLong(8), recordBuffer.getLong(16), recordBuffer.getLong(24));
+			}
+		}
+
+		this.stockSize = size;
+		return true;
+	}
+
+	/**
+	 * Empties a slot of <code>stock.dat</code>.
+	 *
+	 * @param slot - the slot
+	 */
+	public synchronized void removeStock(final int slot) {
+
+		if ((this.stock != null) && (slot < this.stockSize)) {
+			this.markStockChanged();
+			final byte[] record = new byte[ProductStockFile.RECORD_SIZE];
+			record[ProductStockFile.FLAGS_OFFSET] = ProductStockFile.FLAG_REMOVED;
+			this.writeStockRecord(slot, record);
+		}
+	}
+
+	/**
+	 * Restores the Products, and the latest snapshot, from the files into an empty
+	 * database once the application has started, before the
+	 * <code>ProductStockView</code> is loaded. The Products are only restored if
+	 * <code>stock.dat</code> was checkpointed, as otherwise it may be missing
+	 * changes that were made before a crash.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(1)
+	public void restore() {
+
+		if (!this.isEnabled()) {
+			return;
+		}
+
+		if ((this.productRepository.count() == 0) && this.readStock((ID, name, blocked, currentAmount, minAmount,
+				version) -> {
+		}) && this.isStockCheckpointed()) {
+
+			final List<Product> products = new ArrayList<>(this.batchSize);
+			final long[] restored = new long[1];
+
+			this.readStock((ID, name, blocked, currentAmount, minAmount, version) -> {
+
+				if (name != null) {
+					final Product product = new Product();
+					product.setID(ID);
+					product.setName(name);
+					product.setBlocked(blocked);
+					product.setCurrentAmount(currentAmount);
+					product.setMinAmount(minAmount);
+					product.setVersion(version);
+					products.add(product);
+				}
+
+				if (products.size() == this.batchSize) {
+					this.productRepository.insertAll(products);
+					restored[0] += products.size();
+					products.clear();
+				}
+			});
+
+			this.productRepository.insertAll(products);
+			restored[0] += products.size();
+			ProductStockFile.LOGGER.info("Restored {} products from the stock file", restored[0]);
+		}
+
+		if (this.productPurchaseRequirementSnapshotRepository.count() == 0) {
+
+			final List<ProductPurchaseRequirement> productPurchaseRequirements = this.readRequirements();
+
+			if (!productPurchaseRequirements.isEmpty()) {
+
+				ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot = new ProductPurchaseRequirementSnapshot();
+				productPurchaseRequirementSnapshot.setItemCount((long) productPurchaseRequirements.size());
+				productPurchaseRequirementSnapshot.setStatus(ProductPurchaseRequirementSnapshot.Status.COMPLETE);
+				productPurchaseRequirementSnapshot.setTime(productPurchaseRequirements.get(0).getTime());
+				productPurchaseRequirementSnapshot = this.productPurchaseRequirementSnapshotRepository
+						.save(productPurchaseRequirementSnapshot);
+
+				for (final ProductPurchaseRequirement productPurchaseRequirement : productPurchaseRequirements) {
+					productPurchaseRequirement.setSnapshotID(productPurchaseRequirementSnapshot.getID());
+				}
+
+				this.productPurchaseRequirementRepository.insertAll(productPurchaseRequirements);
+				this.latestSnapshotCache.set(productPurchaseRequirementSnapshot);
+				ProductStockFile.LOGGER.info("Restored {} product purchase requirements from the stock file",
+						productPurchaseRequirements.size());
+			}
+		}
+	}
+
+	/**
+	 * Writes the stock levels of the <code>Product</code> in a slot of
+	 * <code>stock.dat</code>. If the name of the <code>Product</code> does not fit
+	 * in a record, or the file cannot be grown, the file is emptied and no longer
+	 * kept.
+	 *
+	 * @param slot          - the slot
+	 * @param ID            - database primary key value of the <code>Product</code>
+	 * @param name          - name of the <code>Product</code>
+	 * @param blocked       - <code>true</code> if the <code>Product</code> is
+	 *                      blocked or missing a value
+	 * @param currentAmount - current amount of the <code>Product</code>
+	 * @param minAmount     - minimum amount of the <code>Product</code>
+	 * @param version       - version of the <code>Product</code>
+	 */
+	public synchronized void writeStock(final int slot, final long ID, final String name, final boolean blocked,
+			final long currentAmount, final long minAmount, final long version) {
+
+		if (this.stock == null) {
+			return;
+		}
+
+		this.markStockChanged();
+
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+
+		if (nameBytes.length > ProductStockFile.NAME_CAPACITY) {
+			ProductStockFile.LOGGER.warn("The name of product {} is longer than {} bytes, so the stock file is not kept",
+					name, ProductStockFile.NAME_CAPACITY);
+			this.abandonStock();
+			return;
+		}
+
+		if (slot >= this.stockCapacity) {
+			try {
+				this.stockCapacity = Math.max(slot + 1, this.stockCapacity * 2);
+				this.mapStock();
+			} catch (final IOException e) {
+				ProductStockFile.LOGGER.warn("Could not grow the stock file, so it is not kept", e);
+				this.abandonStock();
+				return;
+			}
+		}
+
+		final byte[] record = new byte[ProductStockFile.RECORD_SIZE];
+		final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+		recordBuffer.putLong(0, ID);
+		recordBuffer.putLong(8, currentAmount);
+		recordBuffer.putLong(16, minAmount);
+		recordBuffer.putLong(24, version);
+		record[ProductStockFile.FLAGS_OFFSET] = blocked ? ProductStockFile.FLAG_BLOCKED : 0;
+		record[ProductStockFile.NAME_LENGTH_OFFSET] = (byte) nameBytes.length;
+		System.arraycopy(nameBytes, 0, record, ProductStockFile.NAME_OFFSET, nameBytes.length);
+		this.writeStockRecord(slot, record);
+
+		if (slot >= this.stockSize) {
+			this.stockSize = slot + 1;
+			this.writeStockHeader();
+		}
+	}
+
+	/**
+	 * Checks the CRC32 in the last four bytes of a header or record.
+	 *
+	 * @param bytes - the header or record
+	 * @return <code>true</code> if the CRC32 matches
+	 */
+	private static boolean isSealed(final byte[] bytes) {
+		final CRC32 crc32 = new CRC32();
+		crc32.update(bytes, 0, bytes.length - 4);
+		return ByteBuffer.wrap(bytes).getInt(bytes.length - 4) == (int) crc32.getValue();
+	}
+
+	/**
+	 * Checks if <code>stock.dat</code> was checkpointed, logging a warning if not.
+	 *
+	 * @return <code>true</code> if the header is flagged as checkpointed
+	 */
+	private synchronized boolean isStockCheckpointed() {
+
+		if ((this.stock.getInt(ProductStockFile.HEADER_FLAGS_OFFSET)
+				& ProductStockFile.HEADER_FLAG_CHECKPOINTED) != 0) {
+			return true;
+		}
+
+		ProductStockFile.LOGGER.warn("The stock file was not checkpointed, so may be missing changes made before "
+				+ "a crash, and the products are not restored from it");
+		return false;
+	}
+
+	/**
+	 * Decodes the name in a record.
+	 *
+	 * @param record - the record
+	 * @return the name
+	 */
+	private static String name(final byte[] record) {
+		return new String(record, ProductStockFile.NAME_OFFSET, record[ProductStockFile.NAME_LENGTH_OFFSET],
+				StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the CRC32 of a header or record into its last four bytes.
+	 *
+	 * @param bytes  - the header or record
+	 * @param length - its length
+	 */
+	private static void seal(final byte[] bytes, final int length) {
+		final CRC32 crc32 = new CRC32();
+		crc32.update(bytes, 0, length - 4);
+		ByteBuffer.wrap(bytes).putInt(length - 4, (int) crc32.getValue());
+	}
+
+	/**
+	 * Empties <code>stock.dat</code> and stops keeping it.
+	 */
+	private void abandonStock() {
+		this.clearStock();
+		this.stock.force();
+		this.stock = null;
+	}
+
+	/**
+	 * Maps <code>stock.dat</code> for the current capacity, growing it if needed.
+	 *
+	 * @throws IOException if it could not be mapped
+	 */
+	private void mapStock() throws IOException {
+		this.stock = this.stockChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+				ProductStockFile.HEADER_SIZE + ((long) this.stockCapacity * ProductStockFile.RECORD_SIZE));
+	}
+
+	/**
+	 * Rewrites the flags in the header of <code>stock.dat</code>, leaving the rest
+	 * of it as it is, unless it is torn, in which case the file is not read
+	 * anyway.
+	 */
+	private void writeStockFlags() {
+		final byte[] header = new byte[ProductStockFile.HEADER_SIZE];
+		this.stock.duplicate().get(header);
+
+		if (ProductStockFile.isSealed(header)) {
+			ByteBuffer.wrap(header).putInt(ProductStockFile.HEADER_FLAGS_OFFSET,
+					this.stockChanged ? 0 : ProductStockFile.HEADER_FLAG_CHECKPOINTED);
+			ProductStockFile.seal(header, header.length);
+			this.stock.duplicate().put(header);
+		}
+	}
+
+	/**
+	 * Writes the header of <code>stock.dat</code>, holding the number of records
+	 * in use, and whether it was checkpointed.
+	 */
+	private void writeStockHeader() {
+		final byte[] header = new byte[ProductStockFile.HEADER_SIZE];
+		final ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+		headerBuffer.putInt(ProductStockFile.STOCK_MAGIC);
+		headerBuffer.putInt(ProductStockFile.FORMAT);
+		headerBuffer.putInt(this.stockSize);
+		headerBuffer.putInt(this.stockChanged ? 0 : ProductStockFile.HEADER_FLAG_CHECKPOINTED);
+		ProductStockFile.seal(header, header.length);
+		this.stock.duplicate().put(header);
+	}
+
+	/**
+	 * Seals and writes a record into a slot of <code>stock.dat</code>.
+	 *
+	 * @param slot   - the slot
+	 * @param record - the record
+	 */
+	private void writeStockRecord(final int slot, final byte[] record) {
+		ProductStockFile.seal(record, record.length);
+		final ByteBuffer file = this.stock.duplicate();
+		file.position(ProductStockFile.HEADER_SIZE + (slot * ProductStockFile.RECORD_SIZE));
+		file.put(record);
+	}
+}
@@ -0,0 +1,528 @@
+package product.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import product.model.ProductShortfall;
+import product.model.ProductStockFingerprint;
+import product.repository.ProductRepository;
+
+/**
+ * A compact, read only view of the stock levels of every <code>Product</code>,
+ * held column by column in primitive arrays, for working out the shortfalls of
+ * the whole catalogue without loading or boxing anything per
+ * <code>Product</code>.
+ * <P>
+ * Each <code>Product</code> has a slot, in which its ID, current amount and
+ * minimum amount are held in <code>long</code> arrays, its name is held
+ * interned, and whether it is blocked is held in a <code>BitSet</code>. A
+ * <code>Product</code> that is missing any of its values is held as blocked,
+ * as the purchase requirement rule never applies to it. Scanning for
+ * shortfalls only visits the slots that are not blocked and compares two
+ * <code>long</code> values for each.
+ * <P>
+ * The whole catalogue is only read the first time the view is needed, or after
+ * every <code>Product</code> may have changed. After that, as a
+ * <code>ProductChangeListener</code>, the names of changed Products are
+ * recorded and only those are read again, in place where the
+ * <code>Product</code> is the same one, while a <code>Product</code> that was
+ * deleted leaves an empty, blocked slot behind. The whole catalogue is read
+ * again once half of the slots are empty.
+ * <P>
+ * If the <code>ProductStockFile</code> is kept, every change to a slot is
+ * written through to it, and the first time the view is needed the slots are
+ * read back from it rather than from the database, as long as the
+ * <code>ProductStockFingerprint</code> of what was read matches the database.
+ * The view is then loaded as soon as the application is ready. The file is
+ * marked as not checkpointed as soon as a change is seen, and the view is
+ * brought up to date and the file checkpointed every checkpoint interval and on
+ * shutdown, so that after a crash the file is only restored from if it holds
+ * every change.
+ * <P>
+ * As with the <code>ProductShortfallTracker</code>, changes made to the
+ * database other than through the service layer are not seen.
+ */
+@Component
+public class ProductStockView implements ProductChangeListener {
+
+	/**
+	 * Receives each shortfall found by a scan as primitive values.
+	 */
+	@FunctionalInterface
+	public interface ShortfallConsumer {
+
+		/**
+		 * Accepts a shortfall.
+		 *
+		 * @param ID     - database primary key value of the <code>Product</code>
+		 * @param name   - name of the <code>Product</code>
+		 * @param amount - amount of the <code>Product</code> required to reach the
+		 *               minimum stock level
+		 */
+		void accept(long ID, String name, long amount);
+	}
+
+	/**
+	 * The number of slots allocated at first.
+	 */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * The Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ProductStockView.class);
+
+	/**
+	 * The number of Products read per query.
+	 */
+	@Value("${product.requirements.batch-size:1000}")
+	private int batchSize;
+
+	/**
+	 * The slots of the Products that are blocked, missing a value, or deleted.
+	 */
+	private final BitSet blocked = new BitSet();
+
+	/**
+	 * The names of the Products that have changed since the view was last
+	 * brought up to date.
+	 */
+	private final Set<String> changedNames = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The current amount of the <code>Product</code> in each slot.
+	 */
+	private long[] currentAmounts = new long[ProductStockView.INITIAL_CAPACITY];
+
+	/**
+	 * <code>true</code> once the <code>ProductStockFile</code> has been read, as
+	 * it is only trusted on the first load.
+	 */
+	private boolean fileRead;
+
+	/**
+	 * The ID of the <code>Product</code> in each slot.
+	 */
+	private long[] IDs = new long[ProductStockView.INITIAL_CAPACITY];
+
+	/**
+	 * <code>true</code> from when the whole catalogue starts to be read, until
+	 * every Product may have changed, while changed names are recorded.
+	 */
+	private volatile boolean loaded;
+
+	/**
+	 * The minimum amount of the <code>Product</code> in each slot.
+	 */
+	private long[] minAmounts = new long[ProductStockView.INITIAL_CAPACITY];
+
+	/**
+	 * The interned name of the <code>Product</code> in each slot,
+	 * <code>null</code> once it is deleted.
+	 */
+	private String[] names = new String[ProductStockView.INITIAL_CAPACITY];
+
+	/**
+	 * The ProductRepository.
+	 */
+	@Autowired
+	private ProductRepository productRepository;
+
+	/**
+	 * The ProductStockFile, which every change is written through to.
+	 */
+	@Autowired
+	private ProductStockFile productStockFile;
+
+	/**
+	 * The number of slots left empty by deleted Products.
+	 */
+	private int removed;
+
+	/**
+	 * The number of slots in use, including those left empty.
+	 */
+	private int size;
+
+	/**
+	 * The slot of each <code>Product</code>, by name.
+	 */
+	private final Map<String, Integer> slots = new HashMap<>();
+
+	/**
+	 * The version of the <code>Product</code> in each slot.
+	 */
+	private long[] versions = new long[ProductStockView.INITIAL_CAPACITY];
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void allProductsChanged() {
+		this.loaded = false;
+		this.productStockFile.markStockChanged();
+	}
+
+	/**
+	 * Brings the view, and so the <code>ProductStockFile</code>, up to date and
+	 * checkpoints the file, every checkpoint interval and on shutdown, if the view
+	 * has been loaded. The file is only marked checkpointed if no change has been
+	 * seen since the view was brought up to date.
+	 */
+	@PreDestroy
+	@Scheduled(fixedDelayString = "${product.stock-file.checkpoint-interval:10000}")
+	public synchronized void checkpoint() {
+
+		if (this.loaded && this.productStockFile.isEnabled()) {
+			this.refresh();
+			this.productStockFile.checkpoint(() -> this.loaded && this.changedNames.isEmpty());
+		}
+	}
+
+	/**
+	 * Scans every <code>Product</code> for shortfalls, first reading any that have
+	 * changed, and passes each to the specified consumer. Nothing is allocated per
+	 * <code>Product</code>, so the consumer must not keep the view waiting or
+	 * change any Products itself.
+	 *
+	 * @param consumer - receives each shortfall, in slot order, which is ID order
+	 *                 apart from Products created since the catalogue was read
+	 * @return the number of shortfalls found
+	 */
+	public synchronized long forEachShortfall(final ShortfallConsumer consumer) {
+		Objects.requireNonNull(consumer);
+
+		this.refresh();
+
+		long count = 0;
+
+		for (int slot = this.blocked.nextClearBit(0); slot < this.size; slot = this.blocked.nextClearBit(slot + 1)) {
+			if (this.currentAmounts[slot] < this.minAmounts[slot]) {
+				consumer.accept(this.IDs[slot], this.names[slot], this.minAmounts[slot] - this.currentAmounts[slot]);
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Gets the Products that are currently short, first reading any that have
+	 * changed.
+	 *
+	 * @return the <code>ProductShortfall</code> of every Product that is currently
+	 *         short, in slot order
+	 */
+	public List<ProductShortfall> getProductShortfalls() {
+		final List<ProductShortfall> productShortfalls = new ArrayList<>();
+		this.forEachShortfall((ID, name, amount) -> productShortfalls.add(new ProductShortfall(ID, name, amount)));
+		return productShortfalls;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void productChanged(final String name) {
+		Objects.requireNonNull(name);
+
+		// Until the view is loaded, the whole catalogue is read when it is, so the
+		// names need not be kept...
+
+		if (this.loaded) {
+			this.changedNames.add(name);
+		}
+
+		// The name is recorded before the file is marked, so a checkpoint either
+		// sees the name or is followed by the mark...
+
+		this.productStockFile.markStockChanged();
+	}
+
+	/**
+	 * Gets the number of Products in the view, first reading any that have
+	 * changed.
+	 *
+	 * @return the number of Products
+	 */
+	public synchronized int size() {
+		this.refresh();
+		return this.size - this.removed;
+	}
+
+	/**
+	 * Loads the view as soon as the application is ready, once any Products have
+	 * been restored, if the <code>ProductStockFile</code> is kept.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(2)
+	public void warmUp() {
+
+		if (this.productStockFile.isEnabled()) {
+			this.size();
+		}
+	}
+
+	/**
+	 * Adds a <code>Product</code> in a new slot after every other slot, and writes
+	 * it through to the <code>ProductStockFile</code>.
+	 *
+	 * @param ID            - database primary key value of the <code>Product</code>
+	 * @param name          - name of the <code>Product</code>
+	 * @param blocked       - <code>true</code> if the <code>Product</code> is
+	 *                      blocked or missing a value
+	 * @param currentAmount - current amount of the <code>Product</code>
+	 * @param minAmount     - minimum amount of the <code>Product</code>
+	 * @param version       - version of the <code>Product</code>
+	 */
+	private void append(final long ID, final String name, final boolean blocked, final long currentAmount,
+			final long minAmount, final long version) {
+
+		this.place(ID, name, blocked, currentAmount, minAmount, version);
+		this.productStockFile.writeStock(this.size - 1, ID, name, blocked, currentAmount, minAmount, version);
+	}
+
+	/**
+	 * Works out the <code>ProductStockFingerprint</code> of the Products in the
+	 * view.
+	 *
+	 * @return the fingerprint
+	 */
+	private ProductStockFingerprint fingerprint() {
+		long maxID = 0;
+		long versionSum = 0;
+
+		for (int slot = 0; slot < this.size; slot++) {
+			if (this.names[slot] != null) {
+				maxID = Math.max(maxID, this.IDs[slot]);
+				versionSum += this.versions[slot];
+			}
+		}
+
+		return new ProductStockFingerprint((long) (this.size - this.removed), maxID, versionSum);
+	}
+
+	/**
+	 * Reads the whole catalogue into the view. Changes recorded before this starts
+	 * are covered by the read, while those recorded during it are read again next
+	 * time, as are all Products if every one may have changed during it.
+	 */
+	private void load() {
+		this.changedNames.clear();
+		this.loaded = true;
+
+		try {
+			this.readCatalogue();
+		} catch (final RuntimeException e) {
+			this.loaded = false;
+			throw e;
+		}
+	}
+
+	/**
+	 * Adds a <code>Product</code> in a new slot after every other slot, without
+	 * writing it to the <code>ProductStockFile</code>. A <code>null</code> name
+	 * adds an empty slot.
+	 *
+	 * @param ID            - database primary key value of the <code>Product</code>
+	 * @param name          - name of the <code>Product</code>, <code>null</code>
+	 *                      for an empty slot
+	 * @param blocked       - <code>true</code> if the <code>Product</code> is
+	 *                      blocked or missing a value
+	 * @param currentAmount - current amount of the <code>Product</code>
+	 * @param minAmount     - minimum amount of the <code>Product</code>
+	 * @param version       - version of the <code>Product</code>
+	 */
+	private void place(final long ID, final String name, final boolean blocked, final long currentAmount,
+			final long minAmount, final long version) {
+
+		if (this.size == this.IDs.length) {
+			final int capacity = this.size * 2;
+			this.currentAmounts = Arrays.copyOf(this.currentAmounts, capacity);
+			this.IDs = Arrays.copyOf(this.IDs, capacity);
+			this.minAmounts = Arrays.copyOf(this.minAmounts, capacity);
+			this.names = Arrays.copyOf(this.names, capacity);
+			this.versions = Arrays.copyOf(this.versions, capacity);
+		}
+
+		final int slot = this.size++;
+		this.IDs[slot] = ID;
+
+		if (name == null) {
+			this.blocked.set(slot);
+			this.names[slot] = null;
+			this.removed++;
+			return;
+		}
+
+		this.names[slot] = name.intern();
+		this.slots.put(this.names[slot], slot);
+		this.blocked.set(slot, blocked);
+		this.currentAmounts[slot] = currentAmount;
+		this.minAmounts[slot] = minAmount;
+		this.versions[slot] = version;
+	}
+
+	/**
+	 * Reads the stock levels of a chunk of changed Products, in place where the
+	 * <code>Product</code> in their slot is the same one, and otherwise in a new
+	 * slot, and empties the slots of those that no longer exist.
+	 *
+	 * @param changedNames - names of the changed Products
+	 */
+	private void read(final List<String> changedNames) {
+		final Set<String> missingNames = new HashSet<>(changedNames);
+
+		this.productRepository.forEachStockByNameIn(changedNames,
+				(ID, name, blocked, currentAmount, minAmount, version) -> {
+					missingNames.remove(name);
+					final Integer slot = this.slots.get(name);
+
+					if ((slot != null) && (this.IDs[slot] == ID)) {
+						this.set(slot, blocked, currentAmount, minAmount, version);
+					} else {
+						this.remove(name);
+						this.append(ID, name, blocked, currentAmount, minAmount, version);
+					}
+				});
+
+		missingNames.forEach(this::remove);
+	}
+
+	/**
+	 * Reads the whole catalogue into the view, from the
+	 * <code>ProductStockFile</code> the first time if it matches the database, and
+	 * otherwise from the database, rewriting the file.
+	 */
+	private void readCatalogue() {
+
+		if (!this.fileRead) {
+			this.fileRead = true;
+			this.reset();
+
+			if (this.productStockFile.readStock(this::place)) {
+				final ProductStockFingerprint fingerprint = this.productRepository.findStockFingerprint();
+
+				if (fingerprint.equals(this.fingerprint())) {
+					ProductStockView.LOGGER.info("Loaded {} products from the stock file", fingerprint.getCount());
+					return;
+				}
+
+				ProductStockView.LOGGER.info("The stock file does not match the database, so it is rewritten");
+			}
+		}
+
+		this.reset();
+		this.productStockFile.clearStock();
+
+		int read;
+
+		do {
+			final int before = this.size;
+			this.productRepository.forEachStockAfterID(this.size == 0 ? Long.MIN_VALUE : this.IDs[this.size - 1],
+					this.batchSize, this::append);
+			read = this.size - before;
+		} while (read == this.batchSize);
+	}
+
+	/**
+	 * Brings the view up to date, reading the whole catalogue if it has not been
+	 * read, or if half of the slots are empty, and otherwise only the Products
+	 * that have changed. Each name is removed from the changed names before it is
+	 * read, so a change recorded during the read is read again next time.
+	 */
+	private void refresh() {
+
+		if (!this.loaded) {
+			this.load();
+			return;
+		}
+
+		final List<String> changedNames = new ArrayList<>(this.batchSize);
+		final Iterator<String> changedNamesIterator = this.changedNames.iterator();
+
+		while (changedNamesIterator.hasNext()) {
+			changedNames.add(changedNamesIterator.next());
+			changedNamesIterator.remove();
+
+			if ((changedNames.size() == this.batchSize) || !changedNamesIterator.hasNext()) {
+				this.read(changedNames);
+				changedNames.clear();
+			}
+		}
+
+		if (this.removed > (this.size / 2)) {
+			this.load();
+		}
+	}
+
+	/**
+	 * Empties the slot of a <code>Product</code>, if it has one.
+	 *
+	 * @param name - name of the <code>Product</code>
+	 */
+	private void remove(final String name) {
+		final Integer slot = this.slots.remove(name);
+
+		if (slot != null) {
+			this.blocked.set(slot);
+			this.names[slot] = null;
+			this.removed++;
+			this.productStockFile.removeStock(slot);
+		}
+	}
+
+	/**
+	 * Empties every slot.
+	 */
+	private void reset() {
+		this.slots.clear();
+		this.blocked.clear();
+		Arrays.fill(this.names, 0, this.size, null);
+		this.removed = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Sets the stock levels held in a slot, and writes them through to the
+	 * <code>ProductStockFile</code>.
+	 *
+	 * @param slot          - the slot
+	 * @param blocked       - <code>true</code> if the <code>Product</code> is
+	 *                      blocked or missing a value
+	 * @param currentAmount - current amount of the <code>Product</code>
+	 * @param minAmount     - minimum amount of the <code>Product</code>
+	 * @param version       - version of the <code>Product</code>
+	 */
+	private void set(final int slot, final boolean blocked, final long currentAmount, final long minAmount,
+			final long version) {
+
+		this.blocked.set(slot, blocked);
+		this.currentAmounts[slot] = currentAmount;
+		this.minAmounts[slot] = minAmount;
+		this.versions[slot] = version;
+		this.productStockFile.writeStock(slot, this.IDs[slot], this.names[slot], blocked, currentAmount, minAmount,
+				version);
+	}
+}
@@ -0,0 +1,71 @@
+package product.service.impl;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times every call to a <code>ProductService</code> with the
+ * <code>product.service</code> timer.
+ * <P>
+ * Each call is tagged with the <code>method</code>, the <code>result</code>,
+ * either <code>success</code> or <code>error</code>, and the simple name of the
+ * <code>exception</code> thrown, or <code>none</code>. The count of each timer
+ * is the number of calls with that outcome, so for example the rate of
+ * <code>InvalidProductException</code> thrown by <code>setMinAmount</code> is
+ * its own series.
+ */
+@Aspect
+@Component
+public class ServiceTimingAspect {
+
+	/**
+	 * The name of the timer of every service call.
+	 */
+	static final String TIMER_NAME = "product.service";
+
+	/**
+	 * The registry the timers are registered with.
+	 */
+	private final MeterRegistry meterRegistry;
+
+	/**
+	 * Constructs a <code>ServiceTimingAspect</code>.
+	 *
+	 * @param meterRegistry - the registry the timers are registered with
+	 */
+	@Autowired
+	public ServiceTimingAspect(final MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * Times a service call, recording its outcome whether it returns or throws.
+	 *
+	 * @param joinPoint - the service call
+	 * @return the result of the call
+	 * @throws Throwable - anything thrown by the call
+	 */
+	@Around("execution(* product.service.api.ProductService+.*(..))")
+	public Object time(final ProceedingJoinPoint joinPoint) throws Throwable {
+
+		final Timer.Sample sample = Timer.start(this.meterRegistry);
+		String exception = "none";
+
+		try {
+			return joinPoint.proceed();
+		} catch (final Throwable e) {
+			exception = e.getClass().getSimpleName();
+			throw e;
+		} finally {
+			sample.stop(Timer.builder(ServiceTimingAspect.TIMER_NAME).tag("method", joinPoint.getSignature().getName())
+					.tag("result", "none".equals(exception) ? "success" : "error").tag("exception", exception)
+					.register(this.meterRegistry));
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package product.service.impl;
+
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import product.exception.SnapshotJobMissingException;
+import product.model.ProductPurchaseRequirementSnapshot;
+import product.model.SnapshotJob;
+
+/**
+ * Generates snapshots of <code>ProductPurchaseRequirement</code> instances in
+ * the background, one at a time, as <code>SnapshotJob</code> instances that
+ * are polled for their progress and result.
+ * <P>
+ * A request to start a snapshot while one is being generated joins that job, so
+ * retried or concurrent requests never scan the catalogue twice over. Once
+ * finished, the latest jobs are remembered so their result can still be
+ * polled, up to the number to retain.
+ */
+@Component
+public class SnapshotJobRunner {
+
+	/**
+	 * The Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotJobRunner.class);
+
+	/**
+	 * The Clock that job and snapshot times are read from.
+	 */
+	private final Clock clock;
+
+	/**
+	 * Runs each job.
+	 */
+	private final ExecutorService executorService;
+
+	/**
+	 * The job being run, <code>null</code> if none is.
+	 */
+	private SnapshotJob inFlightSnapshotJob;
+
+	/**
+	 * The ID of the last job started.
+	 */
+	private long lastID;
+
+	/**
+	 * The ProductPurchaseRequirementGenerator that each snapshot is generated by.
+	 */
+	private final ProductPurchaseRequirementGenerator productPurchaseRequirementGenerator;
+
+	/**
+	 * The latest jobs, by ID, oldest first.
+	 */
+	private final Map<Long, SnapshotJob> snapshotJobs;
+
+	/**
+	 * Constructs a <code>SnapshotJobRunner</code>.
+	 *
+	 * @param productPurchaseRequirementGenerator - the generator each snapshot is
+	 *                                            generated by
+	 * @param clock                               - the Clock job and snapshot
+	 *                                            times are read from
+	 * @param retainedJobs                        - the number of the latest jobs
+	 *                                            remembered
+	 */
+	@Autowired
+	public SnapshotJobRunner(final ProductPurchaseRequirementGenerator productPurchaseRequirementGenerator,
+			final Clock clock, @Value("${product.snapshot-jobs.retained:100}") final int retainedJobs) {
+
+		this.productPurchaseRequirementGenerator = Objects.requireNonNull(productPurchaseRequirementGenerator);
+		this.clock = Objects.requireNonNull(clock);
+		this.snapshotJobs = new LinkedHashMap<>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Long, SnapshotJob> eldest) {
+				return this.size() > retainedJobs;
+			}
+		};
+		this.executorService = Executors.newSingleThreadExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "snapshot-job");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Gets a job.
+	 *
+	 * @param ID - ID of the job
+	 * @return the job
+	 * @throws SnapshotJobMissingException if the job was never started, or has
+	 *                                     been forgotten
+	 */
+	public synchronized SnapshotJob get(final long ID) {
+		final SnapshotJob snapshotJob = this.snapshotJobs.get(ID);
+
+		if (snapshotJob == null) {
+			throw new SnapshotJobMissingException("Snapshot job " + ID + " does not exist");
+		}
+
+		return snapshotJob;
+	}
+
+	/**
+	 * Shuts down the thread that runs each job.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		this.executorService.shutdownNow();
+	}
+
+	/**
+	 * Starts generating a snapshot in the background, or joins the job already
+	 * generating one.
+	 *
+	 * @return the started or joined job
+	 */
+	public synchronized SnapshotJob start() {
+
+		if (this.inFlightSnapshotJob != null) {
+			this.inFlightSnapshotJob.join();
+			return this.inFlightSnapshotJob;
+		}
+
+		final SnapshotJob snapshotJob = new SnapshotJob(++this.lastID, this.clock.millis());
+		this.snapshotJobs.put(snapshotJob.getID(), snapshotJob);
+		this.inFlightSnapshotJob = snapshotJob;
+		this.executorService.execute(() -> this.run(snapshotJob));
+
+		return snapshotJob;
+	}
+
+	/**
+	 * Runs a job, only letting another be started once its result is recorded.
+	 *
+	 * @param snapshotJob - the job
+	 */
+	private void run(final SnapshotJob snapshotJob) {
+
+		try {
+			final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot = this.productPurchaseRequirementGenerator
+					.generateSnapshot(snapshotJob.getStartTime(), snapshotJob::record);
+
+			synchronized (this) {
+				snapshotJob.complete(productPurchaseRequirementSnapshot, this.clock.millis());
+				this.inFlightSnapshotJob = null;
+			}
+
+		} catch (final RuntimeException e) {
+			SnapshotJobRunner.LOGGER.error("Snapshot job {} failed", snapshotJob.getID(), e);
+
+			synchronized (this) {
+				snapshotJob.fail(e.getMessage(), this.clock.millis());
+				this.inFlightSnapshotJob = null;
+			}
+		}
+	}
+}
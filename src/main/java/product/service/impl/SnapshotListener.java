@@ -0,0 +1,34 @@
+package product.service.impl;
+
+import product.model.ProductPurchaseRequirementSnapshot;
+
+/**
+ * Notified by the <code>ProductPurchaseRequirementGenerator</code> as each
+ * snapshot is generated, whoever started it, so that anything that depends on
+ * which changes to <code>Product</code> instances the latest snapshot covers
+ * can be kept up to date.
+ */
+public interface SnapshotListener {
+
+	/**
+	 * Called once a snapshot has been completed.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot
+	 */
+	void snapshotCompleted(ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot);
+
+	/**
+	 * Called once a snapshot has failed.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot
+	 */
+	void snapshotFailed(ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot);
+
+	/**
+	 * Called when a snapshot is started, before any <code>Product</code> is read,
+	 * so that every change already written is covered by it.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot
+	 */
+	void snapshotStarted(ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot);
+}
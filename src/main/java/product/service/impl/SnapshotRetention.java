@@ -0,0 +1,320 @@
+package product.service.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import product.model.ProductPurchaseRequirement;
+import product.model.ProductPurchaseRequirementSnapshot;
+import product.model.RetentionReport;
+import product.repository.ProductPurchaseRequirementRepository;
+import product.repository.ProductPurchaseRequirementSnapshotRepository;
+
+/**
+ * Purges historical <code>ProductPurchaseRequirementSnapshot</code> instances,
+ * along with their <code>ProductPurchaseRequirement</code> rows, on a schedule.
+ * <P>
+ * A snapshot is kept while it is one of the latest complete snapshots to keep,
+ * or is younger than the number of days to keep, so the latest complete
+ * snapshot is never purged. The rows of a purged snapshot are deleted a batch
+ * at a time, each batch in its own short transaction, and then its header is
+ * deleted, so a purge interrupted part way through carries on with the next
+ * run.
+ * <P>
+ * If an archive directory is set, each snapshot is first written there as
+ * gzipped newline delimited JSON, to a temporary file that is only moved into
+ * place once complete. A snapshot that already has an archive file is not
+ * archived again.
+ */
+@Component
+public class SnapshotRetention {
+
+	/**
+	 * Mixed into <code>ProductPurchaseRequirement</code> when it is archived, so
+	 * that the identifiers left out of the API are kept in the archive.
+	 */
+	private abstract static class ArchivedProductPurchaseRequirement {
+
+		/**
+		 * Gets the ID of the <code>ProductPurchaseRequirement</code>.
+		 *
+		 * @return the ID of the <code>ProductPurchaseRequirement</code>
+		 */
+		@JsonIgnore(false)
+		public abstract Long getID();
+
+		/**
+		 * Gets the ID of the snapshot the <code>ProductPurchaseRequirement</code>
+		 * belongs to.
+		 *
+		 * @return the ID of the snapshot
+		 */
+		@JsonIgnore(false)
+		public abstract Long getSnapshotID();
+
+		/**
+		 * Gets the version of the <code>ProductPurchaseRequirement</code>.
+		 *
+		 * @return the version of the <code>ProductPurchaseRequirement</code>
+		 */
+		@JsonIgnore(false)
+		public abstract Long getVersion();
+	}
+
+	/**
+	 * The Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotRetention.class);
+
+	/**
+	 * The directory purged snapshots are archived to, empty to not archive them.
+	 */
+	@Value("${product.retention.archive-directory:}")
+	private String archiveDirectory;
+
+	/**
+	 * The maximum number of <code>ProductPurchaseRequirement</code> rows deleted
+	 * per transaction.
+	 */
+	@Value("${product.retention.batch-size:10000}")
+	private int batchSize;
+
+	/**
+	 * The Clock that the age of snapshots is measured by.
+	 */
+	@Autowired
+	private Clock clock;
+
+	/**
+	 * The EntityManager.
+	 */
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * The number of days of snapshots to keep.
+	 */
+	@Value("${product.retention.keep-days:30}")
+	private int keepDays;
+
+	/**
+	 * The number of latest complete snapshots to keep, at least one.
+	 */
+	@Value("${product.retention.keep-snapshots:100}")
+	private int keepSnapshots;
+
+	/**
+	 * The report of the last run, <code>null</code> if there has not been one.
+	 */
+	private volatile RetentionReport lastRetentionReport;
+
+	/**
+	 * Writes each line of an archive, without indentation.
+	 */
+	private final ObjectWriter ndjsonWriter;
+
+	/**
+	 * The ProductPurchaseRequirementRepository.
+	 */
+	@Autowired
+	private ProductPurchaseRequirementRepository productPurchaseRequirementRepository;
+
+	/**
+	 * The ProductPurchaseRequirementSnapshotRepository.
+	 */
+	@Autowired
+	private ProductPurchaseRequirementSnapshotRepository productPurchaseRequirementSnapshotRepository;
+
+	/**
+	 * The PlatformTransactionManager, used to stream a snapshot into its archive.
+	 */
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	/**
+	 * Constructs a <code>SnapshotRetention</code>.
+	 *
+	 * @param objectMapper - the application ObjectMapper
+	 */
+	@Autowired
+	public SnapshotRetention(final ObjectMapper objectMapper) {
+		this.ndjsonWriter = objectMapper.copy()
+				.addMixIn(ProductPurchaseRequirement.class, ArchivedProductPurchaseRequirement.class).writer()
+				.without(SerializationFeature.INDENT_OUTPUT);
+	}
+
+	/**
+	 * Gets the report of the last run.
+	 *
+	 * @return the report of the last run, or <code>null</code> if there has not
+	 *         been one
+	 */
+	public RetentionReport getLastRetentionReport() {
+		return this.lastRetentionReport;
+	}
+
+	/**
+	 * Purges every snapshot that is no longer kept.
+	 *
+	 * @return the report of the run
+	 */
+	public synchronized RetentionReport purge() {
+
+		final long time = this.clock.millis();
+		final List<RetentionReport.PurgedSnapshot> purgedSnapshots = new ArrayList<>();
+
+		final List<Long> keptIDs = this.productPurchaseRequirementSnapshotRepository
+				.findCompleteIDs(PageRequest.of(0, Math.max(1, this.keepSnapshots)));
+
+		if (keptIDs.size() == Math.max(1, this.keepSnapshots)) {
+
+			final long keptTime = time - Duration.ofDays(this.keepDays).toMillis();
+
+			for (final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot : this.productPurchaseRequirementSnapshotRepository
+					.findOlderThan(keptTime, keptIDs.get(keptIDs.size() - 1))) {
+				purgedSnapshots.add(this.purge(productPurchaseRequirementSnapshot));
+			}
+		}
+
+		final RetentionReport retentionReport = new RetentionReport(time, this.clock.millis() - time,
+				purgedSnapshots);
+		this.lastRetentionReport = retentionReport;
+
+		SnapshotRetention.LOGGER.info("Purged {} product purchase requirement snapshots and {} rows in {} ms",
+				purgedSnapshots.size(), retentionReport.getRowsDeleted(), retentionReport.getDuration());
+
+		return retentionReport;
+	}
+
+	/**
+	 * Purges every snapshot that is no longer kept, on the retention schedule,
+	 * logging rather than throwing any failure.
+	 */
+	@Scheduled(cron = "${product.retention.cron:0 0 3 * * *}")
+	public void purgeOnSchedule() {
+		try {
+			this.purge();
+		} catch (final RuntimeException e) {
+			SnapshotRetention.LOGGER.error("Could not purge product purchase requirement snapshots", e);
+		}
+	}
+
+	/**
+	 * Writes a snapshot to its archive file, unless it already has one.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot to archive
+	 * @return the archive file
+	 */
+	private Path archive(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot) {
+
+		final String fileName = "product-purchase-requirements-" + productPurchaseRequirementSnapshot.getID() + "-"
+				+ productPurchaseRequirementSnapshot.getTime() + ".ndjson.gz";
+
+		try {
+			final Path directory = Files.createDirectories(Paths.get(this.archiveDirectory));
+			final Path file = directory.resolve(fileName);
+
+			if (Files.exists(file)) {
+				return file;
+			}
+
+			final Path temporaryFile = directory.resolve(fileName + ".tmp");
+
+			try (OutputStream outputStream = new GZIPOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+				this.write(productPurchaseRequirementSnapshot, outputStream);
+			}
+
+			return Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Archives, if configured, and then deletes a single snapshot.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot to purge
+	 * @return the purged snapshot
+	 */
+	private RetentionReport.PurgedSnapshot purge(
+			final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot) {
+
+		final Path archive = this.archiveDirectory.isEmpty() ? null : this.archive(productPurchaseRequirementSnapshot);
+
+		long rowsDeleted = 0;
+		int batchRowsDeleted;
+
+		do {
+			batchRowsDeleted = this.productPurchaseRequirementRepository
+					.deleteBySnapshotID(productPurchaseRequirementSnapshot.getID(), this.batchSize);
+			rowsDeleted += batchRowsDeleted;
+		} while (batchRowsDeleted == this.batchSize);
+
+		this.productPurchaseRequirementSnapshotRepository.deleteById(productPurchaseRequirementSnapshot.getID());
+
+		return new RetentionReport.PurgedSnapshot(productPurchaseRequirementSnapshot, rowsDeleted,
+				archive == null ? null : archive.toString());
+	}
+
+	/**
+	 * Streams the rows of a snapshot to an output stream as newline delimited
+	 * JSON, without holding them in memory.
+	 *
+	 * @param productPurchaseRequirementSnapshot - the snapshot to write
+	 * @param outputStream                       - the output stream
+	 */
+	private void write(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot,
+			final OutputStream outputStream) {
+
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+		transactionTemplate.setReadOnly(true);
+		transactionTemplate.execute(status -> {
+			try (Stream<ProductPurchaseRequirement> productPurchaseRequirements = this.productPurchaseRequirementRepository
+					.streamBySnapshotID(productPurchaseRequirementSnapshot.getID())) {
+
+				productPurchaseRequirements.forEach(productPurchaseRequirement -> {
+					try {
+						outputStream.write(this.ndjsonWriter.writeValueAsBytes(productPurchaseRequirement));
+						outputStream.write('\n');
+					} catch (final IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					this.entityManager.detach(productPurchaseRequirement);
+				});
+			}
+			return null;
+		});
+	}
+}
@@ -0,0 +1,316 @@
+package product.service.impl;
+
+import java.time.Clock;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import product.model.ProductPurchaseRequirementSnapshot;
+import product.model.SnapshotJob;
+
+/**
+ * Generates snapshots of <code>ProductPurchaseRequirement</code> instances on a
+ * schedule, so that the latest snapshot is kept fresh without clients having to
+ * generate them.
+ * <P>
+ * A snapshot is due every interval, or at the times of a cron expression if one
+ * is set, in the default time zone as with <code>@Scheduled</code>. A due
+ * snapshot is skipped if, as a <code>ProductChangeListener</code>, no change to
+ * a <code>Product</code> has been seen since the last one that covers them. When
+ * the number of changes reaches the churn threshold, the next snapshot is
+ * brought forward to as soon as the minimum interval has passed since the last
+ * one, so the cadence tightens while the catalogue is busy.
+ * <P>
+ * Snapshots are started through the <code>SnapshotJobRunner</code>, so a
+ * scheduled snapshot joins a job already started by a client, and vice versa.
+ * As a <code>SnapshotListener</code>, the changes counted when any snapshot is
+ * started, however it was started, are taken as covered once it completes, so
+ * a snapshot generated by a client also puts off the next scheduled one, while
+ * a failed snapshot covers nothing. Changes made before startup are not known,
+ * so Products are taken to have changed until the first snapshot completes.
+ */
+@Component
+public class SnapshotScheduler implements ProductChangeListener, SnapshotListener {
+
+	/**
+	 * The Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotScheduler.class);
+
+	/**
+	 * The number of changes to Products counted since startup, starting from one
+	 * for those made before it.
+	 */
+	private final AtomicLong changes = new AtomicLong(1);
+
+	/**
+	 * The number of changes counted when the latest completed snapshot was
+	 * started, all of which it covers.
+	 */
+	private final AtomicLong coveredChanges = new AtomicLong();
+
+	/**
+	 * The number of changes not yet covered by a snapshot that brings the next one
+	 * forward.
+	 */
+	private final long churnThreshold;
+
+	/**
+	 * The Clock that the schedule is kept by.
+	 */
+	private final Clock clock;
+
+	/**
+	 * The cron expression snapshots are due at, <code>null</code> if they are due
+	 * every interval.
+	 */
+	private final CronSequenceGenerator cronSequenceGenerator;
+
+	/**
+	 * The milliseconds between snapshots, when there is no cron expression.
+	 */
+	private final long interval;
+
+	/**
+	 * The last job started or joined, <code>null</code> if none has been.
+	 */
+	private SnapshotJob lastJob;
+
+	/**
+	 * The time that the last snapshot was started or skipped.
+	 */
+	private long lastRunTime;
+
+	/**
+	 * The fewest milliseconds between snapshots brought forward by churn.
+	 */
+	private final long minInterval;
+
+	/**
+	 * The time that the next snapshot is due, unless brought forward by churn.
+	 */
+	private long nextRunTime;
+
+	/**
+	 * Checks if a snapshot is due, <code>null</code> if not enabled.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Counts due snapshots that were skipped as no Product had changed.
+	 */
+	private final Counter skippedCounter;
+
+	/**
+	 * The SnapshotJobRunner that scheduled snapshots are started through.
+	 */
+	private final SnapshotJobRunner snapshotJobRunner;
+
+	/**
+	 * The number of changes counted when each snapshot still being generated was
+	 * started, by the ID of the snapshot.
+	 */
+	private final Map<Long, Long> startedChanges = new ConcurrentHashMap<>();
+
+	/**
+	 * Counts scheduled snapshots that were started, or joined a job already
+	 * started.
+	 */
+	private final Counter startedCounter;
+
+	/**
+	 * Constructs a <code>SnapshotScheduler</code>.
+	 *
+	 * @param snapshotJobRunner - the SnapshotJobRunner that scheduled snapshots
+	 *                          are started through
+	 * @param clock             - the Clock that the schedule is kept by
+	 * @param meterRegistry     - registry the scheduler metrics are bound to
+	 * @param cron              - cron expression snapshots are due at, - to use
+	 *                          the interval
+	 * @param interval          - milliseconds between snapshots when there is no
+	 *                          cron expression, 0 to disable unless there is one
+	 * @param minInterval       - fewest milliseconds between snapshots brought
+	 *                          forward by churn
+	 * @param churnThreshold    - number of changes that brings the next snapshot
+	 *                          forward
+	 * @param checkInterval     - milliseconds between checks if a snapshot is due
+	 */
+	@Autowired
+	public SnapshotScheduler(final SnapshotJobRunner snapshotJobRunner, final Clock clock,
+			final MeterRegistry meterRegistry, @Value("${product.snapshot-schedule.cron:-}") final String cron,
+			@Value("${product.snapshot-schedule.interval:0}") final long interval,
+			@Value("${product.snapshot-schedule.min-interval:60000}") final long minInterval,
+			@Value("${product.snapshot-schedule.churn-threshold:1000}") final long churnThreshold,
+			@Value("${product.snapshot-schedule.check-interval:1000}") final long checkInterval) {
+
+		this.snapshotJobRunner = Objects.requireNonNull(snapshotJobRunner);
+		this.clock = Objects.requireNonNull(clock);
+		this.cronSequenceGenerator = "-".equals(cron) ? null : new CronSequenceGenerator(cron, TimeZone.getDefault());
+		this.interval = interval;
+		this.minInterval = minInterval;
+		this.churnThreshold = churnThreshold;
+
+		this.skippedCounter = meterRegistry.counter("product.snapshot.schedule.skipped");
+		this.startedCounter = meterRegistry.counter("product.snapshot.schedule.started");
+
+		this.lastRunTime = clock.millis();
+		this.nextRunTime = this.next(this.lastRunTime);
+
+		if (this.cronSequenceGenerator != null || interval > 0) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "snapshot-scheduler");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.scheduler.scheduleWithFixedDelay(this::checkQuietly, checkInterval, checkInterval,
+					TimeUnit.MILLISECONDS);
+		} else {
+			this.scheduler = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void allProductsChanged() {
+		this.changes.accumulateAndGet(this.coveredChanges.get() + this.churnThreshold, Math::max);
+	}
+
+	/**
+	 * Starts a snapshot if one is due, or has been brought forward by churn,
+	 * unless no Product has changed since the last one that covers them, or the
+	 * last one started is still being generated.
+	 *
+	 * @return the started or joined job, <code>null</code> if no snapshot was
+	 *         started
+	 */
+	public synchronized SnapshotJob check() {
+		final long changed = this.changes.get() - this.coveredChanges.get();
+		final long now = this.clock.millis();
+
+		final boolean due = now >= this.nextRunTime;
+		final boolean churned = changed >= this.churnThreshold && now >= this.lastRunTime + this.minInterval;
+
+		if (!due && !churned) {
+			return null;
+		}
+
+		this.lastRunTime = now;
+		this.nextRunTime = this.next(now);
+
+		if (changed <= 0) {
+			this.skippedCounter.increment();
+			SnapshotScheduler.LOGGER.debug("Scheduled snapshot skipped as no Product has changed");
+			return null;
+		}
+
+		if (this.lastJob != null && this.lastJob.getStatus() == ProductPurchaseRequirementSnapshot.Status.GENERATING) {
+			SnapshotScheduler.LOGGER.debug("Scheduled snapshot skipped as job {} is still generating",
+					this.lastJob.getID());
+			return null;
+		}
+
+		final SnapshotJob snapshotJob = this.snapshotJobRunner.start();
+		this.startedCounter.increment();
+		this.lastJob = snapshotJob;
+
+		SnapshotScheduler.LOGGER.info("Scheduled snapshot job {} started after {} changes{}", snapshotJob.getID(),
+				changed, due ? "" : ", brought forward by churn");
+
+		return snapshotJob;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void productChanged(final String name) {
+		Objects.requireNonNull(name);
+		this.changes.incrementAndGet();
+	}
+
+	/**
+	 * Stops checking if a snapshot is due.
+	 */
+	@PreDestroy
+	public void shutdown() {
+
+		if (this.scheduler != null) {
+			this.scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void snapshotCompleted(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot) {
+		final Long started = this.startedChanges.remove(productPurchaseRequirementSnapshot.getID());
+
+		if (started != null) {
+			this.coveredChanges.accumulateAndGet(started, Math::max);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void snapshotFailed(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot) {
+		this.startedChanges.remove(productPurchaseRequirementSnapshot.getID());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void snapshotStarted(final ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot) {
+		this.startedChanges.put(productPurchaseRequirementSnapshot.getID(), this.changes.get());
+	}
+
+	/**
+	 * Checks if a snapshot is due, logging rather than throwing any failure so
+	 * that later checks are still run.
+	 */
+	private void checkQuietly() {
+
+		try {
+			this.check();
+		} catch (final RuntimeException e) {
+			SnapshotScheduler.LOGGER.error("Scheduled snapshot failed to start", e);
+		}
+	}
+
+	/**
+	 * Gets the time that the snapshot after one at the specified time is due.
+	 *
+	 * @param time - time of the snapshot
+	 * @return the time that the next is due
+	 */
+	private long next(final long time) {
+
+		if (this.cronSequenceGenerator != null) {
+			return this.cronSequenceGenerator.next(new Date(time)).getTime();
+		}
+
+		return this.interval > 0 ? time + this.interval : Long.MAX_VALUE;
+	}
+}
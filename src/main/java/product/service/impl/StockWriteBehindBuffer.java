@@ -0,0 +1,380 @@
+package product.service.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import product.model.ProductUpdate;
+import product.model.ProductUpdateResult;
+
+/**
+ * An optional write-behind buffer for changes to the current amount of
+ * <code>Product</code> instances, for bursts of stock changes to the same
+ * <code>Product</code>, such as from tablet scanners.
+ * <P>
+ * Pending changes are held per <code>Product</code> name and coalesced, so an
+ * absolute amount replaces whatever was pending and deltas are summed, either
+ * on their own or onto a pending absolute amount. They are flushed through the
+ * <code>ProductBatchUpdater</code> every flush interval, as soon as the number
+ * of pending <code>Product</code> instances reaches the flush size, and on
+ * shutdown.
+ * <P>
+ * As a buffered change is not applied straight away, a change to a
+ * <code>Product</code> that does not exist is only detected, and logged, when
+ * it is flushed. Such changes, and invalid ones, are dropped and counted, while
+ * changes whose chunk failed are merged back into the pending changes to be
+ * tried again by the next flush.
+ */
+@Component
+public class StockWriteBehindBuffer {
+
+	/**
+	 * A coalesced, pending change to the current amount of a
+	 * <code>Product</code>.
+	 */
+	private static final class PendingChange {
+
+		/**
+		 * The absolute amount to set, or <code>null</code> if only a delta is
+		 * pending.
+		 */
+		private final Long amount;
+
+		/**
+		 * The delta to add, when no absolute amount is pending.
+		 */
+		private final long delta;
+
+		/**
+		 * Constructs a <code>PendingChange</code>.
+		 *
+		 * @param amount - absolute amount to set, or <code>null</code>
+		 * @param delta  - delta to add, when there is no absolute amount
+		 */
+		private PendingChange(final Long amount, final long delta) {
+			this.amount = amount;
+			this.delta = delta;
+		}
+
+		/**
+		 * Coalesces a further delta onto this pending change.
+		 *
+		 * @param delta - the further delta
+		 * @return the coalesced pending change
+		 */
+		private PendingChange plus(final long delta) {
+			return this.amount == null ? new PendingChange(null, this.delta + delta)
+					: new PendingChange(this.amount + delta, 0);
+		}
+
+		/**
+		 * Converts this pending change to the <code>ProductUpdate</code> that applies
+		 * it.
+		 *
+		 * @param name - name of the <code>Product</code>
+		 * @return the <code>ProductUpdate</code>
+		 */
+		private ProductUpdate toProductUpdate(final String name) {
+			return this.amount == null
+					? new ProductUpdate(ProductUpdate.Operation.ADJUST_CURRENT_AMOUNT, name, this.delta)
+					: new ProductUpdate(ProductUpdate.Operation.SET_CURRENT_AMOUNT, name, this.amount);
+		}
+	}
+
+	/**
+	 * The Logger.
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(StockWriteBehindBuffer.class);
+
+	/**
+	 * Counts changes that were coalesced into an already pending change.
+	 */
+	private final Counter coalescedCounter;
+
+	/**
+	 * Counts flushed changes that were dropped without being applied.
+	 */
+	private final Counter droppedCounter;
+
+	/**
+	 * <code>true</code> if changes are buffered, otherwise this buffer is unused.
+	 */
+	private final boolean enabled;
+
+	/**
+	 * <code>true</code> while a flush triggered by the flush size is queued.
+	 */
+	private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+	/**
+	 * The number of pending <code>Product</code> instances that triggers a flush.
+	 */
+	private final int flushSize;
+
+	/**
+	 * Times each flush.
+	 */
+	private final Timer flushTimer;
+
+	/**
+	 * The pending changes by <code>Product</code> name.
+	 */
+	private final Map<String, PendingChange> pendingChanges = new ConcurrentHashMap<>();
+
+	/**
+	 * The ProductBatchUpdater that pending changes are flushed through.
+	 */
+	private final ProductBatchUpdater productBatchUpdater;
+
+	/**
+	 * Counts flushed changes that failed and were merged back into the pending
+	 * changes.
+	 */
+	private final Counter requeuedCounter;
+
+	/**
+	 * Runs the periodic and size triggered flushes, <code>null</code> if not
+	 * enabled.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Constructs a <code>StockWriteBehindBuffer</code>.
+	 *
+	 * @param productBatchUpdater - the ProductBatchUpdater that pending changes are
+	 *                            flushed through
+	 * @param meterRegistry       - registry the buffer metrics are bound to
+	 * @param enabled             - <code>true</code> if changes are buffered
+	 * @param flushInterval       - milliseconds between periodic flushes
+	 * @param flushSize           - number of pending <code>Product</code>
+	 *                            instances that triggers a flush
+	 */
+	@Autowired
+	public StockWriteBehindBuffer(final ProductBatchUpdater productBatchUpdater, final MeterRegistry meterRegistry,
+			@Value("${product.write-behind.enabled:false}") final boolean enabled,
+			@Value("${product.write-behind.flush-interval:100}") final long flushInterval,
+			@Value("${product.write-behind.flush-size:1000}") final int flushSize) {
+
+		this.productBatchUpdater = productBatchUpdater;
+		this.enabled = enabled;
+		this.flushSize = flushSize;
+
+		meterRegistry.gauge("product.writebehind.pending", this.pendingChanges, Map::size);
+		this.coalescedCounter = meterRegistry.counter("product.writebehind.coalesced");
+		this.droppedCounter = meterRegistry.counter("product.writebehind.dropped");
+		this.requeuedCounter = meterRegistry.counter("product.writebehind.requeued");
+		this.flushTimer = meterRegistry.timer("product.writebehind.flush");
+
+		if (enabled) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "stock-write-behind");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.scheduler.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval,
+					TimeUnit.MILLISECONDS);
+		} else {
+			this.scheduler = null;
+		}
+	}
+
+	/**
+	 * Buffers a delta to add to the current amount of a <code>Product</code>.
+	 *
+	 * @param name  - name of the <code>Product</code>
+	 * @param delta - amount to add to the current amount, negative to subtract
+	 */
+	public void adjustCurrentAmount(final String name, final long delta) {
+		Objects.requireNonNull(name);
+
+		this.pendingChanges.compute(name, (key, pendingChange) -> {
+			if (pendingChange == null) {
+				return new PendingChange(null, delta);
+			}
+			this.coalescedCounter.increment();
+			return pendingChange.plus(delta);
+		});
+
+		this.flushIfFull();
+	}
+
+	/**
+	 * Flushes every pending change.
+	 */
+	public synchronized void flush() {
+
+		if (this.pendingChanges.isEmpty()) {
+			return;
+		}
+
+		final Map<String, PendingChange> flushedChanges = new LinkedHashMap<>(this.pendingChanges.size());
+
+		for (final String name : this.pendingChanges.keySet()) {
+			final PendingChange pendingChange = this.pendingChanges.remove(name);
+			if (pendingChange != null) {
+				flushedChanges.put(name, pendingChange);
+			}
+		}
+
+		this.apply(flushedChanges, true);
+	}
+
+	/**
+	 * Flushes the pending change of a single <code>Product</code>, if there is
+	 * one, so that a following change to the <code>Product</code> is applied after
+	 * it. This waits for a flush of every pending change that is being applied, as
+	 * it may hold a change to the <code>Product</code>. A change that fails is
+	 * dropped rather than tried again, as it would then be applied after the
+	 * following change.
+	 *
+	 * @param name - name of the <code>Product</code>
+	 */
+	public synchronized void flush(final String name) {
+		Objects.requireNonNull(name);
+
+		final PendingChange pendingChange = this.pendingChanges.remove(name);
+
+		if (pendingChange != null) {
+			this.apply(Map.of(name, pendingChange), false);
+		}
+	}
+
+	/**
+	 * Gets if changes are buffered.
+	 *
+	 * @return <code>true</code> if changes are buffered, <code>false</code> if they
+	 *         should be applied directly
+	 */
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * Buffers an absolute current amount of a <code>Product</code>, replacing any
+	 * pending change.
+	 *
+	 * @param name   - name of the <code>Product</code>
+	 * @param amount - amount of the <code>Product</code> in stock
+	 */
+	public void setCurrentAmount(final String name, final long amount) {
+		Objects.requireNonNull(name);
+
+		if (this.pendingChanges.put(name, new PendingChange(amount, 0)) != null) {
+			this.coalescedCounter.increment();
+		}
+
+		this.flushIfFull();
+	}
+
+	/**
+	 * Stops the periodic flush and flushes every pending change.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		if (this.scheduler != null) {
+			this.scheduler.shutdown();
+		}
+		this.flush();
+	}
+
+	/**
+	 * Applies flushed changes and logs any that could not be applied. Those whose
+	 * chunk failed are merged back into the pending changes if requeued, and the
+	 * rest are dropped.
+	 *
+	 * @param flushedChanges - the changes to apply, by <code>Product</code> name
+	 * @param requeue        - <code>true</code> to merge failed changes back into
+	 *                       the pending changes
+	 */
+	private void apply(final Map<String, PendingChange> flushedChanges, final boolean requeue) {
+
+		final List<ProductUpdate> productUpdates = new ArrayList<>(flushedChanges.size());
+		flushedChanges.forEach((name, pendingChange) -> productUpdates.add(pendingChange.toProductUpdate(name)));
+
+		final List<ProductUpdateResult> productUpdateResults;
+
+		try {
+			productUpdateResults = this.flushTimer.record(() -> this.productBatchUpdater.apply(productUpdates));
+		} catch (final RuntimeException e) {
+			flushedChanges.forEach((name, pendingChange) -> this.notApplied(name, pendingChange, requeue));
+			throw e;
+		}
+
+		for (final ProductUpdateResult productUpdateResult : productUpdateResults) {
+			if (productUpdateResult.getStatus() != ProductUpdateResult.Status.APPLIED) {
+				StockWriteBehindBuffer.LOGGER.warn("Buffered {} of product {} was not applied: {} {}",
+						productUpdateResult.getOperation(), productUpdateResult.getName(),
+						productUpdateResult.getStatus(), productUpdateResult.getMessage());
+
+				this.notApplied(productUpdateResult.getName(), flushedChanges.get(productUpdateResult.getName()),
+						requeue && (productUpdateResult.getStatus() == ProductUpdateResult.Status.FAILED));
+			}
+		}
+	}
+
+	/**
+	 * Queues a flush if the number of pending <code>Product</code> instances has
+	 * reached the flush size and one is not already queued.
+	 */
+	private void flushIfFull() {
+		if ((this.scheduler != null) && (this.pendingChanges.size() >= this.flushSize)
+				&& this.flushQueued.compareAndSet(false, true)) {
+			this.scheduler.execute(() -> {
+				this.flushQueued.set(false);
+				this.flushQuietly();
+			});
+		}
+	}
+
+	/**
+	 * Flushes every pending change, logging rather than throwing any failure so
+	 * that periodic flushes carry on.
+	 */
+	private void flushQuietly() {
+		try {
+			this.flush();
+		} catch (final RuntimeException e) {
+			StockWriteBehindBuffer.LOGGER.error("Could not flush buffered stock changes", e);
+		}
+	}
+
+	/**
+	 * Handles a flushed change that was not applied, either merging it back into
+	 * the pending changes, before any change made since it was flushed, or
+	 * dropping it.
+	 *
+	 * @param name          - name of the <code>Product</code>
+	 * @param pendingChange - the change that was not applied
+	 * @param requeue       - <code>true</code> to merge it back into the pending
+	 *                      changes
+	 */
+	private void notApplied(final String name, final PendingChange pendingChange, final boolean requeue) {
+
+		if (requeue) {
+			this.pendingChanges.merge(name, pendingChange,
+					(newerChange, failedChange) -> newerChange.amount != null ? newerChange
+							: failedChange.plus(newerChange.delta));
+			this.requeuedCounter.increment();
+		} else {
+			this.droppedCounter.increment();
+		}
+	}
+}
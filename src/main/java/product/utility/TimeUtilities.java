@@ -1,47 +1,37 @@
 package product.utility;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.Objects;
 
 /**
  * A utility for formatting the Date and Time.
+ * <P>
+ * The formatters are immutable <code>DateTimeFormatter</code> instances, so
+ * they are safely shared between threads, and format in the default time zone
+ * of the JVM.
  */
 public class TimeUtilities {
 
 	/**
 	 * The Date format used in formatted Dates.
 	 */
-	private static final SimpleDateFormat dateFormatter = new SimpleDateFormat("dd/MM/yyyy");
+	private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy")
+			.withZone(ZoneId.systemDefault());
 
 	/**
 	 * The Date Time format used in formatted Dates.
 	 */
-	private static final SimpleDateFormat dateTimeFormatter = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
+	private static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")
+			.withZone(ZoneId.systemDefault());
 
 	/**
-	 * The Date format used in formatted Dates.
-	 */
-	private static final SimpleDateFormat monthYearFormatter = new SimpleDateFormat("MMM-YY");
-
-	/**
-	 * Returns the current Date.
-	 *
-	 * @return the current Date
-	 */
-	public static Date getCurrentDate() {
-		return TimeUtilities.getDateFromTime(TimeUtilities.getCurrentTime());
-	}
-
-	/**
-	 * Returns the current time as UTC milliseconds from the epoch.
-	 *
-	 * @return long of current time
+	 * The Month Year format used in formatted Dates.
 	 */
-	public static long getCurrentTime() {
-		return Calendar.getInstance().getTimeInMillis();
-	}
+	private static final DateTimeFormatter monthYearFormatter = DateTimeFormatter.ofPattern("MMM-yy")
+			.withZone(ZoneId.systemDefault());
 
 	/**
 	 * Returns a Date from given long of UTC milliseconds from the epoch.
@@ -50,7 +40,6 @@ public class TimeUtilities {
 	 * @return Date of given time from given UTC milliseconds from the epoch
 	 */
 	public static Date getDateFromTime(final long epochTime) {
-		Objects.requireNonNull(epochTime);
 		return new Date(epochTime);
 	}
 
@@ -62,7 +51,7 @@ public class TimeUtilities {
 	 */
 	public static Date getDateFromTime(final Long epochTime) {
 		Objects.requireNonNull(epochTime);
-		return TimeUtilities.getDateFromTime(epochTime);
+		return TimeUtilities.getDateFromTime(epochTime.longValue());
 	}
 
 	/**
@@ -73,8 +62,7 @@ public class TimeUtilities {
 	 * @return String of given date from given UTC milliseconds from the epoch
 	 */
 	public static String getFormattedDateFromTime(final long epochTime) {
-		Objects.requireNonNull(epochTime);
-		return TimeUtilities.dateFormatter.format(new Date(epochTime));
+		return TimeUtilities.dateFormatter.format(Instant.ofEpochMilli(epochTime));
 	}
 
 	/**
@@ -86,8 +74,7 @@ public class TimeUtilities {
 	 *         epoch
 	 */
 	public static String getFormattedDateTimeFromTime(final long epochTime) {
-		Objects.requireNonNull(epochTime);
-		return TimeUtilities.dateTimeFormatter.format(new Date(epochTime));
+		return TimeUtilities.dateTimeFormatter.format(Instant.ofEpochMilli(epochTime));
 	}
 
 	/**
@@ -98,12 +85,11 @@ public class TimeUtilities {
 	 * @return String of given month year from given UTC milliseconds from the epoch
 	 */
 	public static String getFormattedMonthYearFromTime(final long epochTime) {
-		Objects.requireNonNull(epochTime);
-		return TimeUtilities.monthYearFormatter.format(new Date(epochTime));
+		return TimeUtilities.monthYearFormatter.format(Instant.ofEpochMilli(epochTime));
 	}
 
 	/**
-	 * Returns a formatted Month Year String from given long of UTC milliseconds
+	 * Returns a formatted Month Year String from given Long of UTC milliseconds
 	 * from the epoch.
 	 *
 	 * @param epochTime milliseconds from the epoch
@@ -111,6 +97,34 @@ public class TimeUtilities {
 	 */
 	public static String getFormattedMonthYearFromTime(final Long epochTime) {
 		Objects.requireNonNull(epochTime);
-		return TimeUtilities.getFormattedMonthYearFromTime(epochTime);
+		return TimeUtilities.getFormattedMonthYearFromTime(epochTime.longValue());
+	}
+
+	/**
+	 * Returns the start of the day containing the given time, in the given time
+	 * zone, as UTC milliseconds from the epoch.
+	 *
+	 * @param epochTime milliseconds from the epoch
+	 * @param zoneId    time zone that days start in
+	 * @return milliseconds from the epoch of the start of the day
+	 */
+	public static long getStartOfDayTime(final long epochTime, final ZoneId zoneId) {
+		Objects.requireNonNull(zoneId);
+		return Instant.ofEpochMilli(epochTime).atZone(zoneId).toLocalDate().atStartOfDay(zoneId).toInstant()
+				.toEpochMilli();
+	}
+
+	/**
+	 * Returns the start of the month containing the given time, in the given time
+	 * zone, as UTC milliseconds from the epoch.
+	 *
+	 * @param epochTime milliseconds from the epoch
+	 * @param zoneId    time zone that months start in
+	 * @return milliseconds from the epoch of the start of the month
+	 */
+	public static long getStartOfMonthTime(final long epochTime, final ZoneId zoneId) {
+		Objects.requireNonNull(zoneId);
+		return Instant.ofEpochMilli(epochTime).atZone(zoneId).toLocalDate().withDayOfMonth(1).atStartOfDay(zoneId)
+				.toInstant().toEpochMilli();
 	}
 }
@@ -0,0 +1,48 @@
+package product
+
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory
+
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Narrative(""" RequestExecutionCustomizer serves requests on the Tomcat thread pool, or on
+virtual threads when they are available.
+""")
+@Title("Tests for RequestExecutionCustomizer")
+@Subject(RequestExecutionCustomizer)
+class RequestExecutionCustomizerSpec extends Specification {
+
+	def "RequestExecutionCustomizer leaves the Tomcat thread pool alone in the platform mode"() {
+
+		given:
+		RequestExecutionCustomizer requestExecutionCustomizer = new RequestExecutionCustomizer(RequestExecutionCustomizer.Mode.PLATFORM)
+		TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory()
+
+		when:
+		requestExecutionCustomizer.customize(factory)
+
+		then:
+		requestExecutionCustomizer.mode == RequestExecutionCustomizer.Mode.PLATFORM
+		factory.tomcatConnectorCustomizers.isEmpty()
+	}
+
+	def "RequestExecutionCustomizer serves requests on virtual threads only where the runtime has them"() {
+
+		given:
+		boolean virtualThreads = Runtime.version().feature() >= 21
+		RequestExecutionCustomizer requestExecutionCustomizer = new RequestExecutionCustomizer(RequestExecutionCustomizer.Mode.VIRTUAL)
+		TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory()
+
+		when:
+		requestExecutionCustomizer.customize(factory)
+
+		then: "on an earlier runtime the platform thread pool is kept"
+		requestExecutionCustomizer.mode == (virtualThreads ? RequestExecutionCustomizer.Mode.VIRTUAL : RequestExecutionCustomizer.Mode.PLATFORM)
+		factory.tomcatConnectorCustomizers.size() == (virtualThreads ? 1 : 0)
+
+		cleanup:
+		requestExecutionCustomizer.shutdown()
+	}
+}
@@ -0,0 +1,84 @@
+package product.controller.rest
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status
+
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.test.context.ContextConfiguration
+import org.springframework.test.web.servlet.MockMvc
+
+import product.ProductManager
+import product.repository.ProductRepository
+import product.service.api.ProductService
+import product.service.impl.ProductChangeListener
+import product.service.impl.StockWriteBehindBuffer
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Narrative(""" ProductController exposes ProductService over REST, telling clients
+whether a stock adjustment was applied or only buffered.
+""")
+@Title("Tests for ProductController")
+@Subject(ProductController)
+@ContextConfiguration(classes=ProductManager.class)
+@SpringBootTest(properties = "product.write-behind.enabled=true")
+@AutoConfigureMockMvc
+class ProductControllerSpec extends Specification {
+
+	@Autowired
+	MockMvc mockMvc
+
+	@Autowired
+	ProductService productService
+
+	@Autowired
+	ProductRepository productRepository
+
+	@Autowired
+	StockWriteBehindBuffer stockWriteBehindBuffer
+
+	@Autowired
+	List<ProductChangeListener> productChangeListeners
+
+	def setup() {
+		productRepository.deleteAll()
+		productChangeListeners*.allProductsChanged()
+	}
+
+	def cleanup() {
+		stockWriteBehindBuffer.flush()
+		productRepository.deleteAll()
+		productChangeListeners*.allProductsChanged()
+	}
+
+	def "ProductController accepts a buffered stock adjustment without a current amount"() {
+
+		given: "a Product in stock"
+		productService.create("A")
+		productService.setCurrentAmount("A", 10)
+
+		when: "its current amount is adjusted while write-behind is enabled"
+		def result = mockMvc.perform(patch("/v1/current/A/delta/-1"))
+
+		then: "the adjustment is accepted rather than applied, with no body"
+		result.andExpect(status().isAccepted()).andExpect(content().string(""))
+
+		and: "it is applied once flushed"
+		stockWriteBehindBuffer.flush()
+		productRepository.findByName("A").currentAmount == 9
+	}
+
+	def "ProductController rejects a stock adjustment of a Product that does not exist, before it is buffered"() {
+
+		when: "the current amount of a Product that was never created is adjusted"
+		def result = mockMvc.perform(patch("/v1/current/missing/delta/-1"))
+
+		then: "it is not found"
+		result.andExpect(status().isNotFound())
+	}
+}
@@ -0,0 +1,65 @@
+package product.repository
+
+import java.sql.Statement
+
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.util.ReflectionTestUtils
+
+import product.model.ProductUpdate
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Narrative(""" ProductRepositoryImpl applies batches of Product updates as JDBC
+batches, counting the rows changed by each even when the driver does not report
+them.
+""")
+@Title("Tests for ProductRepositoryImpl")
+@Subject(ProductRepositoryImpl)
+class ProductRepositoryImplSpec extends Specification {
+
+	JdbcTemplate jdbcTemplate = Mock()
+
+	ProductRepositoryImpl productRepository = new ProductRepositoryImpl()
+
+	def setup() {
+		ReflectionTestUtils.setField(productRepository, "jdbcTemplate", jdbcTemplate)
+	}
+
+	def "ProductRepositoryImpl counts updates of Products that exist when the driver reports no counts"() {
+
+		given: "updates to a Product that exists and one that does not"
+		List<ProductUpdate> productUpdates = [
+			new ProductUpdate(ProductUpdate.Operation.SET_CURRENT_AMOUNT, "A", 1),
+			new ProductUpdate(ProductUpdate.Operation.SET_CURRENT_AMOUNT, "B", 2)
+		]
+
+		when: "they are applied by a driver that rewrites batches"
+		int[] counts = productRepository.applyAll(productUpdates)
+
+		then: "only the update of the Product that exists is counted"
+		1 * jdbcTemplate.batchUpdate(_, _, 2, _) >> ([[Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO] as int[]] as int[][])
+		1 * jdbcTemplate.queryForList({ it.endsWith("(?, ?)") }, String, "A", "B") >> ["A"]
+		counts == [1, 0] as int[]
+	}
+
+	def "ProductRepositoryImpl counts deletes of Products that existed before the batch when the driver reports no counts"() {
+
+		given: "deletes of a Product that exists and one that does not"
+		List<ProductUpdate> productUpdates = [
+			new ProductUpdate(ProductUpdate.Operation.DELETE, "A", null),
+			new ProductUpdate(ProductUpdate.Operation.DELETE, "B", null)
+		]
+
+		when: "they are applied by a driver that rewrites batches"
+		int[] counts = productRepository.applyAll(productUpdates)
+
+		then: "which exist is read before they are deleted"
+		1 * jdbcTemplate.queryForList(_, String, "A", "B") >> ["B"]
+
+		then: "only the delete of the Product that existed is counted"
+		1 * jdbcTemplate.batchUpdate(_, _, 2, _) >> ([[Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO] as int[]] as int[][])
+		counts == [0, 1] as int[]
+	}
+}
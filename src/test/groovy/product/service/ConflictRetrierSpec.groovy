@@ -0,0 +1,104 @@
+package product.service
+
+import java.sql.SQLException
+
+import org.hibernate.exception.ConstraintViolationException
+import org.springframework.dao.DataIntegrityViolationException
+import org.springframework.dao.OptimisticLockingFailureException
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import product.exception.ProductUpdateException
+import product.service.impl.ConflictRetrier
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Narrative(""" ConflictRetrier retries updates that lost a race with a concurrent
+update of the same row, and nothing else.
+""")
+@Title("Tests for ConflictRetrier")
+@Subject(ConflictRetrier)
+class ConflictRetrierSpec extends Specification {
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+
+	ConflictRetrier conflictRetrier
+
+	def setup() {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate()
+		jdbcTemplate.exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator("H2")
+		conflictRetrier = new ConflictRetrier(meterRegistry, jdbcTemplate, 3, 0)
+	}
+
+	/**
+	 * Creates an integrity violation as JPA reports it, for an SQLException with the
+	 * specified H2 error code.
+	 */
+	DataIntegrityViolationException integrityViolation(int errorCode) {
+		SQLException sqlException = new SQLException("Violation", "23000", errorCode)
+		new DataIntegrityViolationException("Violation",
+				new ConstraintViolationException("Violation", sqlException, "constraint"))
+	}
+
+	double count(String outcome) {
+		meterRegistry.find("product.conflicts").tag("outcome", outcome).counter()?.count() ?: 0
+	}
+
+	def "ConflictRetrier retries an update that lost a race on a version or a unique key"() {
+
+		given: "an update that conflicts twice and then succeeds"
+		List<RuntimeException> conflicts = [
+			new OptimisticLockingFailureException("Stale version"),
+			integrityViolation(23505)
+		]
+		int attempts = 0
+
+		when: "it is run"
+		String result = conflictRetrier.execute("create") {
+			attempts++
+			if (conflicts) {
+				throw conflicts.remove(0)
+			}
+			"created"
+		}
+
+		then: "it was retried until it succeeded, counting each conflict"
+		result == "created"
+		attempts == 3
+		count("retried") == 2
+	}
+
+	def "ConflictRetrier gives up once the attempts are exhausted"() {
+
+		when: "an update that always conflicts is run"
+		conflictRetrier.run("create") { throw integrityViolation(23505) }
+
+		then: "it fails once every attempt has conflicted"
+		thrown(ProductUpdateException)
+		count("retried") == 2
+		count("exhausted") == 1
+	}
+
+	def "ConflictRetrier does not retry an integrity violation that is not a duplicate key"() {
+
+		given: "an update that violates a not null constraint"
+		DataIntegrityViolationException violation = integrityViolation(23502)
+		int attempts = 0
+
+		when: "it is run"
+		conflictRetrier.run("create") {
+			attempts++
+			throw violation
+		}
+
+		then: "it fails at once, with the violation, and is not counted as a conflict"
+		DataIntegrityViolationException e = thrown()
+		e.is(violation)
+		attempts == 1
+		count("retried") == 0
+		count("exhausted") == 0
+	}
+}
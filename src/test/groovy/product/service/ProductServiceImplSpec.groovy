@@ -1,16 +1,51 @@
 package product.service
 
+import java.time.Clock
+import java.time.Instant
+import java.time.LocalDate
+import java.time.ZoneOffset
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.context.SpringBootTest
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment
+import org.springframework.data.domain.PageRequest
 import org.springframework.test.context.ContextConfiguration
+import org.springframework.test.util.AopTestUtils
+import org.springframework.test.util.ReflectionTestUtils
+
+import com.fasterxml.jackson.databind.ObjectMapper
 
+import io.micrometer.core.instrument.MeterRegistry
 import product.ProductManager
+import product.exception.InvalidCursorException
+import product.exception.InvalidProductException
+import product.exception.ProductPurchaseRequirementMissingException
+import product.exception.ProductUpdateException
 import product.model.Product
+import product.model.ProductDemandStatistics
 import product.model.ProductPurchaseRequirement
+import product.model.ProductPurchaseRequirementChanges
+import product.model.ProductPurchaseRequirementPage
+import product.model.ProductPurchaseRequirementSnapshot
+import product.model.ProductShortfall
+import product.model.ProductUpdate
+import product.model.ProductUpdateResult
+import product.repository.ProductDemandStatisticRepository
 import product.repository.ProductPurchaseRequirementRepository
+import product.repository.ProductPurchaseRequirementSnapshotRepository
 import product.repository.ProductRepository
+import product.service.impl.LatestSnapshotCache
+import product.service.impl.ProductChangeListener
+import product.service.impl.ProductDemandAggregator
+import product.service.impl.ProductNameCache
+import product.service.impl.ProductPurchaseRequirementHistory
+import product.service.impl.ProductPurchaseRequirementGenerator
 import product.service.impl.ProductServiceImpl
+import product.service.impl.ProductShortfallTracker
+import product.service.impl.ProductStockView
 import spock.lang.Narrative
 import spock.lang.Specification
 import spock.lang.Subject
@@ -34,14 +69,66 @@ class ProductServiceImplSpec extends Specification {
 	@Autowired
 	ProductPurchaseRequirementRepository productPurchaseRequirementRepository
 
+	@Autowired
+	ProductPurchaseRequirementSnapshotRepository productPurchaseRequirementSnapshotRepository
+
+	@Autowired
+	LatestSnapshotCache latestSnapshotCache
+
+	@Autowired
+	ProductPurchaseRequirementHistory productPurchaseRequirementHistory
+
+	@Autowired
+	ProductDemandStatisticRepository productDemandStatisticRepository
+
+	@Autowired
+	ProductDemandAggregator productDemandAggregator
+
+	@Autowired
+	List<ProductChangeListener> productChangeListeners
+
+	@Autowired
+	ProductNameCache productNameCache
+
+	@Autowired
+	ProductPurchaseRequirementGenerator productPurchaseRequirementGenerator
+
+	@Autowired
+	ProductShortfallTracker productShortfallTracker
+
+	@Autowired
+	ProductStockView productStockView
+
+	@Autowired
+	MeterRegistry meterRegistry
+
+	@Autowired
+	ObjectMapper objectMapper
+
+	/**
+	 * Gets the ProductServiceImpl behind its timing proxy, so that its private
+	 * methods can be called.
+	 */
+	ProductServiceImpl getProductServiceImpl() {
+		AopTestUtils.getTargetObject(productService)
+	}
+
 	def setup() {
 		productRepository.deleteAll()
 		productPurchaseRequirementRepository.deleteAll()
+		productPurchaseRequirementSnapshotRepository.deleteAll()
+		productDemandStatisticRepository.deleteAll()
+		productChangeListeners*.allProductsChanged()
+		latestSnapshotCache.invalidate()
 	}
 
 	def cleanup() {
 		productRepository.deleteAll()
 		productPurchaseRequirementRepository.deleteAll()
+		productPurchaseRequirementSnapshotRepository.deleteAll()
+		productDemandStatisticRepository.deleteAll()
+		productChangeListeners*.allProductsChanged()
+		latestSnapshotCache.invalidate()
 	}
 
 	def "ProductServiceImpl can create a Product and then retrieve it"() {
@@ -52,10 +139,10 @@ class ProductServiceImplSpec extends Specification {
 		product.blocked = true
 		product.minAmount = 5
 		product.currentAmount = 10
-		productService.save(product)
+		productServiceImpl.save(product)
 
 		when: "the Product is retrieved by name"
-		Product retrieved_product = productService.getByName("A").get()
+		Product retrieved_product = productServiceImpl.getByName("A").get()
 
 		then: "the retrieved Product will have the same values as the saved Product"
 		retrieved_product.name == product.name
@@ -139,4 +226,649 @@ class ProductServiceImplSpec extends Specification {
 
 		foundProductAmount == 20
 	}
+
+	def "ProductServiceImpl stamps Product purchase requirement snapshots with the time of its Clock"() {
+
+		given: "a Product that requires additional purchasing, and a fixed Clock"
+		productService.create("A")
+		productService.setMinAmount("A", 10)
+		Clock clock = ReflectionTestUtils.getField(productService, "clock")
+		Instant instant = Instant.parse("2019-09-01T12:00:00Z")
+		ReflectionTestUtils.setField(productService, "clock", Clock.fixed(instant, ZoneOffset.UTC))
+
+		when: "Product purchase requirements are generated"
+		Set<ProductPurchaseRequirement> productPurchaseRequirements = productService.getProductPurchaseRequirements()
+
+		then: "the snapshot and its requirements have the time of the Clock"
+		productPurchaseRequirements*.time == [instant.toEpochMilli()]
+		latestSnapshotCache.get().time == instant.toEpochMilli()
+
+		cleanup:
+		ReflectionTestUtils.setField(productService, "clock", clock)
+	}
+
+	def "ProductServiceImpl generates the same Product purchase requirements as the Product rules when the catalogue spans several chunks"() {
+
+		given: "generation either incrementally or by a scan, on either the calling thread or a pool"
+		ReflectionTestUtils.setField(productPurchaseRequirementGenerator, "incremental", incremental)
+		ReflectionTestUtils.setField(productPurchaseRequirementGenerator, "parallelism", parallelism)
+		productPurchaseRequirementGenerator.start()
+
+		and: "more Products than fit in a single chunk, some of which require additional purchasing"
+		List<Product> products = (1..2500).collect { int i ->
+			Product product = new Product()
+			product.name = "P" + i
+			product.blocked = i % 7 == 0
+			product.minAmount = 10
+			product.currentAmount = i % 3 == 0 ? 5 : 50
+			product
+		}
+		productRepository.saveAll(products)
+
+		when: "the Product purchase requirements are generated"
+		Set<ProductPurchaseRequirement> productPurchaseRequirements = productService.getProductPurchaseRequirements()
+
+		then: "they match those worked out by each Product, and are all persisted with the same time"
+		Map<String, Long> expected = products.collect { it.productPurchaseRequirement }
+				.findAll { it.present }.collectEntries { [(it.get().name): it.get().amount] }
+		productPurchaseRequirements.collectEntries { [(it.name): it.amount] } == expected
+		productPurchaseRequirements*.time.unique().size() == 1
+		productPurchaseRequirementRepository.count() == expected.size()
+		productService.getLatestProductPurchaseRequirements().collectEntries { [(it.name): it.amount] } == expected
+		productPurchaseRequirementSnapshotRepository.findAll()*.itemCount == [(long) expected.size()]
+
+		cleanup:
+		productPurchaseRequirementGenerator.shutdown()
+		ReflectionTestUtils.setField(productPurchaseRequirementGenerator, "executorService", null)
+		ReflectionTestUtils.setField(productPurchaseRequirementGenerator, "parallelism", 1)
+		ReflectionTestUtils.setField(productPurchaseRequirementGenerator, "incremental", true)
+
+		where:
+		incremental | parallelism
+		true        | 1
+		false       | 1
+		true        | 4
+		false       | 4
+	}
+
+	def "ProductServiceImpl keeps generating the same Product purchase requirements as the Product rules while Products change between snapshots"() {
+
+		given: "shortfalls found by either the shortfall tracker or the stock view"
+		ReflectionTestUtils.setField(productPurchaseRequirementGenerator, "stockView", stockView)
+
+		and: "a fixed random sequence of changes to a small set of Products"
+		Random random = new Random(9)
+		List<String> names = (1..50).collect { "P" + it }
+
+		when: "a snapshot is generated after every few changes"
+		List<Boolean> matches = (1..40).collect {
+			20.times {
+				String name = names[random.nextInt(names.size())]
+				try {
+					switch (random.nextInt(7)) {
+						case 0: productService.create(name); break
+						case 1: productService.delete(name); break
+						case 2: productService.setCurrentAmount(name, random.nextInt(20)); break
+						case 3: productService.adjustCurrentAmount(name, random.nextInt(11) - 5); break
+						case 4: productService.setMinAmount(name, random.nextInt(20)); break
+						case 5: productService.block(name); break
+						default: productService.unblock(name)
+					}
+				} catch (InvalidProductException e) {
+					// The Product does not exist
+				}
+			}
+			Map<String, Long> expected = productRepository.findAll().collect { it.productPurchaseRequirement }
+					.findAll { it.present }.collectEntries { [(it.get().name): it.get().amount] }
+			productService.getProductPurchaseRequirements().collectEntries { [(it.name): it.amount] } == expected
+		}
+
+		then: "every snapshot matches those worked out by each Product"
+		matches.every()
+
+		cleanup:
+		ReflectionTestUtils.setField(productPurchaseRequirementGenerator, "stockView", false)
+
+		where:
+		stockView << [false, true]
+	}
+
+	def "The Product shortfall query returns the same Products and amounts as the Product rules"() {
+
+		given: "Products covering every combination of blocked, missing and short values"
+		List<Product> products = []
+		int i = 0
+		for (Boolean blocked : [null, true, false]) {
+			for (Long currentAmount : [null, 5L, 10L, 15L]) {
+				for (Long minAmount : [null, 0L, 10L]) {
+					Product product = new Product()
+					product.name = "P" + i++
+					product.blocked = blocked
+					product.currentAmount = currentAmount
+					product.minAmount = minAmount
+					products << product
+				}
+			}
+		}
+		productRepository.saveAll(products)
+
+		when: "the shortfalls are queried"
+		List<ProductShortfall> productShortfalls = productRepository.findShortfallsAfterID(Long.MIN_VALUE, PageRequest.of(0, 1000))
+
+		then: "they match those worked out by each Product"
+		productShortfalls.collectEntries { [(it.name): it.amount] } == products.collect { it.productPurchaseRequirement }
+				.findAll { it.present }.collectEntries { [(it.get().name): it.get().amount] }
+	}
+
+	def "The Product stock view finds the same shortfalls as the Product rules and follows changes in place"() {
+
+		given: "Products covering every combination of blocked, missing and short values"
+		List<Product> products = []
+		int i = 0
+		for (Boolean blocked : [null, true, false]) {
+			for (Long currentAmount : [null, 5L, 10L, 15L]) {
+				for (Long minAmount : [null, 0L, 10L]) {
+					Product product = new Product()
+					product.name = "P" + i++
+					product.blocked = blocked
+					product.currentAmount = currentAmount
+					product.minAmount = minAmount
+					products << product
+				}
+			}
+		}
+		productRepository.saveAll(products)
+
+		expect: "the view holds every Product and finds the shortfalls worked out by each Product"
+		productStockView.size() == products.size()
+		productStockView.productShortfalls.collectEntries { [(it.name): it.amount] } == products
+				.collect { it.productPurchaseRequirement }.findAll { it.present }
+				.collectEntries { [(it.get().name): it.get().amount] }
+
+		when: "Products are changed, deleted, created and re-created through the service"
+		productService.setCurrentAmount("P32", 1)
+		productService.block("P33")
+		productService.delete("P34")
+		productService.create("N")
+		productService.setMinAmount("N", 4)
+		productService.create("P35")
+		productService.setMinAmount("P35", 3)
+
+		then: "the view follows them"
+		productStockView.size() == products.size()
+		productStockView.productShortfalls.collectEntries { [(it.name): it.amount] } == productRepository.findAll()
+				.collect { it.productPurchaseRequirement }.findAll { it.present }
+				.collectEntries { [(it.get().name): it.get().amount] }
+
+		and: "the shortfalls can be scanned without building a list"
+		long total = 0
+		productStockView.forEachShortfall({ long id, String name, long amount -> total += amount } as ProductStockView.ShortfallConsumer) == 4
+		total == 5 + 9 + 4 + 3
+	}
+
+	def "The Product stock view and shortfall tracker only record changed Products once they have been loaded"() {
+
+		given: "Products, while neither the view nor the tracker is loaded"
+		(1..3).each { productService.create("P" + it) }
+
+		when: "the Products change"
+		(1..3).each { productService.setMinAmount("P" + it, 10) }
+
+		then: "no names are kept for them, as the whole catalogue is read on loading"
+		ReflectionTestUtils.getField(productStockView, "changedNames").isEmpty()
+		ReflectionTestUtils.getField(productShortfallTracker, "changedNames").isEmpty()
+
+		when: "both are loaded and a Product changes"
+		productStockView.size()
+		productShortfallTracker.productShortfalls
+		productService.setCurrentAmount("P1", 20)
+
+		then: "its name is recorded until it is read again"
+		ReflectionTestUtils.getField(productStockView, "changedNames") == ["P1"] as Set
+		ReflectionTestUtils.getField(productShortfallTracker, "changedNames") == ["P1"] as Set
+		productStockView.productShortfalls*.name == ["P2", "P3"]
+		productShortfallTracker.productShortfalls*.name == ["P2", "P3"]
+		ReflectionTestUtils.getField(productStockView, "changedNames").isEmpty()
+	}
+
+	def "ProductServiceImpl can stream generated and latest Product purchase requirements one at a time"() {
+
+		given: "more Products than fit in a single chunk, some of which require additional purchasing"
+		productRepository.saveAll((1..1500).collect { int i ->
+			Product product = new Product()
+			product.name = "P" + i
+			product.blocked = false
+			product.minAmount = 10
+			product.currentAmount = i % 2 == 0 ? 5 : 50
+			product
+		})
+
+		when: "the Product purchase requirements are generated and then the latest are streamed"
+		List<ProductPurchaseRequirement> generated = []
+		productService.streamProductPurchaseRequirements { generated << it }
+		List<ProductPurchaseRequirement> latest = []
+		productService.streamLatestProductPurchaseRequirements { latest << it }
+
+		then: "both streams contain the same Product purchase requirements as the latest Set"
+		generated.size() == 750
+		generated.collectEntries { [(it.name): it.amount] } == latest.collectEntries { [(it.name): it.amount] }
+		latest.collectEntries { [(it.name): it.amount] } == productService.getLatestProductPurchaseRequirements()
+				.collectEntries { [(it.name): it.amount] }
+	}
+
+	def "ProductServiceImpl returns Product purchase requirements that serialize to only their name, amount and time"() {
+
+		given: "a Product that requires additional purchasing"
+		productService.create("A")
+		productService.setMinAmount("A", 10)
+
+		when: "the Product purchase requirements are generated and serialized"
+		List<Map> serialized = productService.getProductPurchaseRequirements().collect {
+			objectMapper.readValue(objectMapper.writeValueAsString(it), Map)
+		}
+
+		then: "their identifiers and version are left out"
+		serialized*.keySet() == [["name", "amount", "time"] as Set]
+		serialized[0].name == "A"
+		serialized[0].amount == 10
+	}
+
+	def "ProductServiceImpl records a header for each snapshot and reads the latest snapshot through it"() {
+
+		given: "Products that require additional purchasing"
+		["A", "B"].each {
+			productService.create(it)
+			productService.setMinAmount(it, 10)
+			productService.setCurrentAmount(it, 5)
+		}
+
+		when: "two snapshots are generated and the latest is added to"
+		productService.getProductPurchaseRequirements()
+		productService.setCurrentAmount("B", 10)
+		productService.getProductPurchaseRequirements()
+		productService.overrideMinAmount("C", 4)
+
+		then: "each snapshot has a complete header with its item count"
+		List<ProductPurchaseRequirementSnapshot> snapshots = productPurchaseRequirementSnapshotRepository.findAll().sort { it.ID }
+		snapshots*.status == [ProductPurchaseRequirementSnapshot.Status.COMPLETE] * 2
+		snapshots*.itemCount == [2L, 2L]
+
+		and: "every requirement references its snapshot"
+		productPurchaseRequirementRepository.findBySnapshotID(snapshots[0].ID)*.name.sort() == ["A", "B"]
+		productPurchaseRequirementRepository.findBySnapshotID(snapshots[1].ID)*.name.sort() == ["A", "C"]
+
+		and: "the latest requirements are those of the latest snapshot, also once the cached header is reloaded"
+		productService.getLatestProductPurchaseRequirements()*.name.sort() == ["A", "C"]
+		latestSnapshotCache.invalidate()
+		latestSnapshotCache.get().ID == snapshots[1].ID
+		productService.getLatestProductPurchaseRequirements()*.name.sort() == ["A", "C"]
+	}
+
+	def "ProductServiceImpl gets only the Product purchase requirements that changed since an earlier snapshot"() {
+
+		given: "a snapshot of Product purchase requirements"
+		["A", "B", "C"].each {
+			productService.create(it)
+			productService.setMinAmount(it, 10)
+			productService.setCurrentAmount(it, 5)
+		}
+		long firstTime = productService.getProductPurchaseRequirements().first().time
+
+		when: "some Products change and a later snapshot is generated"
+		productService.setCurrentAmount("A", 10)
+		productService.setMinAmount("B", 20)
+		productService.create("D")
+		productService.setMinAmount("D", 3)
+		Thread.sleep(5)
+		long secondTime = productService.getProductPurchaseRequirements().first().time
+
+		then: "only the added, changed and removed requirements are returned"
+		ProductPurchaseRequirementChanges changes = productService.getProductPurchaseRequirementChanges(firstTime + 1)
+		changes.sinceTime == firstTime
+		changes.time == secondTime
+		changes.added.collect { [it.name, it.previousAmount, it.amount] } == [["D", null, 3L]]
+		changes.changed.collect { [it.name, it.previousAmount, it.amount] } == [["B", 5L, 15L]]
+		changes.removed.collect { [it.name, it.previousAmount, it.amount] } == [["A", 5L, null]]
+
+		and: "every requirement is added when no snapshot had been generated at the time"
+		ProductPurchaseRequirementChanges allChanges = productService.getProductPurchaseRequirementChanges(firstTime - 1)
+		allChanges.sinceTime == null
+		allChanges.added*.name == ["B", "C", "D"]
+		allChanges.changed.isEmpty()
+		allChanges.removed.isEmpty()
+	}
+
+	def "ProductServiceImpl pages through the history of Product purchase requirements within a time range"() {
+
+		given: "three snapshots of Product purchase requirements, and small pages"
+		(1..20).each {
+			productService.create("P" + it)
+			productService.setMinAmount("P" + it, 10)
+			productService.setCurrentAmount("P" + it, it % 10)
+		}
+		List<Long> times = (1..3).collect {
+			Thread.sleep(5)
+			productService.getProductPurchaseRequirements().first().time
+		}
+		ReflectionTestUtils.setField(productPurchaseRequirementHistory, "pageSize", 7)
+
+		when: "every page within the first two snapshots is read, following the cursors"
+		List<ProductPurchaseRequirementPage> pages = []
+		String cursor = null
+		while (pages.isEmpty() || cursor != null) {
+			pages << productService.getProductPurchaseRequirementHistory(times[0], times[2], null, cursor)
+			cursor = pages.last().nextCursor
+		}
+
+		then: "the requirements of those snapshots are returned once each, in time and then name order"
+		List<ProductPurchaseRequirement> history = pages*.productPurchaseRequirements.flatten()
+		history.size() == 40
+		history*.time.toSet() == [times[0], times[1]].toSet()
+		history.collect { [it.time, it.name] } == history.collect { [it.time, it.name] }.sort { a, b -> a[0] <=> b[0] ?: a[1] <=> b[1] }
+		history.collect { [it.time, it.name] }.toSet().size() == 40
+		pages.size() == 6
+
+		and: "the history of a single Product can be read in the same way"
+		productService.getProductPurchaseRequirementHistory(times[0], null, "P3", null).productPurchaseRequirements*.time == times
+
+		and: "a cursor that was not returned with a page is rejected"
+		when:
+		productService.getProductPurchaseRequirementHistory(times[0], null, null, "not a cursor")
+
+		then:
+		thrown(InvalidCursorException)
+
+		cleanup:
+		ReflectionTestUtils.setField(productPurchaseRequirementHistory, "pageSize", 1000)
+	}
+
+	def "ProductServiceImpl keeps daily and monthly demand statistics as requirements are generated and overridden"() {
+
+		given: "Products that require additional purchasing"
+		productService.create("A")
+		productService.setMinAmount("A", 10)
+		productService.setCurrentAmount("A", 6)
+		productService.create("B")
+		productService.setMinAmount("B", 10)
+		productService.setCurrentAmount("B", 8)
+
+		when: "two snapshots are generated and the latest is overridden"
+		productService.getProductPurchaseRequirements()
+		productService.setCurrentAmount("A", 2)
+		productService.getProductPurchaseRequirements()
+		productService.overrideMinAmount("A", 20)
+		productService.overrideMinAmount("C", 5)
+
+		then: "the statistics of each Product include every requirement and override"
+		ProductDemandStatistics statistics = productService.getProductDemandStatistics("A")
+		statistics.overall.count == 2
+		statistics.overall.total == 24
+		statistics.overall.peak == 20
+		statistics.overall.average == 12
+		statistics.daily*.period == [LocalDate.now(ZoneOffset.UTC).toString()]
+		statistics.monthly*.total == [24L]
+		productService.getProductDemandStatistics("B").overall.total == 4
+		productService.getProductDemandStatistics("C").overall.count == 1
+
+		and: "there are no statistics for a Product that has never been required"
+		when:
+		productService.getProductDemandStatistics("D")
+
+		then:
+		thrown(ProductPurchaseRequirementMissingException)
+	}
+
+	def "ProductServiceImpl leaves no requirements or demand statistics behind for a snapshot that fails"() {
+
+		given: "a Product that requires additional purchasing"
+		productService.create("A")
+		productService.setMinAmount("A", 10)
+
+		when: "a snapshot fails once its requirements are written"
+		productService.streamProductPurchaseRequirements({ throw new IllegalStateException("Client went away") })
+
+		then: "the snapshot is marked failed and neither its requirements nor its demand are kept"
+		thrown(IllegalStateException)
+		productPurchaseRequirementSnapshotRepository.findAll()*.status == [
+			ProductPurchaseRequirementSnapshot.Status.FAILED
+		]
+		productPurchaseRequirementRepository.count() == 0
+		productDemandStatisticRepository.count() == 0
+	}
+
+	def "ProductDemandAggregator buckets requirements by day and month and works out the trend of daily averages"() {
+
+		given: "requirements over five days spanning two months, rising by two each day"
+		List<ProductPurchaseRequirement> productPurchaseRequirements = (0..4).collectMany { int day ->
+			long time = LocalDate.of(2019, 8, 30).plusDays(day).atTime(12, 0).toInstant(ZoneOffset.UTC).toEpochMilli()
+			[2 * day + 1, 2 * day + 3].collect { long amount ->
+				ProductPurchaseRequirement productPurchaseRequirement = new ProductPurchaseRequirement()
+				productPurchaseRequirement.name = "A"
+				productPurchaseRequirement.amount = amount
+				productPurchaseRequirement.time = time
+				productPurchaseRequirement
+			}
+		}
+
+		when: "they are recorded, some in a later batch"
+		productDemandAggregator.record(productPurchaseRequirements.take(6))
+		productDemandAggregator.record(productPurchaseRequirements.drop(6))
+
+		then: "each day and month has its own count, total and peak"
+		ProductDemandStatistics statistics = productDemandAggregator.getStatistics("A")
+		statistics.daily*.period == ["2019-08-30", "2019-08-31", "2019-09-01", "2019-09-02", "2019-09-03"]
+		statistics.daily*.average == [2d, 4d, 6d, 8d, 10d]
+		statistics.daily*.peak == [3L, 5L, 7L, 9L, 11L]
+		statistics.monthly*.period == ["2019-08", "2019-09"]
+		statistics.monthly*.count == [4L, 6L]
+		statistics.monthly*.total == [12L, 48L]
+		statistics.overall.average == 6
+		statistics.overall.peak == 11
+
+		and: "the trend is the rise in the daily average per day"
+		Math.abs(statistics.trend - 2) < 1e-9
+	}
+
+	def "ProductServiceImpl reads Products by name through the cache and keeps it consistent on change and delete"() {
+
+		given: "a Product that has been created and then read, so that it is cached"
+		productService.create("A")
+		productServiceImpl.getByName("A")
+		double hits = meterRegistry.get("cache.gets").tag("cache", "products.byName").tag("result", "hit").functionCounter().count()
+
+		when: "the Product is read again, changed, read, and then deleted"
+		productServiceImpl.getByName("A")
+		productService.setMinAmount("A", 10)
+		productService.setCurrentAmount("A", 5)
+		Product changed = productServiceImpl.getByName("A").get()
+		productService.delete("A")
+
+		then: "the second read was served from the cache, changes were not hidden by it, and the Product is gone once deleted"
+		meterRegistry.get("cache.gets").tag("cache", "products.byName").tag("result", "hit").functionCounter().count() == hits + 1
+		changed.minAmount == 10
+		changed.currentAmount == 5
+		productServiceImpl.getByName("A").isEmpty()
+		productRepository.findByName("A") == null
+	}
+
+	def "ProductServiceImpl does not lose updates when many threads change the same Product at once"() {
+
+		given: "a Product and threads that each repeatedly set a different property of it"
+		productService.create("A")
+		int updates = 200
+		ExecutorService executorService = Executors.newFixedThreadPool(12)
+		List<Callable<Object>> tasks = []
+		4.times {
+			tasks << { (1..updates).each { int i -> productService.setCurrentAmount("A", i) } } as Callable<Object>
+			tasks << { (1..updates).each { int i -> productService.setMinAmount("A", i * 2) } } as Callable<Object>
+			tasks << { (1..updates).each { productService.block("A") } } as Callable<Object>
+		}
+
+		when: "the threads all run at the same time"
+		executorService.invokeAll(tasks).each { it.get() }
+		executorService.shutdown()
+
+		then: "every property holds the final value written to it"
+		Product product = productRepository.findByName("A")
+		product.currentAmount == updates
+		product.minAmount == updates * 2
+		product.blocked == true
+
+		and: "the version counts every update"
+		product.version == 12 * updates
+	}
+
+	def "ProductServiceImpl retries conflicting overrides so none is lost or counted twice when many threads override the same Products at once"() {
+
+		given: "a snapshot in which one Product is required and another is not"
+		productService.create("A")
+		productService.setMinAmount("A", 10)
+		productService.getProductPurchaseRequirements()
+		ProductPurchaseRequirementSnapshot snapshot = latestSnapshotCache.get()
+
+		and: "threads that each repeatedly override both Products"
+		ExecutorService executorService = Executors.newFixedThreadPool(8)
+		List<Callable<Map<String, Integer>>> tasks = (1..8).collect { int thread ->
+			{ ->
+				Map<String, Integer> overridden = ["A": 0, "N": 0]
+				(1..25).each { int i ->
+					["A", "N"].each { String name ->
+						try {
+							productService.overrideMinAmount(name, thread * 100 + i)
+							overridden[name]++
+						} catch (ProductUpdateException e) {
+						}
+					}
+				}
+				overridden
+			} as Callable<Map<String, Integer>>
+		}
+
+		when: "the threads all run at the same time"
+		List<Map<String, Integer>> overridden = executorService.invokeAll(tasks)*.get()
+		executorService.shutdown()
+
+		then: "each Product has exactly one requirement in the snapshot"
+		Map<String, List<ProductPurchaseRequirement>> requirements = productPurchaseRequirementRepository
+				.findBySnapshotID(snapshot.ID).groupBy { it.name }
+		requirements.keySet() == ["A", "N"] as Set
+		requirements.values()*.size() == [1, 1]
+		productPurchaseRequirementSnapshotRepository.findById(snapshot.ID).get().itemCount == 2
+
+		and: "its version counts every successful override, the one that added it excepted"
+		requirements["A"][0].version == overridden.sum { it["A"] }
+		requirements["N"][0].version == overridden.sum { it["N"] } - 1
+
+		and: "the statistics count each requirement once, at its final amount"
+		["A", "N"].every { String name ->
+			ProductDemandStatistics statistics = productService.getProductDemandStatistics(name)
+			statistics.overall.count == 1 && statistics.overall.total == requirements[name][0].amount
+		}
+	}
+
+	def "ProductServiceImpl creates a single snapshot when many threads make the first overrides at once"() {
+
+		given: "no snapshot, and threads that each override a different Product"
+		ExecutorService executorService = Executors.newFixedThreadPool(8)
+		List<Callable<Void>> tasks = (1..8).collect { int thread ->
+			{ ->
+				productService.overrideMinAmount("P" + thread, thread)
+				null
+			} as Callable<Void>
+		}
+
+		when: "the threads all run at the same time"
+		executorService.invokeAll(tasks)*.get()
+		executorService.shutdown()
+
+		then: "one snapshot holds every override"
+		List<ProductPurchaseRequirementSnapshot> snapshots = productPurchaseRequirementSnapshotRepository.findAll()
+		snapshots.size() == 1
+		snapshots[0].itemCount == 8
+		productPurchaseRequirementRepository.findBySnapshotID(snapshots[0].ID)*.name as Set == (1..8).collect { "P" + it } as Set
+	}
+
+	def "ProductServiceImpl rejects changes to a Product that does not exist"() {
+
+		when: "a Product that was never created is changed"
+		productService."$method"("missing", *arguments)
+
+		then: "an InvalidProductException is thrown"
+		thrown(InvalidProductException)
+
+		where:
+		method                | arguments
+		"block"               | []
+		"unblock"             | []
+		"setCurrentAmount"    | [5L]
+		"adjustCurrentAmount" | [-1L]
+		"setMinAmount"        | [5L]
+		"delete"              | []
+	}
+
+	def "ProductServiceImpl applies every relative stock adjustment when many tills sell the same Product at once"() {
+
+		given: "a Product in stock and tills that each record many sales and deliveries of it"
+		productService.create("A")
+		productService.setCurrentAmount("A", 1000)
+		ExecutorService executorService = Executors.newFixedThreadPool(16)
+		List<Callable<List<Long>>> tasks = (1..16).collect { int till ->
+			{ -> (1..100).collect { productService.adjustCurrentAmount("A", till % 4 == 0 ? 3L : -1L) } } as Callable<List<Long>>
+		}
+
+		when: "the tills all run at the same time"
+		List<Long> levels = executorService.invokeAll(tasks).collectMany { it.get() }
+		executorService.shutdown()
+
+		then: "the final level reflects every adjustment and every call returned a level"
+		productRepository.findByName("A").currentAmount == 1000 + 4 * 100 * 3 - 12 * 100
+		levels.size() == 1600
+		levels.max() <= 1000 + 4 * 100 * 3
+	}
+
+	def "ProductServiceImpl applies a batch of mixed Product changes in order and reports the outcome of each"() {
+
+		given: "a Product that exists, and a batch of changes spanning several chunks"
+		productService.create("A")
+		List<ProductUpdate> productUpdates = [
+			new ProductUpdate(ProductUpdate.Operation.CREATE, "B", null),
+			new ProductUpdate(ProductUpdate.Operation.SET_MIN_AMOUNT, "B", 10),
+			new ProductUpdate(ProductUpdate.Operation.SET_CURRENT_AMOUNT, "B", 4),
+			new ProductUpdate(ProductUpdate.Operation.ADJUST_CURRENT_AMOUNT, "B", -1),
+			new ProductUpdate(ProductUpdate.Operation.ADJUST_CURRENT_AMOUNT, "B", -1),
+			new ProductUpdate(ProductUpdate.Operation.BLOCK, "A", null),
+			new ProductUpdate(ProductUpdate.Operation.SET_MIN_AMOUNT, "missing", 5),
+			new ProductUpdate(ProductUpdate.Operation.SET_CURRENT_AMOUNT, "A", null),
+			new ProductUpdate(ProductUpdate.Operation.DELETE, "A", null)
+		]
+		productUpdates += (1..2500).collect { new ProductUpdate(ProductUpdate.Operation.CREATE, "P" + it, null) }
+		productUpdates += (1..2500).collect { new ProductUpdate(ProductUpdate.Operation.SET_CURRENT_AMOUNT, "P" + it, it) }
+
+		when: "the batch is applied"
+		List<ProductUpdateResult> productUpdateResults = productService.applyBatch(productUpdates)
+
+		then: "each change has an outcome in the same order"
+		productUpdateResults.size() == productUpdates.size()
+		productUpdateResults.take(9)*.status == [
+			ProductUpdateResult.Status.APPLIED,
+			ProductUpdateResult.Status.APPLIED,
+			ProductUpdateResult.Status.APPLIED,
+			ProductUpdateResult.Status.APPLIED,
+			ProductUpdateResult.Status.APPLIED,
+			ProductUpdateResult.Status.APPLIED,
+			ProductUpdateResult.Status.NOT_FOUND,
+			ProductUpdateResult.Status.INVALID,
+			ProductUpdateResult.Status.APPLIED
+		]
+		productUpdateResults.drop(9)*.status.every { it == ProductUpdateResult.Status.APPLIED }
+
+		and: "the changes were applied in order"
+		Product product = productRepository.findByName("B")
+		product.minAmount == 10
+		product.currentAmount == 2
+		product.blocked == false
+		productServiceImpl.getByName("A").isEmpty()
+		productRepository.findByName("P2500").currentAmount == 2500
+		productRepository.count() == 2501
+	}
 }
@@ -0,0 +1,292 @@
+package product.service
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment
+import org.springframework.context.ApplicationContext
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.ContextConfiguration
+import org.springframework.test.util.ReflectionTestUtils
+
+import product.ProductManager
+import product.repository.ProductDemandStatisticRepository
+import product.repository.ProductPurchaseRequirementRepository
+import product.repository.ProductPurchaseRequirementSnapshotRepository
+import product.repository.ProductRepository
+import product.service.impl.LatestSnapshotCache
+import product.service.impl.ProductChangeListener
+import product.service.impl.ProductServiceImpl
+import product.service.impl.ProductStockFile
+import product.service.impl.ProductStockView
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Narrative(""" ProductStockFile keeps the stock levels of every Product and the latest
+Product purchase requirements in memory mapped files, which are read back on
+restart as long as they are intact and match the database.
+""")
+@Title("Tests for ProductStockFile")
+@Subject(ProductStockFile)
+@ContextConfiguration(classes=ProductManager.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "product.stock-file.checkpoint-interval=3600000")
+class ProductStockFileSpec extends Specification {
+
+	@Autowired
+	ApplicationContext applicationContext
+
+	@Autowired
+	ProductServiceImpl productService
+
+	@Autowired
+	ProductStockFile productStockFile
+
+	@Autowired
+	ProductStockView productStockView
+
+	@Autowired
+	ProductRepository productRepository
+
+	@Autowired
+	ProductPurchaseRequirementRepository productPurchaseRequirementRepository
+
+	@Autowired
+	ProductPurchaseRequirementSnapshotRepository productPurchaseRequirementSnapshotRepository
+
+	@Autowired
+	ProductDemandStatisticRepository productDemandStatisticRepository
+
+	@Autowired
+	List<ProductChangeListener> productChangeListeners
+
+	@Autowired
+	LatestSnapshotCache latestSnapshotCache
+
+	@Autowired
+	JdbcTemplate jdbcTemplate
+
+	Path directory
+
+	def setup() {
+		deleteAll()
+		directory = Files.createTempDirectory("stock")
+		ReflectionTestUtils.setField(productStockFile, "directory", directory.toString())
+		productStockFile.open()
+
+		[["A", 5, 10], ["B", 20, 10], ["C", 0, 3], ["D", 7, 7]].each { name, currentAmount, minAmount ->
+			productService.create(name)
+			productService.setCurrentAmount(name, currentAmount)
+			productService.setMinAmount(name, minAmount)
+		}
+		productStockView.size()
+		productStockView.checkpoint()
+	}
+
+	def cleanup() {
+		ReflectionTestUtils.setField(productStockFile, "directory", "")
+		productStockFile.open()
+		directory.toFile().deleteDir()
+		deleteAll()
+	}
+
+	void deleteAll() {
+		productRepository.deleteAll()
+		productPurchaseRequirementRepository.deleteAll()
+		productPurchaseRequirementSnapshotRepository.deleteAll()
+		productDemandStatisticRepository.deleteAll()
+		productChangeListeners*.allProductsChanged()
+		latestSnapshotCache.invalidate()
+	}
+
+	/**
+	 * Empties the database and reopens the files without a checkpoint, as a crash
+	 * and restart with the in-memory database would.
+	 */
+	void crash() {
+		jdbcTemplate.update("delete from product_purchase_requirement")
+		jdbcTemplate.update("delete from product_purchase_requirement_snapshot")
+		jdbcTemplate.update("delete from product")
+		latestSnapshotCache.invalidate()
+		productStockFile.open()
+	}
+
+	/**
+	 * Reopens the files and creates a new ProductStockView reading through the specified
+	 * repository, as on a restart of the application.
+	 */
+	ProductStockView restart(ProductRepository repository) {
+		productStockFile.open()
+		ProductStockView view = applicationContext.autowireCapableBeanFactory.createBean(ProductStockView)
+		ReflectionTestUtils.setField(view, "productRepository", repository)
+		view
+	}
+
+	/**
+	 * Overwrites a byte of the stock file, as a write torn by a crash would.
+	 */
+	void tear(long position) {
+		FileChannel channel = FileChannel.open(directory.resolve("stock.dat"), StandardOpenOption.READ, StandardOpenOption.WRITE)
+		ByteBuffer buffer = ByteBuffer.allocate(1)
+		channel.read(buffer, position)
+		channel.write(ByteBuffer.wrap([(byte) (buffer.get(0) ^ 0x55)] as byte[]), position)
+		channel.close()
+	}
+
+	Map<String, Long> shortfalls(ProductStockView view) {
+		view.productShortfalls.collectEntries { [(it.name): it.amount] }
+	}
+
+	def "A restarted ProductStockView loads from the stock file, without reading the catalogue, when it matches the database"() {
+
+		given: "a Product changed and deleted after the catalogue was read"
+		productService.setCurrentAmount("B", 1)
+		productService.delete("D")
+		productStockView.checkpoint()
+		ProductRepository repository = Mock()
+
+		when: "the application is restarted"
+		ProductStockView view = restart(repository)
+		int size = view.size()
+
+		then: "the view is read from the file once its fingerprint matches the database"
+		1 * repository.findStockFingerprint() >> { productRepository.findStockFingerprint() }
+		0 * repository.forEachStockAfterID(*_)
+		size == 3
+		shortfalls(view) == [A: 5L, B: 9L, C: 3L]
+	}
+
+	def "A restarted ProductStockView reads the catalogue when a stock record was torn, and rewrites the stock file"() {
+
+		given: "the second stock record is torn"
+		tear(64 + 128 + 10)
+		ProductRepository repository = Mock()
+
+		when: "the application is restarted"
+		ProductStockView view = restart(repository)
+		int size = view.size()
+
+		then: "the file is rejected without being compared with the database, and the catalogue is read"
+		0 * repository.findStockFingerprint()
+		1 * repository.forEachStockAfterID(*_) >> { arguments -> productRepository.forEachStockAfterID(*arguments) }
+		size == 4
+		shortfalls(view) == [A: 5L, C: 3L]
+
+		when: "the application is restarted again"
+		view.checkpoint()
+		view = restart(repository)
+		size = view.size()
+
+		then: "the rewritten file is read"
+		1 * repository.findStockFingerprint() >> { productRepository.findStockFingerprint() }
+		0 * repository.forEachStockAfterID(*_)
+		size == 4
+		shortfalls(view) == [A: 5L, C: 3L]
+	}
+
+	def "A restarted ProductStockView reads the catalogue when the header of the stock file was torn"() {
+
+		given: "the header of the stock file is torn"
+		tear(8)
+		ProductRepository repository = Mock()
+
+		when: "the application is restarted"
+		ProductStockView view = restart(repository)
+		int size = view.size()
+
+		then: "the catalogue is read"
+		size == 4
+		0 * repository.findStockFingerprint()
+		1 * repository.forEachStockAfterID(*_) >> { arguments -> productRepository.forEachStockAfterID(*arguments) }
+		shortfalls(view) == [A: 5L, C: 3L]
+	}
+
+	def "A restarted ProductStockView reads the catalogue when a change never reached the stock file"() {
+
+		given: "a Product changed after the last write to the stock file, as before a crash"
+		jdbcTemplate.update("update product set current_amount = 1, version = version + 1 where name = 'D'")
+		ProductRepository repository = Mock()
+
+		when: "the application is restarted"
+		ProductStockView view = restart(repository)
+		int size = view.size()
+
+		then: "the fingerprint of the file does not match the database, so the catalogue is read"
+		size == 4
+		1 * repository.findStockFingerprint() >> { productRepository.findStockFingerprint() }
+		1 * repository.forEachStockAfterID(*_) >> { arguments -> productRepository.forEachStockAfterID(*arguments) }
+		shortfalls(view) == [A: 5L, C: 3L, D: 6L]
+	}
+
+	def "ProductStockFile restores the Products and the latest Product purchase requirements into an empty database"() {
+
+		given: "a snapshot of Product purchase requirements, and the Products as they were"
+		Map<String, Long> generated = productService.productPurchaseRequirements.collectEntries { [(it.name): it.amount] }
+		productStockView.checkpoint()
+		List<Map<String, Object>> products = jdbcTemplate
+				.queryForList("select id, name, blocked, current_amount, min_amount, version from product order by id")
+
+		when: "the database is emptied, as the in-memory database is on restart, and the files are restored"
+		jdbcTemplate.update("delete from product_purchase_requirement")
+		jdbcTemplate.update("delete from product_purchase_requirement_snapshot")
+		jdbcTemplate.update("delete from product")
+		latestSnapshotCache.invalidate()
+		productStockFile.open()
+		productStockFile.restore()
+		productChangeListeners*.allProductsChanged()
+
+		then: "the Products are restored with their IDs and versions"
+		jdbcTemplate.queryForList("select id, name, blocked, current_amount, min_amount, version from product order by id") == products
+
+		and: "the latest Product purchase requirements are restored"
+		generated == [A: 5L, C: 3L]
+		productService.latestProductPurchaseRequirements.collectEntries { [(it.name): it.amount] } == generated
+
+		and: "new Products get IDs after the restored ones"
+		productService.create("E").ID > products*.ID.max()
+	}
+
+	def "ProductStockFile keeps the previous Product purchase requirements when a snapshot is abandoned"() {
+
+		given: "a snapshot of Product purchase requirements"
+		productService.productPurchaseRequirements
+		byte[] written = Files.readAllBytes(directory.resolve("requirements.dat"))
+
+		when: "a snapshot is started and abandoned"
+		productStockFile.openRequirements(productPurchaseRequirementSnapshotRepository.findAll().first()).abandon()
+
+		then: "the requirements file is unchanged and no temporary file is left behind"
+		Files.readAllBytes(directory.resolve("requirements.dat")) == written
+		Files.list(directory).count() == 2
+		productStockFile.readRequirements().collectEntries { [(it.name): it.amount] } == [A: 5L, C: 3L]
+	}
+
+	def "ProductStockFile only restores the Products from a stock file that was checkpointed after the last change"() {
+
+		when: "a Product changes and is checkpointed before a crash, and the files are restored"
+		productService.setCurrentAmount("B", 1)
+		productStockView.checkpoint()
+		crash()
+		productStockFile.restore()
+		productChangeListeners*.allProductsChanged()
+
+		then: "the Products are restored with the change"
+		productRepository.findAll().collectEntries { [(it.name): it.currentAmount] } == [A: 5L, B: 1L, C: 0L, D: 7L]
+
+		when: "the restored Products are checkpointed, and another Product changes before a crash"
+		productStockView.size()
+		productStockView.checkpoint()
+		productService.setCurrentAmount("D", 2)
+		crash()
+		productStockFile.restore()
+
+		then: "the Products are not restored from the file, which is missing the change"
+		productRepository.count() == 0
+	}
+}
@@ -0,0 +1,129 @@
+package product.service
+
+import org.springframework.aop.support.AopUtils
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment
+import org.springframework.boot.test.web.client.TestRestTemplate
+import org.springframework.test.context.ContextConfiguration
+
+import io.micrometer.core.instrument.MeterRegistry
+import product.ProductManager
+import product.exception.InvalidProductException
+import product.repository.ProductPurchaseRequirementRepository
+import product.repository.ProductPurchaseRequirementSnapshotRepository
+import product.repository.ProductRepository
+import product.service.api.ProductService
+import product.service.impl.LatestSnapshotCache
+import product.service.impl.ProductChangeListener
+import product.service.impl.ProductServiceImpl
+import product.service.impl.ServiceTimingAspect
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Narrative(""" ServiceTimingAspect times every ProductService operation, and RepositoryTimingAspect
+every repository call, and they are exposed for Prometheus to scrape.
+""")
+@Title("Tests for ServiceTimingAspect")
+@Subject(ServiceTimingAspect)
+@ContextConfiguration(classes=ProductManager.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class ServiceTimingAspectSpec extends Specification {
+
+	@Autowired
+	ProductService productService
+
+	@Autowired
+	MeterRegistry meterRegistry
+
+	@Autowired
+	TestRestTemplate restTemplate
+
+	@Autowired
+	ProductRepository productRepository
+
+	@Autowired
+	ProductPurchaseRequirementRepository productPurchaseRequirementRepository
+
+	@Autowired
+	ProductPurchaseRequirementSnapshotRepository productPurchaseRequirementSnapshotRepository
+
+	@Autowired
+	List<ProductChangeListener> productChangeListeners
+
+	@Autowired
+	LatestSnapshotCache latestSnapshotCache
+
+	def setup() {
+		productPurchaseRequirementRepository.deleteAll()
+		productPurchaseRequirementSnapshotRepository.deleteAll()
+		productRepository.deleteAll()
+		productChangeListeners*.allProductsChanged()
+		latestSnapshotCache.invalidate()
+	}
+
+	long count(String name, Map<String, String> tags) {
+		def search = meterRegistry.find(name)
+		tags.each { key, value -> search = search.tag(key, value) }
+		search.timer()?.count() ?: 0
+	}
+
+	def "ServiceTimingAspect proxies the ProductServiceImpl given to the controller"() {
+
+		expect:
+		productService instanceof ProductServiceImpl
+		AopUtils.isAopProxy(productService)
+	}
+
+	def "ServiceTimingAspect counts each operation by its result and exception"() {
+
+		given: "the counts so far"
+		long created = count("product.service", [method: "create", result: "success", exception: "none"])
+		long failed = count("product.service", [method: "block", result: "error", exception: "InvalidProductException"])
+
+		when: "a Product is created and one that does not exist is blocked"
+		productService.create("A")
+		productService.block("B")
+
+		then: "the exception still reaches the caller"
+		thrown(InvalidProductException)
+
+		and: "each call was timed with its outcome"
+		count("product.service", [method: "create", result: "success", exception: "none"]) == created + 1
+		count("product.service", [method: "block", result: "error", exception: "InvalidProductException"]) == failed + 1
+	}
+
+	def "RepositoryTimingAspect times the repository calls and reports the size of the latest snapshot"() {
+
+		given: "Products that require additional purchasing"
+		(1..3).each {
+			productService.create("P" + it)
+			productService.setMinAmount("P" + it, 10)
+		}
+		long queries = count("product.repository", [repository: "ProductPurchaseRequirementRepository", method: "insertAll", exception: "none"])
+
+		when: "a snapshot is generated"
+		productService.getProductPurchaseRequirements()
+
+		then: "its JDBC batch was timed and its size is reported"
+		count("product.repository", [repository: "ProductPurchaseRequirementRepository", method: "insertAll", exception: "none"]) == queries + 1
+		meterRegistry.get("product.requirements.snapshot.items").gauge().value() == 3
+	}
+
+	def "The timers and the connection pool are exposed for Prometheus"() {
+
+		given: "an operation has been timed"
+		productService.create("A")
+
+		when: "the metrics are scraped"
+		String metrics = restTemplate.getForObject("/actuator/prometheus", String)
+
+		then: "they include the service and repository timers and the pool"
+		metrics.contains('product_service_seconds_count{exception="none",method="create",result="success",}')
+		metrics.contains('product_repository_seconds_count{exception="none",method="save",repository="ProductRepository",}')
+		metrics.contains("hikaricp_connections_active")
+		metrics.contains("product_requirements_snapshot_items")
+	}
+}
@@ -0,0 +1,133 @@
+package product.service
+
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneOffset
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.function.Consumer
+
+import org.springframework.test.util.ReflectionTestUtils
+
+import product.exception.SnapshotJobMissingException
+import product.model.ProductPurchaseRequirement
+import product.model.ProductPurchaseRequirementSnapshot
+import product.model.SnapshotJob
+import product.service.impl.ProductPurchaseRequirementGenerator
+import product.service.impl.SnapshotJobRunner
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.util.concurrent.PollingConditions
+
+@Narrative(""" SnapshotJobRunner generates snapshots of Product purchase requirements
+in the background, joining requests made while one is being generated into the
+same job.
+""")
+@Title("Tests for SnapshotJobRunner")
+@Subject(SnapshotJobRunner)
+class SnapshotJobRunnerSpec extends Specification {
+
+	ProductPurchaseRequirementGenerator productPurchaseRequirementGenerator = Mock()
+
+	Clock clock = Clock.fixed(Instant.ofEpochMilli(1000), ZoneOffset.UTC)
+
+	SnapshotJobRunner runner = new SnapshotJobRunner(productPurchaseRequirementGenerator, clock, 2)
+
+	PollingConditions conditions = new PollingConditions(timeout: 5)
+
+	def cleanup() {
+		runner.shutdown()
+	}
+
+	ProductPurchaseRequirementSnapshot snapshot(long ID, long itemCount) {
+		ProductPurchaseRequirementSnapshot snapshot = new ProductPurchaseRequirementSnapshot()
+		ReflectionTestUtils.setField(snapshot, "ID", ID)
+		snapshot.setItemCount(itemCount)
+		snapshot.setStatus(ProductPurchaseRequirementSnapshot.Status.COMPLETE)
+		snapshot
+	}
+
+	def "SnapshotJobRunner joins requests made while a snapshot is being generated"() {
+
+		given: "a generator that is held until released"
+		CountDownLatch started = new CountDownLatch(1)
+		CountDownLatch release = new CountDownLatch(1)
+		productPurchaseRequirementGenerator.generateSnapshot(1000, _) >> { long time, Consumer consumer ->
+			ProductPurchaseRequirement productPurchaseRequirement = new ProductPurchaseRequirement()
+			productPurchaseRequirement.setSnapshotID(7)
+			consumer.accept(productPurchaseRequirement)
+			started.countDown()
+			release.await(5, TimeUnit.SECONDS)
+			consumer.accept(productPurchaseRequirement)
+			snapshot(7, 2)
+		}
+
+		when: "a job is started and another is requested while it runs"
+		SnapshotJob first = runner.start()
+		started.await(5, TimeUnit.SECONDS)
+		SnapshotJob second = runner.start()
+
+		then: "the same job is returned, generating with its progress so far"
+		second.is(first)
+		first.requestCount == 2
+		first.status == ProductPurchaseRequirementSnapshot.Status.GENERATING
+		first.snapshotID == 7
+		first.itemCount == 1
+		first.endTime == null
+
+		when: "the generator is released"
+		release.countDown()
+
+		then: "the job completes with the snapshot"
+		conditions.eventually {
+			assert runner.get(first.ID).status == ProductPurchaseRequirementSnapshot.Status.COMPLETE
+		}
+		first.itemCount == 2
+		first.startTime == 1000
+		first.endTime == 1000
+
+		and: "a new job is started by the next request"
+		runner.start().ID == first.ID + 1
+	}
+
+	def "SnapshotJobRunner records why a snapshot failed"() {
+
+		given: "a generator that fails"
+		productPurchaseRequirementGenerator.generateSnapshot(_, _) >> { throw new IllegalStateException("Failed") }
+
+		when: "a job is started"
+		SnapshotJob snapshotJob = runner.start()
+
+		then: "the job fails with the error"
+		conditions.eventually {
+			assert runner.get(snapshotJob.ID).status == ProductPurchaseRequirementSnapshot.Status.FAILED
+		}
+		snapshotJob.error == "Failed"
+		snapshotJob.endTime == 1000
+	}
+
+	def "SnapshotJobRunner forgets the oldest jobs beyond those retained"() {
+
+		given: "a generator that completes at once"
+		productPurchaseRequirementGenerator.generateSnapshot(_, _) >> snapshot(7, 0)
+
+		when: "more jobs are run than are retained"
+		List<SnapshotJob> snapshotJobs = (1..3).collect {
+			SnapshotJob snapshotJob = runner.start()
+			conditions.eventually {
+				assert snapshotJob.status == ProductPurchaseRequirementSnapshot.Status.COMPLETE
+			}
+			snapshotJob
+		}
+		runner.get(snapshotJobs[0].ID)
+
+		then: "the oldest is missing"
+		thrown(SnapshotJobMissingException)
+
+		and: "the latest can still be got"
+		runner.get(snapshotJobs[1].ID).is(snapshotJobs[1])
+		runner.get(snapshotJobs[2].ID).is(snapshotJobs[2])
+	}
+}
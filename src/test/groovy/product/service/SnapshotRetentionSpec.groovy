@@ -0,0 +1,191 @@
+package product.service
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneOffset
+import java.util.concurrent.TimeUnit
+import java.util.zip.GZIPInputStream
+
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.ContextConfiguration
+import org.springframework.test.util.ReflectionTestUtils
+
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import product.ProductManager
+import product.model.ProductPurchaseRequirementSnapshot
+import product.model.RetentionReport
+import product.repository.ProductPurchaseRequirementSnapshotRepository
+import product.service.impl.LatestSnapshotCache
+import product.service.impl.ProductServiceImpl
+import product.service.impl.SnapshotRetention
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Narrative(""" SnapshotRetention purges historical Product purchase requirement snapshots
+that are no longer kept, in bounded batches, optionally archiving them first.
+""")
+@Title("Tests for SnapshotRetention")
+@Subject(SnapshotRetention)
+@ContextConfiguration(classes=ProductManager.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class SnapshotRetentionSpec extends Specification {
+
+	@Autowired
+	ProductServiceImpl productService
+
+	@Autowired
+	SnapshotRetention snapshotRetention
+
+	@Autowired
+	ProductPurchaseRequirementSnapshotRepository productPurchaseRequirementSnapshotRepository
+
+	@Autowired
+	LatestSnapshotCache latestSnapshotCache
+
+	@Autowired
+	JdbcTemplate jdbcTemplate
+
+	@Autowired
+	ObjectMapper objectMapper
+
+	@Autowired
+	Clock applicationClock
+
+	Clock clock = Clock.fixed(Instant.parse("2019-09-01T12:00:00Z"), ZoneOffset.UTC)
+
+	def setup() {
+		ReflectionTestUtils.setField(snapshotRetention, "clock", clock)
+		ReflectionTestUtils.setField(snapshotRetention, "keepSnapshots", 3)
+		ReflectionTestUtils.setField(snapshotRetention, "keepDays", 5)
+		ReflectionTestUtils.setField(snapshotRetention, "batchSize", 30)
+		ReflectionTestUtils.setField(snapshotRetention, "archiveDirectory", "")
+		deleteAll()
+	}
+
+	def cleanup() {
+		ReflectionTestUtils.setField(snapshotRetention, "clock", applicationClock)
+		ReflectionTestUtils.setField(snapshotRetention, "keepSnapshots", 100)
+		ReflectionTestUtils.setField(snapshotRetention, "keepDays", 30)
+		ReflectionTestUtils.setField(snapshotRetention, "batchSize", 10000)
+		ReflectionTestUtils.setField(snapshotRetention, "archiveDirectory", "")
+		deleteAll()
+	}
+
+	void deleteAll() {
+		jdbcTemplate.update("delete from product_purchase_requirement")
+		jdbcTemplate.update("delete from product_purchase_requirement_snapshot")
+		latestSnapshotCache.invalidate()
+	}
+
+	/**
+	 * Inserts a complete snapshot, generated a second more than the specified number of
+	 * days before the time of the Clock, with the specified number of rows.
+	 */
+	ProductPurchaseRequirementSnapshot insertSnapshot(int daysAgo, int rows) {
+		insertSnapshotAt(clock.millis() - TimeUnit.DAYS.toMillis(daysAgo) - 1000, rows)
+	}
+
+	/**
+	 * Inserts a complete snapshot, generated at the specified time, with the specified
+	 * number of rows.
+	 */
+	ProductPurchaseRequirementSnapshot insertSnapshotAt(long time, int rows) {
+		ProductPurchaseRequirementSnapshot snapshot = new ProductPurchaseRequirementSnapshot()
+		snapshot.itemCount = rows
+		snapshot.status = ProductPurchaseRequirementSnapshot.Status.COMPLETE
+		snapshot.time = time
+		snapshot = productPurchaseRequirementSnapshotRepository.save(snapshot)
+		jdbcTemplate.update("insert into product_purchase_requirement (amount, name, snapshot_id, time) "
+				+ "select mod(x, 50) + 1, concat('P', x), ?, ? from system_range(1, ?)", snapshot.ID, snapshot.time, rows)
+		snapshot
+	}
+
+	def "SnapshotRetention purges the snapshots that are neither among the latest nor recent, a batch of rows at a time"() {
+
+		given: "twelve daily snapshots of one hundred rows each, more than a batch, oldest first"
+		List<ProductPurchaseRequirementSnapshot> snapshots = (11..0).collect { insertSnapshot(it, 100) }
+
+		when: "the snapshots that are no longer kept are purged"
+		RetentionReport retentionReport = productService.purgeProductPurchaseRequirementSnapshots()
+
+		then: "the snapshots older than five days were purged, oldest first, along with their rows"
+		retentionReport.purgedSnapshots*.ID == snapshots.take(7)*.ID
+		retentionReport.purgedSnapshots*.rowsDeleted.every { it == 100 }
+		retentionReport.rowsDeleted == 700
+		retentionReport.purgedSnapshots*.archive.every { it == null }
+		productService.getLastRetentionReport().is(retentionReport)
+
+		and: "the other snapshots and their rows are untouched"
+		productPurchaseRequirementSnapshotRepository.findAll()*.ID.sort() == snapshots.drop(7)*.ID
+		jdbcTemplate.queryForObject("select count(*) from product_purchase_requirement", Long) == 500
+		productService.getLatestProductPurchaseRequirements().size() == 100
+
+		and: "purging again finds nothing more to purge"
+		productService.purgeProductPurchaseRequirementSnapshots().purgedSnapshots.isEmpty()
+	}
+
+	def "SnapshotRetention always keeps the latest snapshots, however old they are"() {
+
+		given: "five snapshots that are all older than the number of days to keep"
+		List<ProductPurchaseRequirementSnapshot> snapshots = (50..46).collect { insertSnapshot(it, 10) }
+
+		when: "the snapshots that are no longer kept are purged"
+		RetentionReport retentionReport = snapshotRetention.purge()
+
+		then: "only those beyond the latest three were purged"
+		retentionReport.purgedSnapshots*.ID == snapshots.take(2)*.ID
+		productPurchaseRequirementSnapshotRepository.findAll()*.ID.sort() == snapshots.drop(2)*.ID
+	}
+
+	def "SnapshotRetention keeps a snapshot generated exactly the number of days to keep ago"() {
+
+		given: "a snapshot a millisecond older than the number of days to keep, one exactly that old, and the latest three"
+		long keptTime = clock.millis() - TimeUnit.DAYS.toMillis(5)
+		ProductPurchaseRequirementSnapshot older = insertSnapshotAt(keptTime - 1, 10)
+		ProductPurchaseRequirementSnapshot exact = insertSnapshotAt(keptTime, 10)
+		(3..1).each { insertSnapshot(it, 1) }
+
+		when: "the snapshots that are no longer kept are purged"
+		RetentionReport retentionReport = snapshotRetention.purge()
+
+		then: "only the older snapshot was purged, at the time of the Clock"
+		retentionReport.purgedSnapshots*.ID == [older.ID]
+		retentionReport.time == clock.millis()
+		productPurchaseRequirementSnapshotRepository.existsById(exact.ID)
+	}
+
+	def "SnapshotRetention archives purged snapshots as gzipped newline delimited JSON before deleting them"() {
+
+		given: "an archive directory, and a snapshot that is no longer kept"
+		Path archiveDirectory = Files.createTempDirectory("retention")
+		ReflectionTestUtils.setField(snapshotRetention, "archiveDirectory", archiveDirectory.toString())
+		ProductPurchaseRequirementSnapshot purged = insertSnapshot(40, 250)
+		(3..1).each { insertSnapshot(it, 1) }
+
+		when: "the snapshots that are no longer kept are purged"
+		RetentionReport retentionReport = snapshotRetention.purge()
+
+		then: "the purged snapshot was archived in full"
+		retentionReport.purgedSnapshots.size() == 1
+		Path archive = Path.of(retentionReport.purgedSnapshots[0].archive)
+		archive.parent == archiveDirectory
+		List<String> lines = new GZIPInputStream(Files.newInputStream(archive)).readLines("UTF-8")
+		lines.size() == 250
+		lines.collect { objectMapper.readValue(it, Map) }.every { it.snapshotID == purged.ID && it.time == purged.time }
+		lines.collect { objectMapper.readValue(it, Map).name }.toSet().size() == 250
+
+		and: "no temporary file was left behind"
+		Files.list(archiveDirectory).count() == 1
+
+		cleanup:
+		archiveDirectory.toFile().deleteDir()
+	}
+}
@@ -0,0 +1,222 @@
+package product.service
+
+import java.time.Clock
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import product.model.ProductPurchaseRequirementSnapshot
+import product.model.SnapshotJob
+import product.service.impl.SnapshotJobRunner
+import product.service.impl.SnapshotScheduler
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Narrative(""" SnapshotScheduler starts snapshots of Product purchase requirements
+on a schedule, skipping them when no Product has changed and bringing them
+forward when many have.
+""")
+@Title("Tests for SnapshotScheduler")
+@Subject(SnapshotScheduler)
+class SnapshotSchedulerSpec extends Specification {
+
+	SnapshotJobRunner snapshotJobRunner = Mock()
+
+	Clock clock = Mock()
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+
+	long now = 0
+
+	SnapshotScheduler scheduler
+
+	def setup() {
+		clock.millis() >> { now }
+		snapshotJobRunner.start() >> { generate(0) }
+	}
+
+	def cleanup() {
+		scheduler?.shutdown()
+	}
+
+	/**
+	 * Generates a snapshot now, as the generator would, notifying the scheduler as
+	 * it is started and once it has completed, and returns its completed job.
+	 */
+	SnapshotJob generate(long ID) {
+		ProductPurchaseRequirementSnapshot productPurchaseRequirementSnapshot = snapshot(ID)
+		scheduler.snapshotStarted(productPurchaseRequirementSnapshot)
+		scheduler.snapshotCompleted(productPurchaseRequirementSnapshot)
+
+		SnapshotJob snapshotJob = new SnapshotJob(ID, now)
+		snapshotJob.complete(productPurchaseRequirementSnapshot, now)
+		snapshotJob
+	}
+
+	ProductPurchaseRequirementSnapshot snapshot(long ID) {
+		Stub(ProductPurchaseRequirementSnapshot) {
+			getID() >> ID
+			getItemCount() >> 0L
+		}
+	}
+
+	SnapshotScheduler scheduler(String cron, long interval) {
+		scheduler = new SnapshotScheduler(snapshotJobRunner, clock, meterRegistry, cron, interval, 1000, 3, 3600000)
+	}
+
+	def "SnapshotScheduler starts a snapshot every interval while Products change"() {
+
+		given: "a scheduler with an interval"
+		scheduler("-", 10000)
+
+		when: "it is checked before and after the first interval, which follows startup"
+		SnapshotJob early = scheduler.check()
+		now = 10000
+		SnapshotJob first = scheduler.check()
+
+		then: "a snapshot is started once the interval has passed"
+		early == null
+		first != null
+		1 * snapshotJobRunner.start() >> { generate(1) }
+
+		when: "a Product changes and it is checked after the next interval"
+		scheduler.productChanged("A")
+		now = 20000
+		SnapshotJob second = scheduler.check()
+
+		then: "another snapshot is started"
+		second != null
+		1 * snapshotJobRunner.start() >> { generate(2) }
+		meterRegistry.get("product.snapshot.schedule.started").counter().count() == 2
+	}
+
+	def "SnapshotScheduler skips a snapshot when no Product has changed"() {
+
+		given: "a scheduler with an interval that has started its first snapshot"
+		scheduler("-", 10000)
+		now = 10000
+		scheduler.check()
+
+		when: "it is checked after the next interval without any change"
+		now = 20000
+		SnapshotJob snapshotJob = scheduler.check()
+
+		then: "no snapshot is started"
+		snapshotJob == null
+		0 * snapshotJobRunner.start()
+		meterRegistry.get("product.snapshot.schedule.skipped").counter().count() == 1
+	}
+
+	def "SnapshotScheduler brings a snapshot forward when the churn threshold is reached"() {
+
+		given: "a scheduler with a long interval that has started its first snapshot"
+		scheduler("-", 3600000)
+		scheduler.allProductsChanged()
+		now = 1000
+		scheduler.check()
+
+		when: "Products change up to the threshold within the minimum interval"
+		scheduler.productChanged("A")
+		scheduler.productChanged("B")
+		now = 1500
+		SnapshotJob belowThreshold = scheduler.check()
+		scheduler.productChanged("C")
+		SnapshotJob tooSoon = scheduler.check()
+		now = 2000
+		SnapshotJob broughtForward = scheduler.check()
+
+		then: "a snapshot is started only once both the threshold and minimum interval are reached"
+		belowThreshold == null
+		tooSoon == null
+		broughtForward != null
+		1 * snapshotJobRunner.start() >> { generate(2) }
+	}
+
+	def "SnapshotScheduler starts a snapshot at the times of a cron expression"() {
+
+		given: "a scheduler with a cron expression due every minute"
+		scheduler("0 * * * * *", 0)
+
+		when: "it is checked before and after the minute"
+		now = 59000
+		SnapshotJob early = scheduler.check()
+		now = 60000
+		SnapshotJob due = scheduler.check()
+
+		then: "a snapshot is started on the minute"
+		early == null
+		due != null
+		1 * snapshotJobRunner.start() >> { generate(1) }
+	}
+
+	def "SnapshotScheduler counts the changes towards the next snapshot when the last one fails"() {
+
+		given: "a scheduler with an interval, and a snapshot that will fail"
+		scheduler("-", 10000)
+		SnapshotJob failing = new SnapshotJob(1, 10000)
+
+		when: "it is checked after the first interval"
+		now = 10000
+		SnapshotJob first = scheduler.check()
+
+		then: "the snapshot is started"
+		first.is(failing)
+		1 * snapshotJobRunner.start() >> {
+			scheduler.snapshotStarted(snapshot(1))
+			failing
+		}
+
+		when: "it is checked after the next interval, while the snapshot is still generating"
+		now = 20000
+		SnapshotJob generating = scheduler.check()
+
+		then: "no other snapshot is started"
+		generating == null
+		0 * snapshotJobRunner.start()
+
+		when: "the snapshot fails, and it is checked after the next interval without any change"
+		scheduler.snapshotFailed(snapshot(1))
+		failing.fail("Failed", 25000)
+		now = 30000
+		SnapshotJob retried = scheduler.check()
+
+		then: "another snapshot is started for the changes the failed one did not cover"
+		retried != null
+		1 * snapshotJobRunner.start() >> { generate(2) }
+	}
+
+	def "SnapshotScheduler skips a snapshot when one started by a client has covered the changes"() {
+
+		given: "a scheduler with an interval"
+		scheduler("-", 10000)
+
+		when: "a Product changes, a client generates a snapshot, and it is checked after the first interval"
+		scheduler.productChanged("A")
+		now = 5000
+		generate(1)
+		now = 10000
+		SnapshotJob snapshotJob = scheduler.check()
+
+		then: "no snapshot is started"
+		snapshotJob == null
+		0 * snapshotJobRunner.start()
+		meterRegistry.get("product.snapshot.schedule.skipped").counter().count() == 1
+	}
+
+	def "SnapshotScheduler counts the changes made after a snapshot started towards the next one"() {
+
+		given: "a scheduler with an interval"
+		scheduler("-", 10000)
+
+		when: "a client snapshot is started, a Product changes before it completes, and it is checked after the first interval"
+		scheduler.snapshotStarted(snapshot(1))
+		scheduler.productChanged("A")
+		scheduler.snapshotCompleted(snapshot(1))
+		now = 10000
+		SnapshotJob snapshotJob = scheduler.check()
+
+		then: "a snapshot is started for the change the client snapshot did not cover"
+		snapshotJob != null
+		1 * snapshotJobRunner.start() >> { generate(2) }
+	}
+}
@@ -0,0 +1,134 @@
+package product.service
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import product.model.ProductUpdate
+import product.model.ProductUpdateResult
+import product.service.impl.ProductBatchUpdater
+import product.service.impl.StockWriteBehindBuffer
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.util.concurrent.PollingConditions
+
+@Narrative(""" StockWriteBehindBuffer buffers changes to the current amount of Products,
+coalesces them per Product and flushes them in batches.
+""")
+@Title("Tests for StockWriteBehindBuffer")
+@Subject(StockWriteBehindBuffer)
+class StockWriteBehindBufferSpec extends Specification {
+
+	ProductBatchUpdater productBatchUpdater = Mock()
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+
+	StockWriteBehindBuffer buffer(int flushSize) {
+		new StockWriteBehindBuffer(productBatchUpdater, meterRegistry, true, 60000, flushSize)
+	}
+
+	def "StockWriteBehindBuffer coalesces absolute amounts and deltas per Product"() {
+
+		given: "a buffer"
+		StockWriteBehindBuffer buffer = buffer(1000)
+		List<ProductUpdate> flushed = null
+
+		when: "bursts of changes are made to several Products and then flushed"
+		buffer.setCurrentAmount("A", 5)
+		buffer.adjustCurrentAmount("A", -1)
+		buffer.adjustCurrentAmount("A", -1)
+		buffer.adjustCurrentAmount("B", -1)
+		buffer.adjustCurrentAmount("B", -2)
+		buffer.setCurrentAmount("C", 1)
+		buffer.setCurrentAmount("C", 7)
+		double pending = meterRegistry.get("product.writebehind.pending").gauge().value()
+		buffer.flush()
+
+		then: "a single batch with one change per Product is applied"
+		1 * productBatchUpdater.apply(_) >> { arguments ->
+			flushed = arguments[0]
+			flushed.collect { new ProductUpdateResult(it, ProductUpdateResult.Status.APPLIED, null) }
+		}
+		flushed.collectEntries { [(it.name): [it.operation, it.amount]] } == [
+			A: [ProductUpdate.Operation.SET_CURRENT_AMOUNT, 3L],
+			B: [ProductUpdate.Operation.ADJUST_CURRENT_AMOUNT, -3L],
+			C: [ProductUpdate.Operation.SET_CURRENT_AMOUNT, 7L]
+		]
+		pending == 3
+		meterRegistry.get("product.writebehind.coalesced").counter().count() == 4
+		meterRegistry.get("product.writebehind.pending").gauge().value() == 0
+		meterRegistry.get("product.writebehind.flush").timer().count() == 1
+
+		cleanup:
+		buffer.shutdown()
+	}
+
+	def "StockWriteBehindBuffer flushes once the flush size is reached"() {
+
+		given: "a buffer with a small flush size"
+		StockWriteBehindBuffer buffer = buffer(2)
+
+		when: "changes are made to enough Products and the flush is waited for"
+		buffer.setCurrentAmount("A", 1)
+		buffer.setCurrentAmount("B", 2)
+		new PollingConditions(timeout: 5).eventually {
+			assert meterRegistry.get("product.writebehind.flush").timer().count() == 1
+		}
+
+		then: "they are flushed without waiting for the flush interval"
+		1 * productBatchUpdater.apply({ it.size() == 2 }) >> []
+
+		cleanup:
+		buffer.shutdown()
+	}
+
+	def "StockWriteBehindBuffer flushes pending changes on shutdown and a single Product on demand"() {
+
+		given: "a buffer with pending changes"
+		StockWriteBehindBuffer buffer = buffer(1000)
+		buffer.setCurrentAmount("A", 1)
+		buffer.adjustCurrentAmount("B", 2)
+
+		when: "one Product is flushed and then the buffer is shut down"
+		buffer.flush("A")
+		buffer.shutdown()
+
+		then: "each pending change is applied once"
+		1 * productBatchUpdater.apply({ it*.name == ["A"] }) >> []
+		1 * productBatchUpdater.apply({ it*.name == ["B"] }) >> []
+		0 * productBatchUpdater._
+	}
+
+	def "StockWriteBehindBuffer requeues changes whose chunk failed and drops those for missing Products"() {
+
+		given: "a buffer with pending changes"
+		StockWriteBehindBuffer buffer = buffer(1000)
+		List<ProductUpdate> flushed = null
+		buffer.setCurrentAmount("A", 5)
+		buffer.adjustCurrentAmount("B", -1)
+
+		when: "the flush fails for one Product and the other is missing, and a further change is made"
+		buffer.flush()
+		buffer.adjustCurrentAmount("A", -2)
+		buffer.flush()
+
+		then: "the failed change is merged with the further change and applied by the next flush"
+		1 * productBatchUpdater.apply(_) >> { arguments ->
+			[
+				new ProductUpdateResult(arguments[0][0], ProductUpdateResult.Status.FAILED, "Deadlock"),
+				new ProductUpdateResult(arguments[0][1], ProductUpdateResult.Status.NOT_FOUND, null)
+			]
+		}
+		1 * productBatchUpdater.apply(_) >> { arguments ->
+			flushed = arguments[0]
+			[]
+		}
+		flushed.collect { [it.name, it.operation, it.amount] } == [
+			["A", ProductUpdate.Operation.SET_CURRENT_AMOUNT, 3L]
+		]
+		meterRegistry.get("product.writebehind.requeued").counter().count() == 1
+		meterRegistry.get("product.writebehind.dropped").counter().count() == 1
+
+		cleanup:
+		buffer.shutdown()
+	}
+}
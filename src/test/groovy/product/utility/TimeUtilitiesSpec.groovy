@@ -0,0 +1,61 @@
+package product.utility
+
+import java.time.LocalDateTime
+import java.time.ZoneId
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+import spock.lang.Narrative
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Narrative(""" TimeUtilities formats times with formatters that are shared between
+threads.
+""")
+@Title("Tests for TimeUtilities")
+@Subject(TimeUtilities)
+class TimeUtilitiesSpec extends Specification {
+
+	long time(int year, int month, int day, int hour, int minute, int second) {
+		LocalDateTime.of(year, month, day, hour, minute, second).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+	}
+
+	def "TimeUtilities formats dates, date times and month years in the default time zone"() {
+
+		given: "the last second of a year"
+		long time = time(2019, 12, 31, 23, 59, 59)
+
+		expect: "each format gives the date and time, and the month year is of the calendar year"
+		TimeUtilities.getFormattedDateFromTime(time) == "31/12/2019"
+		TimeUtilities.getFormattedDateTimeFromTime(time) == "31/12/2019 23:59:59"
+		TimeUtilities.getFormattedMonthYearFromTime(time).endsWith("-19")
+		TimeUtilities.getFormattedMonthYearFromTime(Long.valueOf(time)) == TimeUtilities.getFormattedMonthYearFromTime(time)
+	}
+
+	def "TimeUtilities converts a Long time to a Date"() {
+
+		expect:
+		TimeUtilities.getDateFromTime(Long.valueOf(1234L)).time == 1234L
+	}
+
+	def "TimeUtilities formats correctly from many threads at once"() {
+
+		given: "a different time for each of many tasks"
+		List<Long> times = (0..<2000).collect { time(2000 + (it % 20), (it % 12) + 1, (it % 28) + 1, it % 24, it % 60, 0) }
+		List<String> expected = times.collect { TimeUtilities.getFormattedDateTimeFromTime(it) }
+		ExecutorService executorService = Executors.newFixedThreadPool(16)
+
+		when: "every time is formatted concurrently"
+		List<String> formatted = executorService.invokeAll(times.collect { long time ->
+			{ -> TimeUtilities.getFormattedDateTimeFromTime(time) } as Callable<String>
+		})*.get()
+
+		then: "every time was formatted as it is on its own"
+		formatted == expected
+
+		cleanup:
+		executorService.shutdown()
+	}
+}